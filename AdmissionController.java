@@ -0,0 +1,363 @@
+package com.bizruntime.Ignite.Ignite;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.ignite.DataRegionMetrics;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteException;
+import org.apache.ignite.IgniteInterruptedException;
+import org.apache.ignite.configuration.DataPageEvictionMode;
+import org.apache.ignite.configuration.DataRegionConfiguration;
+import org.apache.ignite.configuration.DataStorageConfiguration;
+
+/**
+ * Memory-pressure admission control for ingest paths.
+ * <p>
+ * A background sampler watches heap usage and fill of the data regions of the local node. While both are
+ * below their thresholds producers are admitted immediately. Above a threshold {@link #admit()} delays the
+ * caller proportionally to how far usage went between the threshold and the limit, and blocks it when usage
+ * reaches the limit, until memory is reclaimed or {@code maxBlockTime} passes.
+ * <p>
+ * Heap usage of a pool is the one left after its last garbage collection, or the current one if lower,
+ * since instantaneous usage includes garbage. Usage after collection is updated only by a collection, which
+ * may never come while producers are parked and nothing allocates, so once a producer gets blocked the sampler
+ * requests a collection (at most once per {@code maxBlockTime / 10}) and re-samples. Region fill is off-heap
+ * memory used by data of in-memory regions without page eviction. Persistent regions and regions with page
+ * eviction stay near full by design, pages are replaced or evicted, so they are not watched. Regions without
+ * metrics enabled report no usage, they are skipped with a warning.
+ * <p>
+ * Without Ignite instance (e.g. on a JDBC client) only heap usage is watched.
+ */
+public class AdmissionController implements AutoCloseable {
+    /** Default heap usage threshold. */
+    public static final double DFLT_HEAP_THRESHOLD = 0.8;
+
+    /** Default data region fill threshold. */
+    public static final double DFLT_REGION_THRESHOLD = 0.9;
+
+    /** Default maximum delay of a single admission in milliseconds. */
+    public static final long DFLT_MAX_DELAY = 100;
+
+    /** Default maximum time a producer is blocked at the limit in milliseconds. */
+    public static final long DFLT_MAX_BLOCK_TIME = 30_000;
+
+    /** Fill at which producers are blocked completely. */
+    private static final double LIMIT = 0.98;
+
+    /** Ignite instance, {@code null} to watch heap only. */
+    private final Ignite ignite;
+
+    /** Heap pools reporting usage after garbage collection. */
+    private final List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+
+    /** Heap usage threshold. */
+    private double heapThreshold = DFLT_HEAP_THRESHOLD;
+
+    /** Data region fill threshold. */
+    private double regionThreshold = DFLT_REGION_THRESHOLD;
+
+    /** Maximum delay of a single admission in milliseconds. */
+    private long maxDelay = DFLT_MAX_DELAY;
+
+    /** Maximum time a producer is blocked at the limit in milliseconds. */
+    private long maxBlockTime = DFLT_MAX_BLOCK_TIME;
+
+    /** Sampling interval in milliseconds. */
+    private long sampleInterval = 100;
+
+    /** Maximum sizes of watched data regions by name. */
+    private final Map<String, Long> regionMaxSizes = new HashMap<>();
+
+    /** Pressure: {@code 0} below thresholds, {@code 1} at the limit. */
+    private volatile double pressure;
+
+    /** Whether a blocked producer requested garbage collection and re-sampling. */
+    private volatile boolean recheck;
+
+    /** Time of the last requested garbage collection in milliseconds. */
+    private long lastGc;
+
+    /** Number of delayed admissions. */
+    private final LongAdder throttled = new LongAdder();
+
+    /** Total delay in milliseconds. */
+    private final LongAdder delayed = new LongAdder();
+
+    /** Sampler. */
+    private ScheduledExecutorService sampler;
+
+    /**
+     * @param ignite Ignite instance, {@code null} to watch heap only.
+     */
+    public AdmissionController(Ignite ignite) {
+        this.ignite = ignite;
+    }
+
+    /**
+     * @param heapThreshold Heap usage threshold, fraction of maximum heap.
+     * @return {@code this} for chaining.
+     */
+    public AdmissionController setHeapThreshold(double heapThreshold) {
+        this.heapThreshold = heapThreshold;
+
+        return this;
+    }
+
+    /**
+     * @param regionThreshold Data region fill threshold, fraction of region maximum size.
+     * @return {@code this} for chaining.
+     */
+    public AdmissionController setRegionThreshold(double regionThreshold) {
+        this.regionThreshold = regionThreshold;
+
+        return this;
+    }
+
+    /**
+     * @param maxDelay Maximum delay of a single admission in milliseconds.
+     * @return {@code this} for chaining.
+     */
+    public AdmissionController setMaxDelay(long maxDelay) {
+        this.maxDelay = maxDelay;
+
+        return this;
+    }
+
+    /**
+     * @param maxBlockTime Maximum time a producer is blocked at the limit in milliseconds.
+     * @return {@code this} for chaining.
+     */
+    public AdmissionController setMaxBlockTime(long maxBlockTime) {
+        this.maxBlockTime = maxBlockTime;
+
+        return this;
+    }
+
+    /**
+     * @param sampleInterval Sampling interval in milliseconds.
+     * @return {@code this} for chaining.
+     */
+    public AdmissionController setSampleInterval(long sampleInterval) {
+        this.sampleInterval = sampleInterval;
+
+        return this;
+    }
+
+    /**
+     * Starts background sampler.
+     *
+     * @return {@code this} for chaining.
+     */
+    public synchronized AdmissionController start() {
+        if (sampler != null)
+            throw new IllegalStateException("Admission controller is already started.");
+
+        if (ignite != null) {
+            DataStorageConfiguration dsCfg = ignite.configuration().getDataStorageConfiguration();
+
+            if (dsCfg != null) {
+                DataRegionConfiguration dflt = dsCfg.getDefaultDataRegionConfiguration();
+
+                if (dflt != null)
+                    watchRegion(dflt);
+
+                if (dsCfg.getDataRegionConfigurations() != null) {
+                    for (DataRegionConfiguration regCfg : dsCfg.getDataRegionConfigurations())
+                        watchRegion(regCfg);
+                }
+            }
+        }
+
+        heapPools.clear();
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported())
+                heapPools.add(pool);
+        }
+
+        sample();
+
+        sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "admission-sampler");
+
+            t.setDaemon(true);
+
+            return t;
+        });
+
+        sampler.scheduleWithFixedDelay(this::sample, sampleInterval, sampleInterval, TimeUnit.MILLISECONDS);
+
+        return this;
+    }
+
+    /**
+     * Admits producer, delaying or blocking it while memory usage is above thresholds.
+     *
+     * @throws IgniteInterruptedException If interrupted while waiting.
+     * @throws IgniteException If blocked at the limit for longer than {@code maxBlockTime}.
+     */
+    public void admit() {
+        double p = pressure;
+
+        if (p <= 0)
+            return;
+
+        long start = System.currentTimeMillis();
+
+        try {
+            if (p >= 1)
+                recheck = true;
+
+            // Block while at the limit, otherwise delay proportionally to the pressure.
+            while (p >= 1) {
+                if (System.currentTimeMillis() - start >= maxBlockTime) {
+                    throttled.increment();
+                    delayed.add(System.currentTimeMillis() - start);
+
+                    throw new IgniteException("Producer is blocked by memory pressure for longer than " +
+                        maxBlockTime + "ms.");
+                }
+
+                Thread.sleep(sampleInterval);
+
+                p = pressure;
+            }
+
+            if (p > 0)
+                Thread.sleep((long)(p * maxDelay));
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new IgniteInterruptedException(e);
+        }
+
+        throttled.increment();
+        delayed.add(System.currentTimeMillis() - start);
+    }
+
+    /**
+     * @return Pressure: {@code 0} below thresholds, {@code 1} at the limit.
+     */
+    public double pressure() {
+        return pressure;
+    }
+
+    /**
+     * @return Number of delayed admissions.
+     */
+    public long throttledCount() {
+        return throttled.sum();
+    }
+
+    /**
+     * @return Total delay of admissions in milliseconds.
+     */
+    public long throttledTime() {
+        return delayed.sum();
+    }
+
+    /** {@inheritDoc} */
+    @Override public synchronized void close() {
+        if (sampler != null) {
+            sampler.shutdownNow();
+
+            sampler = null;
+        }
+
+        pressure = 0;
+    }
+
+    /**
+     * Samples memory usage and updates pressure.
+     */
+    private void sample() {
+        if (recheck) {
+            recheck = false;
+
+            long now = System.currentTimeMillis();
+
+            // Reclaimed heap shows up in usage after collection only once a collection runs.
+            if (now - lastGc >= maxBlockTime / 10) {
+                lastGc = now;
+
+                ManagementFactory.getMemoryMXBean().gc();
+            }
+        }
+
+        long heapMax = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax();
+
+        double p = 0;
+
+        for (MemoryPoolMXBean pool : heapPools) {
+            MemoryUsage usage = pool.getCollectionUsage();
+
+            if (usage == null)
+                continue;
+
+            long max = usage.getMax() > 0 ? usage.getMax() : heapMax;
+
+            // Current usage below the one after collection means memory was reclaimed since.
+            long used = Math.min(usage.getUsed(), pool.getUsage().getUsed());
+
+            if (max > 0)
+                p = Math.max(p, pressure((double)used / max, heapThreshold));
+        }
+
+        if (ignite != null) {
+            for (DataRegionMetrics m : ignite.dataRegionMetrics()) {
+                Long max = regionMaxSizes.get(m.getName());
+
+                if (max != null && max > 0)
+                    p = Math.max(p, pressure((double)m.getOffheapUsedSize() / max, regionThreshold));
+            }
+        }
+
+        pressure = p;
+    }
+
+    /**
+     * Watches region unless it stays near full by design.
+     *
+     * @param regCfg Region configuration.
+     */
+    private void watchRegion(DataRegionConfiguration regCfg) {
+        if (regCfg.isPersistenceEnabled() || regCfg.getPageEvictionMode() != DataPageEvictionMode.DISABLED)
+            return;
+
+        if (!regCfg.isMetricsEnabled()) {
+            ignite.log().getLogger(AdmissionController.class).warning("Data region is not watched by admission " +
+                "control, its metrics are disabled [region=" + regCfg.getName() + ']');
+
+            return;
+        }
+
+        regionMaxSizes.put(regCfg.getName(), regCfg.getMaxSize());
+    }
+
+    /**
+     * @param usage Usage, fraction of the maximum.
+     * @param threshold Threshold.
+     * @return Pressure: {@code 0} below threshold, {@code 1} at the limit.
+     */
+    private static double pressure(double usage, double threshold) {
+        if (usage <= threshold)
+            return 0;
+
+        if (usage >= LIMIT || threshold >= LIMIT)
+            return 1;
+
+        return (usage - threshold) / (LIMIT - threshold);
+    }
+}
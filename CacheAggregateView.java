@@ -0,0 +1,438 @@
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import javax.cache.Cache;
+import javax.cache.configuration.Factory;
+import javax.cache.event.CacheEntryEvent;
+import javax.cache.event.CacheEntryEventFilter;
+import javax.cache.event.CacheEntryUpdatedListener;
+
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.cache.query.ContinuousQuery;
+import org.apache.ignite.cache.query.QueryCursor;
+import org.apache.ignite.cache.query.ScanQuery;
+import org.apache.ignite.lang.IgniteClosure;
+
+/**
+ * Incrementally maintained per-group aggregate (count, sum, min, max) over cache values.
+ * <p>
+ * The view is seeded by an initial scan and then kept up to date by a {@link ContinuousQuery}. The remote
+ * filter drops updates which change neither the group nor the aggregated value, so only real deltas travel
+ * to the view. Accumulators are striped adders updated without locks, updates of the same group contend only
+ * on the adders, and reading the current aggregate of a group is a single map lookup. Values with a
+ * {@code null} group or measure are not aggregated.
+ * <p>
+ * Events arriving while the initial scan runs may concern entries the scan has already seen or will see, so
+ * they are buffered until the scan completes and then reconciled per key against the value the scan counted:
+ * the counted value is replaced by the new one or dropped on removal. Afterwards events are applied as they
+ * come. The scanned values of the seeding phase are kept on heap until reconciliation.
+ * <p>
+ * Count and sum (and hence average) are exact only if the cache is not updated while the view starts: an
+ * event for an update the scan already observed may be delivered after reconciliation and is then applied a
+ * second time, since neither scan results nor events carry a version to tell them apart. Once started, the
+ * view follows the cache exactly. Min and max are not decremental: they are the lowest and highest values
+ * observed since the group appeared, removals do not shrink them. A group whose count drops to zero is
+ * removed from the view.
+ */
+public class CacheAggregateView<K, V, G> implements AutoCloseable {
+    /** Cache. */
+    private final IgniteCache<K, V> cache;
+
+    /** Extracts group from a value. */
+    private final IgniteClosure<V, G> grpFn;
+
+    /** Extracts aggregated measure from a value. */
+    private final IgniteClosure<V, Double> valFn;
+
+    /** Accumulators by group. */
+    private final ConcurrentMap<G, Accumulator> accs = new ConcurrentHashMap<>();
+
+    /** Continuous query cursor. */
+    private QueryCursor<Cache.Entry<K, V>> cur;
+
+    /** Guards switch from seeding to applying events as they come. */
+    private final Object seedMux = new Object();
+
+    /** Events buffered while the initial scan runs, {@code null} once the view is seeded. */
+    private volatile List<CacheEntryEvent<? extends K, ? extends V>> pending;
+
+    /**
+     * @param cache Cache.
+     * @param grpFn Extracts group from a value, executed on remote nodes as well.
+     * @param valFn Extracts aggregated measure from a value, executed on remote nodes as well.
+     */
+    public CacheAggregateView(IgniteCache<K, V> cache, IgniteClosure<V, G> grpFn, IgniteClosure<V, Double> valFn) {
+        this.cache = cache;
+        this.grpFn = grpFn;
+        this.valFn = valFn;
+    }
+
+    /**
+     * Starts continuous query and seeds the view with existing cache entries.
+     *
+     * @return {@code this} for chaining.
+     */
+    public CacheAggregateView<K, V, G> start() {
+        if (cur != null)
+            throw new IllegalStateException("View is already started.");
+
+        ContinuousQuery<K, V> qry = new ContinuousQuery<>();
+
+        qry.setInitialQuery(new ScanQuery<K, V>());
+
+        qry.setLocalListener(new CacheEntryUpdatedListener<K, V>() {
+            @Override public void onUpdated(Iterable<CacheEntryEvent<? extends K, ? extends V>> evts) {
+                if (pending != null) {
+                    synchronized (seedMux) {
+                        if (pending != null) {
+                            for (CacheEntryEvent<? extends K, ? extends V> e : evts)
+                                pending.add(e);
+
+                            return;
+                        }
+                    }
+                }
+
+                for (CacheEntryEvent<? extends K, ? extends V> e : evts)
+                    apply(e);
+            }
+        });
+
+        qry.setRemoteFilterFactory(new DeltaFilterFactory<>(grpFn, valFn));
+
+        qry.setIncludeExpired(true);
+
+        pending = new ArrayList<>();
+
+        cur = cache.query(qry);
+
+        // Values counted by the scan, by key.
+        Map<K, V> seeded = new HashMap<>();
+
+        // Iterate through existing data.
+        for (Cache.Entry<K, V> e : cur) {
+            seeded.put(e.getKey(), e.getValue());
+
+            add(e.getValue(), 1);
+        }
+
+        synchronized (seedMux) {
+            for (CacheEntryEvent<? extends K, ? extends V> e : pending)
+                reconcile(e, seeded);
+
+            pending = null;
+        }
+
+        return this;
+    }
+
+    /**
+     * @param grp Group.
+     * @return Current aggregate of the group, {@code null} if group has no entries.
+     */
+    public Aggregate aggregate(G grp) {
+        Accumulator acc = accs.get(grp);
+
+        return acc == null ? null : acc.snapshot();
+    }
+
+    /**
+     * @return Groups having entries.
+     */
+    public Iterable<G> groups() {
+        return Collections.unmodifiableSet(accs.keySet());
+    }
+
+    /** {@inheritDoc} */
+    @Override public void close() {
+        if (cur != null) {
+            cur.close();
+
+            cur = null;
+        }
+    }
+
+    /**
+     * Applies event received during seeding against the value counted by the scan, if any.
+     *
+     * @param e Event.
+     * @param seeded Values counted so far by key, updated.
+     */
+    private void reconcile(CacheEntryEvent<? extends K, ? extends V> e, Map<K, V> seeded) {
+        switch (e.getEventType()) {
+            case CREATED:
+            case UPDATED:
+                add(seeded.put(e.getKey(), e.getValue()), -1);
+                add(e.getValue(), 1);
+
+                break;
+
+            case REMOVED:
+            case EXPIRED:
+                add(seeded.remove(e.getKey()), -1);
+
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    /**
+     * @param e Event.
+     */
+    private void apply(CacheEntryEvent<? extends K, ? extends V> e) {
+        switch (e.getEventType()) {
+            case CREATED:
+                add(e.getValue(), 1);
+
+                break;
+
+            case UPDATED:
+                if (e.getOldValue() != null)
+                    add(e.getOldValue(), -1);
+
+                add(e.getValue(), 1);
+
+                break;
+
+            case REMOVED:
+            case EXPIRED:
+                add(e.getOldValue() != null ? e.getOldValue() : e.getValue(), -1);
+
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    /**
+     * @param val Value.
+     * @param sign {@code 1} to add value, {@code -1} to subtract it.
+     */
+    private void add(V val, int sign) {
+        if (val == null)
+            return;
+
+        Double measure = valFn.apply(val);
+
+        if (measure == null)
+            return;
+
+        G grp = grpFn.apply(val);
+
+        if (grp == null)
+            return;
+
+        while (true) {
+            Accumulator acc = accs.computeIfAbsent(grp, g -> new Accumulator());
+
+            acc.add(measure, sign);
+
+            // Accumulator was removed concurrently, the update goes to its successor.
+            if (acc.retired) {
+                acc.add(measure, -sign);
+
+                continue;
+            }
+
+            // Removal of an emptied group is the only update taking the map lock.
+            if (acc.cnt.sum() == 0)
+                accs.computeIfPresent(grp, (g, a) -> a == acc ? a.retire() : a);
+
+            return;
+        }
+    }
+
+    /**
+     * Accumulator of a single group.
+     */
+    private static class Accumulator {
+        /** Count. */
+        private final LongAdder cnt = new LongAdder();
+
+        /** Sum. */
+        private final DoubleAdder sum = new DoubleAdder();
+
+        /** Bits of minimum value. */
+        private final AtomicLong min = new AtomicLong(Double.doubleToRawLongBits(Double.POSITIVE_INFINITY));
+
+        /** Bits of maximum value. */
+        private final AtomicLong max = new AtomicLong(Double.doubleToRawLongBits(Double.NEGATIVE_INFINITY));
+
+        /** Whether accumulator is removed from the view, updates applied to it are moved to a new one. */
+        private volatile boolean retired;
+
+        /**
+         * Retires accumulator if it is empty. Retired flag is set before the count is checked, so an update
+         * either is seen in the count or sees the flag and moves to the successor.
+         *
+         * @return {@code null} if accumulator is retired, {@code this} otherwise.
+         */
+        Accumulator retire() {
+            retired = true;
+
+            if (cnt.sum() == 0)
+                return null;
+
+            retired = false;
+
+            return this;
+        }
+
+        /**
+         * @param val Value.
+         * @param sign {@code 1} to add value, {@code -1} to subtract it.
+         */
+        void add(double val, int sign) {
+            cnt.add(sign);
+            sum.add(sign * val);
+
+            if (sign > 0) {
+                long cur;
+
+                while (val < Double.longBitsToDouble(cur = min.get()))
+                    if (min.compareAndSet(cur, Double.doubleToRawLongBits(val)))
+                        break;
+
+                while (val > Double.longBitsToDouble(cur = max.get()))
+                    if (max.compareAndSet(cur, Double.doubleToRawLongBits(val)))
+                        break;
+            }
+        }
+
+        /**
+         * @return Current aggregate.
+         */
+        Aggregate snapshot() {
+            long c = cnt.sum();
+
+            return new Aggregate(c, sum.sum(),
+                c == 0 ? Double.NaN : Double.longBitsToDouble(min.get()),
+                c == 0 ? Double.NaN : Double.longBitsToDouble(max.get()));
+        }
+    }
+
+    /**
+     * Aggregate of a single group.
+     */
+    public static class Aggregate implements Serializable {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** Count. */
+        private final long cnt;
+
+        /** Sum. */
+        private final double sum;
+
+        /** Minimum. */
+        private final double min;
+
+        /** Maximum. */
+        private final double max;
+
+        /**
+         * @param cnt Count.
+         * @param sum Sum.
+         * @param min Minimum.
+         * @param max Maximum.
+         */
+        Aggregate(long cnt, double sum, double min, double max) {
+            this.cnt = cnt;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+        }
+
+        /**
+         * @return Count.
+         */
+        public long count() {
+            return cnt;
+        }
+
+        /**
+         * @return Sum.
+         */
+        public double sum() {
+            return sum;
+        }
+
+        /**
+         * @return Minimum observed value.
+         */
+        public double min() {
+            return min;
+        }
+
+        /**
+         * @return Maximum observed value.
+         */
+        public double max() {
+            return max;
+        }
+
+        /**
+         * @return Average.
+         */
+        public double average() {
+            return cnt == 0 ? Double.NaN : sum / cnt;
+        }
+
+        /** {@inheritDoc} */
+        @Override public String toString() {
+            return "Aggregate [cnt=" + cnt + ", sum=" + sum + ", min=" + min + ", max=" + max +
+                ", avg=" + average() + ']';
+        }
+    }
+
+    /**
+     * Factory of the remote filter which passes only updates changing the aggregate.
+     */
+    private static class DeltaFilterFactory<K, V, G> implements Factory<CacheEntryEventFilter<K, V>> {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** Extracts group from a value. */
+        private final IgniteClosure<V, G> grpFn;
+
+        /** Extracts aggregated measure from a value. */
+        private final IgniteClosure<V, Double> valFn;
+
+        /**
+         * @param grpFn Extracts group from a value.
+         * @param valFn Extracts aggregated measure from a value.
+         */
+        DeltaFilterFactory(IgniteClosure<V, G> grpFn, IgniteClosure<V, Double> valFn) {
+            this.grpFn = grpFn;
+            this.valFn = valFn;
+        }
+
+        /** {@inheritDoc} */
+        @Override public CacheEntryEventFilter<K, V> create() {
+            return new CacheEntryEventFilter<K, V>() {
+                @Override public boolean evaluate(CacheEntryEvent<? extends K, ? extends V> e) {
+                    V oldVal = e.getOldValue();
+                    V newVal = e.getValue();
+
+                    if (e.getEventType() != javax.cache.event.EventType.UPDATED || oldVal == null || newVal == null)
+                        return true;
+
+                    return !Objects.equals(grpFn.apply(oldVal), grpFn.apply(newVal)) ||
+                        !Objects.equals(valFn.apply(oldVal), valFn.apply(newVal));
+                }
+            };
+        }
+    }
+}
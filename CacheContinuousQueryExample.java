@@ -1,17 +1,19 @@
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.cache.Cache;
 import javax.cache.configuration.Factory;
 import javax.cache.event.CacheEntryEvent;
 import javax.cache.event.CacheEntryEventFilter;
-import javax.cache.event.CacheEntryUpdatedListener;
 
 import org.apache.ignite.Ignite;
 import org.apache.ignite.IgniteCache;
 import org.apache.ignite.Ignition;
 import org.apache.ignite.cache.query.ContinuousQuery;
-import org.apache.ignite.cache.query.QueryCursor;
 import org.apache.ignite.cache.query.ScanQuery;
 import org.apache.ignite.lang.IgniteBiPredicate;
 
+import com.bizruntime.Ignite.Ignite.AdmissionController;
+
 public class CacheContinuousQueryExample {
 	 private static final String CACHE_NAME = CacheContinuousQueryExample.class.getSimpleName();
 
@@ -27,7 +29,8 @@ public class CacheContinuousQueryExample {
 	            System.out.println(">>> Cache continuous query example started.");
 
 	            // Auto-close cache at the end of the example.
-	            try (IgniteCache<Integer, String> cache = ignite.getOrCreateCache(CACHE_NAME)) {
+	            try (IgniteCache<Integer, String> cache = ignite.getOrCreateCache(CACHE_NAME);
+	                 AdmissionController admission = new AdmissionController(ignite).start()) {
 	                int keyCnt = 20;
 
 	                // These entries will be queried by initial predicate.
@@ -43,14 +46,6 @@ public class CacheContinuousQueryExample {
 	                    }
 	                }));
 
-	                // Callback that is called locally when update notifications are received.
-	                qry.setLocalListener(new CacheEntryUpdatedListener<Integer, String>() {
-	                    @Override public void onUpdated(Iterable<CacheEntryEvent<? extends Integer, ? extends String>> evts) {
-	                        for (CacheEntryEvent<? extends Integer, ? extends String> e : evts)
-	                            System.out.println("Updated entry [key=" + e.getKey() + ", val=" + e.getValue() + ']');
-	                    }
-	                });
-
 	                // This filter will be evaluated remotely on all nodes.
 	                // Entry that pass this filter will be sent to the caller.
 	                qry.setRemoteFilterFactory(new Factory<CacheEntryEventFilter<Integer, String>>() {
@@ -63,19 +58,53 @@ public class CacheContinuousQueryExample {
 	                    }
 	                });
 
-	                // Execute query.
-	                try (QueryCursor<Cache.Entry<Integer, String>> cur = cache.query(qry)) {
-	                    // Iterate through existing data.
-	                    for (Cache.Entry<Integer, String> e : cur)
-	                        System.out.println("Queried existing entry [key=" + e.getKey() + ", val=" + e.getValue() + ']');
+	                // Execute query, initial entries and update notifications are delivered as subscriber
+	                // requests them, at most 16 notifications are buffered while subscriber is busy.
+	                ContinuousQueryPublisher<Integer, String> pub = new ContinuousQueryPublisher<>(cache, qry, 16);
+
+	                AtomicReference<Flow.Subscription> subscription = new AtomicReference<>();
+
+	                pub.subscribe(new Flow.Subscriber<Cache.Entry<Integer, String>>() {
+	                    private Flow.Subscription s;
+
+	                    @Override public void onSubscribe(Flow.Subscription s) {
+	                        this.s = s;
+
+	                        subscription.set(s);
+
+	                        s.request(1);
+	                    }
+
+	                    @Override public void onNext(Cache.Entry<Integer, String> e) {
+	                        // Slow down consumer while memory is under pressure.
+	                        admission.admit();
+
+	                        if (e instanceof CacheEntryEvent)
+	                            System.out.println("Updated entry [key=" + e.getKey() + ", val=" + e.getValue() + ']');
+	                        else
+	                            System.out.println("Queried existing entry [key=" + e.getKey() + ", val=" + e.getValue() + ']');
+
+	                        s.request(1);
+	                    }
+
+	                    @Override public void onError(Throwable e) {
+	                        e.printStackTrace();
+	                    }
+
+	                    @Override public void onComplete() {
+	                        // No-op, continuous query never completes.
+	                    }
+	                });
+
+	                // Add a few more keys and watch more query notifications.
+	                for (int i = keyCnt; i < keyCnt + 10; i++)
+	                    cache.put(i, Integer.toString(i));
 
-	                    // Add a few more keys and watch more query notifications.
-	                    for (int i = keyCnt; i < keyCnt + 10; i++)
-	                        cache.put(i, Integer.toString(i));
+	                // Wait for a while while subscriber is notified about remaining puts.
+	                Thread.sleep(2000);
 
-	                    // Wait for a while while callback is notified about remaining puts.
-	                    Thread.sleep(2000);
-	                }
+	                // Cancelling subscription closes the query.
+	                subscription.get().cancel();
 	            }
 	            finally {
 	                // Distributed cache could be removed from cluster only by #destroyCache() call.
@@ -0,0 +1,616 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.cache.Cache;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.IgniteLogger;
+import org.apache.ignite.cache.affinity.Affinity;
+import org.apache.ignite.cache.query.QueryCursor;
+import org.apache.ignite.cache.query.ScanQuery;
+import org.apache.ignite.cluster.ClusterNode;
+import org.apache.ignite.events.CacheEvent;
+import org.apache.ignite.events.CacheRebalancingEvent;
+import org.apache.ignite.events.Event;
+import org.apache.ignite.events.EventType;
+import org.apache.ignite.lang.IgnitePredicate;
+
+/**
+ * Warms up caches on node startup, so that first requests after a restart or rebalance do not miss
+ * into the persistence or store layer.
+ * <p>
+ * Every local partition of the configured caches is scanned locally by a pool of warm-up threads, which
+ * pulls partition pages into memory. Configured key ranges are read through the cache, so that keys are
+ * loaded from the cache store if needed. Both are throttled to a configured number of entries per second
+ * to keep warm-up from saturating the disk under foreground load.
+ * <p>
+ * If no cache names are set, all caches are warmed up. Caches which are started after {@link #start()} are
+ * warmed up as soon as they are started.
+ * <p>
+ * Warm-up is delta-aware: partitions which were already warmed are skipped, and partitions which arrive
+ * later by rebalancing are warmed as soon as they are loaded. A partition which is still being rebalanced
+ * can not be scanned, it is skipped and warmed once it is loaded. {@link #start()} enables
+ * {@link EventType#EVT_CACHE_STARTED}, {@link EventType#EVT_CACHE_REBALANCE_PART_LOADED} and
+ * {@link EventType#EVT_CACHE_REBALANCE_PART_UNLOADED} on the local node, and {@link #close()} disables the
+ * ones which were not enabled before.
+ * <p>
+ * Progress is exposed as {@link CacheWarmupMXBean} registered in the node MBean server.
+ */
+public class CacheWarmup implements CacheWarmupMXBean, AutoCloseable {
+    /** Number of entries acquired from the throttle at once. */
+    private static final int THROTTLE_BATCH = 64;
+
+    /** Batch size for key range warm-up. */
+    private static final int KEY_BATCH = 256;
+
+    /** Ignite instance. */
+    private final Ignite ignite;
+
+    /** Logger. */
+    private final IgniteLogger log;
+
+    /** Events the warm-up listens to. */
+    private static final int[] EVTS = {
+        EventType.EVT_CACHE_STARTED,
+        EventType.EVT_CACHE_REBALANCE_PART_LOADED,
+        EventType.EVT_CACHE_REBALANCE_PART_UNLOADED
+    };
+
+    /** Caches to warm up, empty for all caches. */
+    private final Set<String> cacheNames = new TreeSet<>();
+
+    /** Key ranges to warm up. */
+    private final List<KeyRange> keyRanges = new ArrayList<>();
+
+    /** Number of warm-up threads. */
+    private int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+    /** Maximum number of warmed entries per second, {@code 0} for unlimited. */
+    private long maxEntriesPerSec;
+
+    /** Whether to warm up backup partitions. */
+    private boolean includeBackups = true;
+
+    /** Warmed partitions, {@code cacheName#part}. */
+    private final Set<String> warmed = ConcurrentHashMap.newKeySet();
+
+    /** Partitions which failed to warm up and wait for rebalancing, {@code cacheName#part}. */
+    private final Set<String> unready = ConcurrentHashMap.newKeySet();
+
+    /** Partitions loaded by rebalancing while their warm-up was in progress, {@code cacheName#part}. */
+    private final Set<String> loaded = ConcurrentHashMap.newKeySet();
+
+    /** Nanos when next throttle permit is available. */
+    private final AtomicLong nextPermit = new AtomicLong();
+
+    /** Total number of scheduled partitions. */
+    private final AtomicInteger partsTotal = new AtomicInteger();
+
+    /** Number of warmed partitions. */
+    private final AtomicInteger partsDone = new AtomicInteger();
+
+    /** Number of warmed entries. */
+    private final LongAdder entries = new LongAdder();
+
+    /** Number of pending tasks. */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /** Start time. */
+    private volatile long startTime;
+
+    /** End time, {@code 0} while warm-up is in progress. */
+    private volatile long endTime;
+
+    /** Warm-up executor. */
+    private ExecutorService exec;
+
+    /** Cache start and rebalance event listener. */
+    private IgnitePredicate<Event> lsnr;
+
+    /** Events which were enabled by the warm-up. */
+    private int[] enabledEvts;
+
+    /** Registered MBean name. */
+    private ObjectName mbeanName;
+
+    /**
+     * @param ignite Ignite instance.
+     */
+    public CacheWarmup(Ignite ignite) {
+        this.ignite = ignite;
+
+        log = ignite.log().getLogger(CacheWarmup.class);
+    }
+
+    /**
+     * @param cacheNames Caches to warm up, all caches are warmed up if not set.
+     * @return {@code this} for chaining.
+     */
+    public CacheWarmup setCacheNames(Collection<String> cacheNames) {
+        this.cacheNames.addAll(cacheNames);
+
+        return this;
+    }
+
+    /**
+     * Adds range of {@link Long} keys to warm up, only keys mapped to the local node are read.
+     *
+     * @param cacheName Cache name.
+     * @param from Lower key bound, inclusive.
+     * @param to Upper key bound, exclusive.
+     * @return {@code this} for chaining.
+     */
+    public CacheWarmup addKeyRange(String cacheName, long from, long to) {
+        keyRanges.add(new KeyRange(cacheName, from, to));
+
+        return this;
+    }
+
+    /**
+     * @param threads Number of warm-up threads.
+     * @return {@code this} for chaining.
+     */
+    public CacheWarmup setThreads(int threads) {
+        this.threads = threads;
+
+        return this;
+    }
+
+    /**
+     * @param maxEntriesPerSec Maximum number of warmed entries per second, {@code 0} for unlimited.
+     * @return {@code this} for chaining.
+     */
+    public CacheWarmup setMaxEntriesPerSecond(long maxEntriesPerSec) {
+        this.maxEntriesPerSec = maxEntriesPerSec;
+
+        return this;
+    }
+
+    /**
+     * @param includeBackups Whether to warm up backup partitions.
+     * @return {@code this} for chaining.
+     */
+    public CacheWarmup setIncludeBackups(boolean includeBackups) {
+        this.includeBackups = includeBackups;
+
+        return this;
+    }
+
+    /**
+     * Starts warm-up in background.
+     *
+     * @return {@code this} for chaining.
+     */
+    public synchronized CacheWarmup start() {
+        if (exec != null)
+            throw new IllegalStateException("Warm-up is already started.");
+
+        startTime = System.currentTimeMillis();
+
+        exec = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "cache-warmup");
+
+            t.setDaemon(true);
+
+            return t;
+        });
+
+        registerMBean();
+
+        enabledEvts = Arrays.stream(EVTS).filter(type -> !ignite.events().isEnabled(type)).toArray();
+
+        if (enabledEvts.length > 0)
+            ignite.events().enableLocal(enabledEvts);
+
+        lsnr = new IgnitePredicate<Event>() {
+            @Override public boolean apply(Event evt) {
+                if (evt.type() == EventType.EVT_CACHE_STARTED) {
+                    String cacheName = ((CacheEvent)evt).cacheName();
+
+                    // Listener is notified in the exchange thread, partitions are resolved by the warm-up pool.
+                    if (isWarmed(cacheName))
+                        submitCache(cacheName);
+
+                    return true;
+                }
+
+                CacheRebalancingEvent rebEvt = (CacheRebalancingEvent)evt;
+
+                if (!isWarmed(rebEvt.cacheName()))
+                    return true;
+
+                String key = rebEvt.cacheName() + '#' + rebEvt.partition();
+
+                if (evt.type() == EventType.EVT_CACHE_REBALANCE_PART_UNLOADED) {
+                    warmed.remove(key);
+                    unready.remove(key);
+                }
+                else {
+                    loaded.add(key);
+
+                    unready.remove(key);
+
+                    submitPartition(rebEvt.cacheName(), rebEvt.partition());
+                }
+
+                return true;
+            }
+        };
+
+        // Listen before the cache names are read, a cache started in between is submitted twice and deduplicated.
+        ignite.events().localListen(lsnr, EVTS);
+
+        for (String cacheName : cacheNames.isEmpty() ? ignite.cacheNames() : cacheNames) {
+            if (ignite.cacheNames().contains(cacheName))
+                submitCache(cacheName);
+        }
+
+        for (KeyRange range : keyRanges) {
+            pending.incrementAndGet();
+
+            exec.execute(() -> {
+                try {
+                    warmKeyRange(range);
+                }
+                catch (Exception e) {
+                    log.warning("Failed to warm up key range [cache=" + range.cacheName + ", from=" +
+                        range.from + ", to=" + range.to + ']', e);
+                }
+                finally {
+                    onTaskDone();
+                }
+            });
+        }
+
+        if (pending.get() == 0)
+            endTime = System.currentTimeMillis();
+
+        return this;
+    }
+
+    /**
+     * Waits for warm-up of partitions and key ranges known at the moment of the call.
+     *
+     * @param timeout Timeout.
+     * @param unit Timeout unit.
+     * @return {@code True} if warm-up finished.
+     * @throws InterruptedException If interrupted.
+     */
+    public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        while (pending.get() > 0) {
+            if (System.nanoTime() > deadline)
+                return false;
+
+            Thread.sleep(50);
+        }
+
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override public synchronized void close() {
+        if (exec == null)
+            return;
+
+        ignite.events().stopLocalListen(lsnr);
+
+        if (enabledEvts.length > 0)
+            ignite.events().disableLocal(enabledEvts);
+
+        exec.shutdownNow();
+
+        if (mbeanName != null) {
+            try {
+                mbeanServer().unregisterMBean(mbeanName);
+            }
+            catch (JMException e) {
+                log.warning("Failed to unregister warm-up MBean: " + mbeanName, e);
+            }
+        }
+
+        exec = null;
+    }
+
+    /** {@inheritDoc} */
+    @Override public int getPartitionsTotal() {
+        return partsTotal.get();
+    }
+
+    /** {@inheritDoc} */
+    @Override public int getPartitionsWarmed() {
+        return partsDone.get();
+    }
+
+    /** {@inheritDoc} */
+    @Override public long getEntriesWarmed() {
+        return entries.sum();
+    }
+
+    /** {@inheritDoc} */
+    @Override public long getDuration() {
+        long end = endTime;
+
+        return startTime == 0 ? 0 : (end == 0 ? System.currentTimeMillis() : end) - startTime;
+    }
+
+    /** {@inheritDoc} */
+    @Override public boolean isFinished() {
+        return startTime != 0 && pending.get() == 0;
+    }
+
+    /**
+     * @param cacheName Cache name.
+     * @return {@code True} if the cache is warmed up.
+     */
+    private boolean isWarmed(String cacheName) {
+        return cacheNames.isEmpty() ? ignite.cacheNames().contains(cacheName) : cacheNames.contains(cacheName);
+    }
+
+    /**
+     * Submits local partitions of the cache.
+     *
+     * @param cacheName Cache name.
+     */
+    private void submitCache(String cacheName) {
+        ExecutorService exec0 = exec;
+
+        if (exec0 == null)
+            return;
+
+        pending.incrementAndGet();
+        endTime = 0;
+
+        exec0.execute(() -> {
+            try {
+                Affinity<Object> aff = ignite.affinity(cacheName);
+                ClusterNode locNode = ignite.cluster().localNode();
+
+                int[] parts = includeBackups ? aff.allPartitions(locNode) : aff.primaryPartitions(locNode);
+
+                for (int part : parts)
+                    submitPartition(cacheName, part);
+            }
+            catch (Exception e) {
+                log.warning("Failed to resolve local partitions for warm-up [cache=" + cacheName + ']', e);
+            }
+            finally {
+                onTaskDone();
+            }
+        });
+    }
+
+    /**
+     * @param cacheName Cache name.
+     * @param part Partition.
+     */
+    private void submitPartition(String cacheName, int part) {
+        String key = cacheName + '#' + part;
+
+        if (unready.contains(key) || !warmed.add(key))
+            return;
+
+        ExecutorService exec0 = exec;
+
+        if (exec0 == null)
+            return;
+
+        partsTotal.incrementAndGet();
+        pending.incrementAndGet();
+        endTime = 0;
+
+        exec0.execute(() -> {
+            try {
+                loaded.remove(key);
+
+                warmPartition(cacheName, part);
+
+                partsDone.incrementAndGet();
+            }
+            catch (Exception e) {
+                // Local scan fails on a partition which is not owned yet, it is retried once rebalancing loads it.
+                unready.add(key);
+                warmed.remove(key);
+                partsTotal.decrementAndGet();
+
+                if (loaded.remove(key)) {
+                    unready.remove(key);
+
+                    submitPartition(cacheName, part);
+                }
+                else if (log.isInfoEnabled()) {
+                    log.info("Partition is not ready for warm-up, will retry once it is loaded [cache=" +
+                        cacheName + ", part=" + part + ", err=" + e.getMessage() + ']');
+                }
+            }
+            finally {
+                onTaskDone();
+            }
+        });
+    }
+
+    /**
+     * Reads all entries of the local partition.
+     *
+     * @param cacheName Cache name.
+     * @param part Partition.
+     */
+    private void warmPartition(String cacheName, int part) {
+        IgniteCache<Object, Object> cache = ignite.cache(cacheName).withKeepBinary();
+
+        ScanQuery<Object, Object> qry = new ScanQuery<>(part);
+
+        qry.setLocal(true);
+        qry.setPageSize(THROTTLE_BATCH * 16);
+
+        int cnt = 0;
+
+        try (QueryCursor<Cache.Entry<Object, Object>> cur = cache.query(qry)) {
+            for (Cache.Entry<Object, Object> ignored : cur) {
+                if (++cnt == THROTTLE_BATCH) {
+                    acquire(cnt);
+
+                    cnt = 0;
+                }
+            }
+        }
+
+        if (cnt > 0)
+            acquire(cnt);
+    }
+
+    /**
+     * Reads local keys of the range through the cache.
+     *
+     * @param range Key range.
+     */
+    private void warmKeyRange(KeyRange range) {
+        IgniteCache<Long, Object> cache = ignite.<Long, Object>cache(range.cacheName).withKeepBinary();
+        Affinity<Long> aff = ignite.affinity(range.cacheName);
+        ClusterNode locNode = ignite.cluster().localNode();
+
+        Set<Long> batch = new HashSet<>();
+
+        for (long key = range.from; key < range.to && !Thread.currentThread().isInterrupted(); key++) {
+            if (includeBackups ? !aff.isPrimaryOrBackup(locNode, key) : !aff.isPrimary(locNode, key))
+                continue;
+
+            batch.add(key);
+
+            if (batch.size() == KEY_BATCH) {
+                acquire(batch.size());
+
+                cache.getAll(batch);
+
+                batch.clear();
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            acquire(batch.size());
+
+            cache.getAll(batch);
+        }
+    }
+
+    /**
+     * Accounts warmed entries and waits for throttle permits.
+     *
+     * @param cnt Number of entries.
+     */
+    private void acquire(int cnt) {
+        entries.add(cnt);
+
+        if (maxEntriesPerSec <= 0)
+            return;
+
+        long cost = TimeUnit.SECONDS.toNanos(cnt) / maxEntriesPerSec;
+
+        while (true) {
+            long now = System.nanoTime();
+            long cur = nextPermit.get();
+            long slot = Math.max(cur, now);
+
+            if (nextPermit.compareAndSet(cur, slot + cost)) {
+                if (slot > now)
+                    parkUntil(slot);
+
+                return;
+            }
+        }
+    }
+
+    /**
+     * @param nanos {@link System#nanoTime()} to sleep until.
+     */
+    private static void parkUntil(long nanos) {
+        try {
+            long delay = nanos - System.nanoTime();
+
+            if (delay > 0)
+                TimeUnit.NANOSECONDS.sleep(delay);
+        }
+        catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** */
+    private void onTaskDone() {
+        if (pending.decrementAndGet() == 0) {
+            endTime = System.currentTimeMillis();
+
+            if (log.isInfoEnabled())
+                log.info("Cache warm-up finished [parts=" + partsDone.get() + ", entries=" + entries.sum() +
+                    ", duration=" + getDuration() + "ms]");
+        }
+    }
+
+    /**
+     * @return MBean server of the node.
+     */
+    private MBeanServer mbeanServer() {
+        MBeanServer srv = ignite.configuration().getMBeanServer();
+
+        return srv != null ? srv : ManagementFactory.getPlatformMBeanServer();
+    }
+
+    /** */
+    private void registerMBean() {
+        String instanceName = ignite.name() == null ? "default" : ignite.name();
+
+        try {
+            mbeanName = new ObjectName("org.apache.ignite.examples:group=CacheWarmup,name=" +
+                ObjectName.quote(instanceName));
+
+            mbeanServer().registerMBean(this, mbeanName);
+        }
+        catch (JMException e) {
+            mbeanName = null;
+
+            log.warning("Failed to register warm-up MBean, progress will not be exposed.", e);
+        }
+    }
+
+    /**
+     * Range of keys to warm up.
+     */
+    private static class KeyRange {
+        /** Cache name. */
+        private final String cacheName;
+
+        /** Lower key bound, inclusive. */
+        private final long from;
+
+        /** Upper key bound, exclusive. */
+        private final long to;
+
+        /**
+         * @param cacheName Cache name.
+         * @param from Lower key bound, inclusive.
+         * @param to Upper key bound, exclusive.
+         */
+        KeyRange(String cacheName, long from, long to) {
+            this.cacheName = cacheName;
+            this.from = from;
+            this.to = to;
+        }
+    }
+}
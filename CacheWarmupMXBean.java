@@ -0,0 +1,29 @@
+/**
+ * Cache warm-up progress metrics.
+ */
+public interface CacheWarmupMXBean {
+    /**
+     * @return Total number of partitions scheduled for warm-up.
+     */
+    public int getPartitionsTotal();
+
+    /**
+     * @return Number of warmed partitions.
+     */
+    public int getPartitionsWarmed();
+
+    /**
+     * @return Number of warmed entries.
+     */
+    public long getEntriesWarmed();
+
+    /**
+     * @return Warm-up duration in milliseconds.
+     */
+    public long getDuration();
+
+    /**
+     * @return {@code True} if there is no pending warm-up work.
+     */
+    public boolean isFinished();
+}
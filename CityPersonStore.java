@@ -0,0 +1,167 @@
+package maven.ignite;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.binary.BinaryObject;
+import org.apache.ignite.cache.CacheMode;
+import org.apache.ignite.configuration.CacheConfiguration;
+
+/**
+ * Cache templates persisting City and Person tables to a local H2 database in file mode with write-behind.
+ * <p>
+ * Templates have to be registered on server nodes before the tables are created, after that tables are
+ * created with {@code WITH "template=cityStore, value_type=City"} and
+ * {@code WITH "template=personStore, backups=1, affinity_key=city_id, key_type=PersonKey, value_type=Person"}.
+ */
+public class CityPersonStore {
+    /** City cache template name. */
+    public static final String CITY_TEMPLATE = "cityStore";
+
+    /** Person cache template name. */
+    public static final String PERSON_TEMPLATE = "personStore";
+
+    /** Default write-behind flush size. */
+    public static final int DFLT_FLUSH_SIZE = 10_240;
+
+    /** Default write-behind flush frequency in milliseconds. */
+    public static final long DFLT_FLUSH_FREQUENCY = 5_000;
+
+    /** Default write-behind batch size. */
+    public static final int DFLT_BATCH_SIZE = 512;
+
+    /** JDBC URL, the database file is shared by server nodes on the same host through an automatic server. */
+    private String url = "jdbc:h2:file:./work/store/city-person;AUTO_SERVER=TRUE";
+
+    /** Write-behind flush size. */
+    private int flushSize = DFLT_FLUSH_SIZE;
+
+    /** Write-behind flush frequency. */
+    private long flushFreq = DFLT_FLUSH_FREQUENCY;
+
+    /** Write-behind batch size. */
+    private int batchSize = DFLT_BATCH_SIZE;
+
+    /** Write-behind coalescing. */
+    private boolean coalescing = true;
+
+    /** Number of threads loading the cache. */
+    private int loadThreads = Runtime.getRuntime().availableProcessors();
+
+    /** Whether cache misses are loaded from the database. */
+    private boolean readThrough;
+
+    /**
+     * @param url JDBC URL.
+     * @return {@code this} for chaining.
+     */
+    public CityPersonStore setUrl(String url) {
+        this.url = url;
+
+        return this;
+    }
+
+    /**
+     * @param flushSize Maximum number of buffered updates before flush.
+     * @return {@code this} for chaining.
+     */
+    public CityPersonStore setFlushSize(int flushSize) {
+        this.flushSize = flushSize;
+
+        return this;
+    }
+
+    /**
+     * @param flushFreq Flush frequency in milliseconds.
+     * @return {@code this} for chaining.
+     */
+    public CityPersonStore setFlushFrequency(long flushFreq) {
+        this.flushFreq = flushFreq;
+
+        return this;
+    }
+
+    /**
+     * @param batchSize Maximum number of updates written to the database in one batch.
+     * @return {@code this} for chaining.
+     */
+    public CityPersonStore setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+
+        return this;
+    }
+
+    /**
+     * @param coalescing Whether several updates of the same key are written only once.
+     * @return {@code this} for chaining.
+     */
+    public CityPersonStore setCoalescing(boolean coalescing) {
+        this.coalescing = coalescing;
+
+        return this;
+    }
+
+    /**
+     * @param loadThreads Number of threads loading the cache.
+     * @return {@code this} for chaining.
+     */
+    public CityPersonStore setLoadThreads(int loadThreads) {
+        this.loadThreads = loadThreads;
+
+        return this;
+    }
+
+    /**
+     * Enables loading of cache misses from the database. SQL INSERT and MERGE are executed as entry processors,
+     * so with read-through every such write first loads the row from the database synchronously. Off by default,
+     * caches are warmed up with {@code loadCache()} instead.
+     *
+     * @param readThrough Whether cache misses are loaded from the database.
+     * @return {@code this} for chaining.
+     */
+    public CityPersonStore setReadThrough(boolean readThrough) {
+        this.readThrough = readThrough;
+
+        return this;
+    }
+
+    /**
+     * Registers City and Person cache templates.
+     *
+     * @param ignite Ignite instance.
+     */
+    public void registerTemplates(Ignite ignite) {
+        JdbcTableStore.Table city = new JdbcTableStore.Table("CITY", null, "City")
+            .addKeyColumn("ID", "BIGINT")
+            .addColumn("NAME", "VARCHAR");
+
+        JdbcTableStore.Table person = new JdbcTableStore.Table("PERSON", "PersonKey", "Person")
+            .addKeyColumn("ID", "BIGINT")
+            .addKeyColumn("CITY_ID", "BIGINT")
+            .addColumn("NAME", "VARCHAR");
+
+        ignite.addCacheConfiguration(template(CITY_TEMPLATE, city).setCacheMode(CacheMode.REPLICATED));
+        ignite.addCacheConfiguration(template(PERSON_TEMPLATE, person).setCacheMode(CacheMode.PARTITIONED));
+    }
+
+    /**
+     * @param name Template name.
+     * @param tbl Persisted table.
+     * @return Cache template.
+     */
+    private CacheConfiguration<Object, BinaryObject> template(String name, JdbcTableStore.Table tbl) {
+        CacheConfiguration<Object, BinaryObject> cfg = new CacheConfiguration<>(name);
+
+        cfg.setCacheStoreFactory(new JdbcTableStore.StoreFactory(url, tbl, loadThreads));
+        cfg.setStoreKeepBinary(true);
+        cfg.setReadThrough(readThrough);
+        cfg.setWriteThrough(true);
+
+        // Updates are acknowledged at memory speed and flushed to the database in batches.
+        cfg.setWriteBehindEnabled(true);
+        cfg.setWriteBehindFlushSize(flushSize);
+        cfg.setWriteBehindFlushFrequency(flushFreq);
+        cfg.setWriteBehindBatchSize(batchSize);
+        cfg.setWriteBehindCoalescing(coalescing);
+
+        return cfg;
+    }
+}
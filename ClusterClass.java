@@ -4,9 +4,7 @@ import java.util.Collection;
 
 import org.apache.ignite.Ignite;
 import org.apache.ignite.IgniteCluster;
-import org.apache.ignite.IgniteCompute;
 import org.apache.ignite.Ignition;
-import org.apache.ignite.cluster.ClusterGroup;
 import org.apache.ignite.cluster.ClusterMetrics;
 import org.apache.ignite.cluster.ClusterNode;
 import org.apache.ignite.lang.IgniteRunnable;
@@ -15,6 +13,10 @@ public class ClusterClass {
 			
 	static Ignite ignite;
 	
+	static TopologySnapshotService topology;
+	
+	static TopicNotifier<String> notifier;
+	
 	public void ClusterActive() {
 		ignite = Ignition.ignite();		
 		IgniteCluster cluster = ignite.cluster();			  
@@ -24,9 +26,12 @@ public class ClusterClass {
 	
 	public void Attributes() {
 		ignite = Ignition.ignite();
-		ClusterGroup workers = ignite.cluster().forAttribute("ROLE", "worker");
+		
+		// Worker nodes are kept up to date by discovery events instead of filtering topology on every call.
+		if (topology == null)
+			topology = new TopologySnapshotService(ignite).addAttributeGroup("ROLE", "worker").start();
 
-		Collection<ClusterNode> nodes = workers.nodes();
+		Collection<ClusterNode> nodes = topology.snapshot().attributeGroup("ROLE", "worker");
 	}
 	
 	
@@ -61,15 +66,34 @@ public class ClusterClass {
 
 		IgniteCluster cluster = ignite.cluster();
 
-		// Get compute instance which will only execute
-		// over remote nodes, i.e. not this node.
-		IgniteCompute compute = ignite.compute(cluster.forRemotes());
-
-		// Broadcast closure only to remote nodes.
-		compute.broadcast(new IgniteRunnable() {
+		// Broadcast closure only to remote nodes, i.e. not this node, in a pool of its own,
+		// so that it does not queue up with other jobs in the public pool.
+		WorkloadExecutors.EXAMPLES.broadcast("clusterBroadcast", cluster.forRemotes(), new IgniteRunnable() {
 		    @Override public void run() {
 		        // Print ID of the node on which this runnable is executing.
 		        System.out.println(">>> Hello Node: " + ignite.cluster().localNode().id());
 		    }
 		});
-	}
\ No newline at end of file
+	}
+	
+	
+	public void Notify() {
+
+		// Listeners are deployed on remote nodes once, every notification is then a plain topic message
+		// instead of a broadcast job, and small notifications are sent in batches.
+		if (notifier == null) {
+			notifier = new TopicNotifier<String>(ignite, ignite.cluster().forRemotes(), "hello");
+
+			notifier.listen((nodeId, msg) -> {
+				// Print ID of the node on which this message is received.
+				System.out.println(">>> " + msg + " Node: " + Ignition.localIgnite().cluster().localNode().id());
+
+				return true;
+			});
+		}
+
+		notifier.send("Hello");
+
+		notifier.flush();
+	}
+}
@@ -14,10 +14,14 @@ import org.apache.ignite.configuration.IgniteConfiguration;
 //import org.apache.ignite.internal.client.GridClientNode;
 import org.apache.ignite.lang.IgnitePredicate;
 
+import cluster.TopologySnapshotService;
+
 public class Clustergroups {
 	
 	static Ignite ignite;
 	
+	static TopologySnapshotService topology;
+	
 	public void RemoteNodes() {
 				
 		IgniteCluster cluster = ignite.cluster();
@@ -38,9 +42,12 @@ public class Clustergroups {
 		ClusterGroup cacheGroup = cluster.forCacheNodes("myCache");
 		System.out.println("Cache Group object :: " + cacheGroup);
 
-		// All data nodes responsible for caching data for "myCache".
-		ClusterGroup dataGroup = cluster.forDataNodes("myCache");
-		System.out.println("Data Group object :: " + dataGroup);
+		// All data nodes responsible for caching data for "myCache", kept up to date by discovery and cache events.
+		if (topology == null)
+			topology = new TopologySnapshotService(ignite).addDataNodesGroup("myCache").start();
+
+		Collection<ClusterNode> dataNodes = topology.snapshot().dataNodes("myCache");
+		System.out.println("Data Nodes :: " + dataNodes);
 
 		// All client nodes that access "myCache".
 		ClusterGroup clientGroup = cluster.forClientNodes("myCache");
@@ -3,39 +3,74 @@ import org.apache.ignite.IgniteCluster;
 import org.apache.ignite.IgniteException;
 import org.apache.ignite.Ignition;
 import org.apache.ignite.cluster.ClusterGroup;
+
+import cluster.TopicNotifier;
+import cluster.TopologySnapshotService;
+import cluster.WorkloadExecutors;
 public class ClusterGroupExample {
+    /** Whether hello is sent as a topic message instead of a broadcast closure, set with {@code -Dmessaging=true}. */
+    private static final boolean MESSAGING = Boolean.getBoolean("messaging");
+
+    /** Hello topic. */
+    private static final String HELLO_TOPIC = "hello";
     public static void main(String[] args) throws IgniteException {
-        try (Ignite ignite = Ignition.start("examples/config/example-ignite.xml")) {
-            if (!ExamplesUtils.checkMinTopologySize(ignite.cluster(), 2))
-                return;
+        try (Ignite ignite = Ignition.start(WorkloadExecutors.EXAMPLES.configure(
+            ExamplesUtils.loadConfiguration("examples/config/example-ignite.xml")))) {
+            // Topology size is read from a snapshot kept up to date by discovery events.
+            try (TopologySnapshotService top = new TopologySnapshotService(ignite).start()) {
+                if (!ExamplesUtils.checkMinTopologySize(top, 2))
+                    return;
+            }
 
             System.out.println();
             System.out.println("Compute example started.");
 
             IgniteCluster cluster = ignite.cluster();
 
+            TopicNotifier<String> hello = new TopicNotifier<String>(ignite, cluster, HELLO_TOPIC);
+
+            // Print out hello message on every cluster node receiving it.
+            if (MESSAGING) {
+                hello.listen((nodeId, msg) -> {
+                    System.out.println(">>> " + msg + " Node: " + Ignition.localIgnite().cluster().localNode().id());
+
+                    return true;
+                });
+            }
+
             // Say hello to all nodes in the cluster, including local node.
-            sayHello(ignite, cluster);
+            sayHello(hello, cluster);
 
             // Say hello to all remote nodes.
-            sayHello(ignite, cluster.forRemotes());
+            sayHello(hello, cluster.forRemotes());
 
             // Pick random node out of remote nodes.
             ClusterGroup randomNode = cluster.forRemotes().forRandom();
 
             // Say hello to a random node.
-            sayHello(ignite, randomNode);
+            sayHello(hello, randomNode);
 
             // Say hello to all nodes residing on the same host with random node.
-            sayHello(ignite, cluster.forHost(randomNode.node()));
+            sayHello(hello, cluster.forHost(randomNode.node()));
 
             // Say hello to all nodes that have current CPU load less than 50%.
-            sayHello(ignite, cluster.forPredicate(n -> n.metrics().getCurrentCpuLoad() < 0.5));
+            sayHello(hello, cluster.forPredicate(n -> n.metrics().getCurrentCpuLoad() < 0.5));
+
+            hello.close();
+
+            System.out.print(WorkloadExecutors.EXAMPLES.report(cluster));
         }
     }
-    private static void sayHello(Ignite ignite, final ClusterGroup grp) throws IgniteException {
-        // Print out hello message on all cluster nodes.
-        ignite.compute(grp).broadcast(
+    private static void sayHello(TopicNotifier<String> hello, final ClusterGroup grp) throws IgniteException {
+        if (MESSAGING) {
+            // Listener is already registered on all cluster nodes, message is delivered to nodes of the group only.
+            hello.send(grp, "Hello");
+
+            return;
+        }
+
+        // Print out hello message on all cluster nodes, in a pool of its own.
+        WorkloadExecutors.EXAMPLES.broadcast("sayHello", grp,
             () -> System.out.println(">>> Hello Node: " + grp.ignite().cluster().localNode().id()));
     }
 }
\ No newline at end of file
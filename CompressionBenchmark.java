@@ -0,0 +1,178 @@
+package com.bizruntime.Ignite.Ignite;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.zip.Deflater;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.configuration.CacheConfiguration;
+
+/**
+ * Compares memory saved by {@link ValueCompressor} against CPU cost of cache puts and gets for several
+ * codecs: no compression, deflate at fast and default levels, and the same with a trained dictionary.
+ * <p>
+ * Values are synthetic resumes, free text over a limited vocabulary similar to {@code Person.resume}.
+ * The dictionary is trained on a separate set of samples. Values are compressed transparently by
+ * {@link ValueCompressor#interceptor()}. Memory is the total size of stored payloads, CPU cost is thread CPU
+ * time per operation on the calling thread, which includes serialization and, with a single local node,
+ * compression in the interceptor and storing of the value.
+ * <p>
+ * Settings are passed as system properties: {@code values}, {@code valueSize} (characters) and
+ * {@code threshold} (bytes).
+ */
+public class CompressionBenchmark {
+    /** Number of values. */
+    private static final int VALUES = Integer.getInteger("values", 20_000);
+
+    /** Value size in characters. */
+    private static final int VALUE_SIZE = Integer.getInteger("valueSize", 4_096);
+
+    /** Minimum value size to compress. */
+    private static final int THRESHOLD = Integer.getInteger("threshold", 512);
+
+    /** Number of dictionary training samples. */
+    private static final int SAMPLES = 1_000;
+
+    /** Cache name. */
+    private static final String CACHE_NAME = "CompressionBenchmark";
+
+    /** Resume vocabulary. */
+    private static final String[] WORDS = {
+        "experienced", "software", "engineer", "with", "years", "of", "experience", "in", "Java", "distributed",
+        "systems", "designed", "and", "implemented", "high", "performance", "data", "processing", "pipelines",
+        "led", "a", "team", "developers", "Master", "Bachelor", "Degree", "Computer", "Science", "University",
+        "Apache", "Ignite", "Kafka", "Spark", "SQL", "cloud", "infrastructure", "responsible", "for", "the",
+        "architecture", "migration", "microservices", "customers", "delivered", "projects", "on", "time"
+    };
+
+    /**
+     * @param args Command line arguments, none required.
+     */
+    public static void main(String[] args) {
+        Random rnd = new Random(0);
+
+        List<String> samples = new ArrayList<>(SAMPLES);
+
+        for (int i = 0; i < SAMPLES; i++)
+            samples.add(resume(rnd, i));
+
+        String[] vals = new String[VALUES];
+
+        for (int i = 0; i < VALUES; i++)
+            vals[i] = resume(rnd, SAMPLES + i);
+
+        byte[] dict = ValueCompressor.trainDictionary(samples, ValueCompressor.DFLT_DICT_SIZE);
+
+        Map<String, Supplier<ValueCompressor>> codecs = new LinkedHashMap<>();
+
+        codecs.put("raw", () -> new ValueCompressor(Integer.MAX_VALUE, Deflater.DEFAULT_COMPRESSION));
+        codecs.put("deflate-1", () -> new ValueCompressor(THRESHOLD, Deflater.BEST_SPEED));
+        codecs.put("deflate-6", () -> new ValueCompressor(THRESHOLD, Deflater.DEFAULT_COMPRESSION));
+        codecs.put("deflate-dict-1", () -> new ValueCompressor(THRESHOLD, Deflater.BEST_SPEED, dict));
+        codecs.put("deflate-dict-6", () -> new ValueCompressor(THRESHOLD, Deflater.DEFAULT_COMPRESSION, dict));
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        try (Ignite ignite = Ignition.start("examples/config/example-ignite.xml")) {
+            System.out.println();
+            System.out.println(">>> Compression benchmark started [values=" + VALUES + ", valueSize=" + VALUE_SIZE +
+                ", threshold=" + THRESHOLD + ", dict=" + dict.length / 1024 + "KB]");
+
+            System.out.println(String.format(">>> %-16s %12s %8s %14s %14s %14s %14s", "codec", "stored, KB",
+                "saved", "put cpu, us", "get cpu, us", "compress, us", "decompress, us"));
+
+            // Warm up put and get paths of every codec on scratch caches, so that the first measured codec does
+            // not pay for class loading and JIT of the cache, and statistics of measured compressors stay clean.
+            for (Supplier<ValueCompressor> codec : codecs.values()) {
+                try (IgniteCache<Integer, String> cache = ignite.getOrCreateCache(configuration(codec.get()));
+                     ValueCompressor ignored = compressor(cache)) {
+                    for (int i = 0; i < Math.min(1_000, VALUES); i++) {
+                        cache.put(i, vals[i]);
+                        cache.get(i);
+                    }
+                }
+                finally {
+                    ignite.destroyCache(CACHE_NAME);
+                }
+            }
+
+            for (Map.Entry<String, Supplier<ValueCompressor>> e : codecs.entrySet()) {
+                try (IgniteCache<Integer, String> cache = ignite.getOrCreateCache(configuration(e.getValue().get()));
+                     ValueCompressor measured = compressor(cache)) {
+                    long start = threads.getCurrentThreadCpuTime();
+
+                    for (int i = 0; i < VALUES; i++)
+                        cache.put(i, vals[i]);
+
+                    long putCpu = threads.getCurrentThreadCpuTime() - start;
+
+                    start = threads.getCurrentThreadCpuTime();
+
+                    for (int i = 0; i < VALUES; i++) {
+                        if (!vals[i].equals(cache.get(i)))
+                            throw new AssertionError("Value mismatch: " + i);
+                    }
+
+                    long getCpu = threads.getCurrentThreadCpuTime() - start;
+
+                    System.out.println(String.format(">>> %-16s %12d %7.1f%% %14.1f %14.1f %14.1f %14.1f", e.getKey(),
+                        measured.storedBytes() / 1024, (1 - measured.ratio()) * 100, putCpu / 1e3 / VALUES,
+                        getCpu / 1e3 / VALUES, measured.avgCompressTime() / 1e3,
+                        measured.avgDecompressTime() / 1e3));
+                }
+                finally {
+                    ignite.destroyCache(CACHE_NAME);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param codec Compressor to take settings from.
+     * @return Configuration of the benchmark cache compressing values with the codec.
+     */
+    private static CacheConfiguration<Integer, String> configuration(ValueCompressor codec) {
+        return new CacheConfiguration<Integer, String>(CACHE_NAME).setInterceptor(codec.interceptor());
+    }
+
+    /**
+     * @param cache Cache with compressing interceptor.
+     * @return Compressor of the local node's interceptor, which holds statistics of the stored values.
+     */
+    private static ValueCompressor compressor(IgniteCache<Integer, String> cache) {
+        CacheConfiguration<?, ?> cfg = cache.getConfiguration(CacheConfiguration.class);
+
+        return ((ValueCompressor.Interceptor)cfg.getInterceptor()).compressor();
+    }
+
+    /**
+     * @param rnd Random.
+     * @param id Person ID.
+     * @return Resume text of about {@link #VALUE_SIZE} characters.
+     */
+    private static String resume(Random rnd, int id) {
+        StringBuilder sb = new StringBuilder(VALUE_SIZE + 32);
+
+        sb.append("Person ").append(id).append(" resume. ");
+
+        while (sb.length() < VALUE_SIZE) {
+            int words = 5 + rnd.nextInt(10);
+
+            for (int i = 0; i < words; i++)
+                sb.append(WORDS[rnd.nextInt(WORDS.length)]).append(' ');
+
+            sb.setLength(sb.length() - 1);
+            sb.append(". ");
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,344 @@
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.cache.Cache;
+import javax.cache.event.CacheEntryEvent;
+import javax.cache.event.CacheEntryUpdatedListener;
+
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.IgniteException;
+import org.apache.ignite.cache.query.ContinuousQuery;
+import org.apache.ignite.cache.query.QueryCursor;
+import org.apache.ignite.lang.IgniteAsyncCallback;
+
+/**
+ * {@link Flow.Publisher} over a {@link ContinuousQuery}.
+ * <p>
+ * Entries returned by the initial query, if any, are pulled from the query cursor on demand, and update
+ * events are then emitted from a bounded buffer. When the buffer is full, the local listener blocks until
+ * the subscriber requests more, so a slow subscriber stalls the notification flow of this query instead of
+ * growing an unbounded queue. The listener runs in the callback pool ({@link IgniteAsyncCallback}), so
+ * blocking it does not block system threads. If the buffer stays full longer than the overflow timeout,
+ * the subscription fails.
+ * <p>
+ * The publisher registers the query once, so it accepts a single subscriber.
+ */
+public class ContinuousQueryPublisher<K, V> implements Flow.Publisher<Cache.Entry<K, V>> {
+    /** Default time the listener waits for free buffer space, in milliseconds. */
+    public static final long DFLT_OVERFLOW_TIMEOUT = 30_000;
+
+    /** Cache. */
+    private final IgniteCache<K, V> cache;
+
+    /** Query, its local listener is set by the publisher. */
+    private final ContinuousQuery<K, V> qry;
+
+    /** Buffer of update events. */
+    private final BlockingQueue<Cache.Entry<K, V>> buf;
+
+    /** Executor emitting entries. */
+    private final Executor exec;
+
+    /** Time the listener waits for free buffer space, in milliseconds. */
+    private long overflowTimeout = DFLT_OVERFLOW_TIMEOUT;
+
+    /** Whether publisher has a subscriber. */
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    /**
+     * @param cache Cache.
+     * @param qry Query with optional initial query and remote filter.
+     * @param bufSize Maximum number of update events buffered for the subscriber.
+     */
+    public ContinuousQueryPublisher(IgniteCache<K, V> cache, ContinuousQuery<K, V> qry, int bufSize) {
+        this(cache, qry, bufSize, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param cache Cache.
+     * @param qry Query with optional initial query and remote filter.
+     * @param bufSize Maximum number of update events buffered for the subscriber.
+     * @param exec Executor emitting entries.
+     */
+    public ContinuousQueryPublisher(IgniteCache<K, V> cache, ContinuousQuery<K, V> qry, int bufSize,
+        Executor exec) {
+        this.cache = cache;
+        this.qry = qry;
+        this.exec = exec;
+
+        buf = new ArrayBlockingQueue<>(bufSize);
+    }
+
+    /**
+     * @param overflowTimeout Time the listener waits for free buffer space, in milliseconds.
+     * @return {@code this} for chaining.
+     */
+    public ContinuousQueryPublisher<K, V> setOverflowTimeout(long overflowTimeout) {
+        this.overflowTimeout = overflowTimeout;
+
+        return this;
+    }
+
+    /** {@inheritDoc} */
+    @Override public void subscribe(Flow.Subscriber<? super Cache.Entry<K, V>> sub) {
+        if (sub == null)
+            throw new NullPointerException("sub");
+
+        if (!subscribed.compareAndSet(false, true)) {
+            sub.onSubscribe(new Flow.Subscription() {
+                @Override public void request(long n) {
+                    // No-op.
+                }
+
+                @Override public void cancel() {
+                    // No-op.
+                }
+            });
+
+            sub.onError(new IllegalStateException("Continuous query publisher accepts a single subscriber."));
+
+            return;
+        }
+
+        QuerySubscription s = new QuerySubscription(sub);
+
+        qry.setLocalListener(new BufferingListener(s));
+
+        sub.onSubscribe(s);
+
+        try {
+            s.open();
+        }
+        catch (Throwable e) {
+            s.fail(e);
+        }
+    }
+
+    /**
+     * Listener putting events to the buffer, blocks while it is full.
+     */
+    @IgniteAsyncCallback
+    private class BufferingListener implements CacheEntryUpdatedListener<K, V> {
+        /** Subscription. */
+        private final QuerySubscription s;
+
+        /**
+         * @param s Subscription.
+         */
+        BufferingListener(QuerySubscription s) {
+            this.s = s;
+        }
+
+        /** {@inheritDoc} */
+        @Override public void onUpdated(Iterable<CacheEntryEvent<? extends K, ? extends V>> evts) {
+            for (CacheEntryEvent<? extends K, ? extends V> e : evts) {
+                if (s.done)
+                    return;
+
+                try {
+                    @SuppressWarnings("unchecked")
+                    Cache.Entry<K, V> entry = (Cache.Entry<K, V>)e;
+
+                    if (!buf.offer(entry, overflowTimeout, TimeUnit.MILLISECONDS)) {
+                        s.fail(new IgniteException("Subscriber did not request events for " + overflowTimeout +
+                            "ms, buffer of " + buf.size() + " events is full."));
+
+                        return;
+                    }
+                }
+                catch (InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+
+                    return;
+                }
+
+                s.signal();
+            }
+        }
+    }
+
+    /**
+     * Subscription emitting initial entries and then buffered events.
+     */
+    private class QuerySubscription implements Flow.Subscription {
+        /** Subscriber. */
+        private final Flow.Subscriber<? super Cache.Entry<K, V>> sub;
+
+        /** Outstanding demand. */
+        private final AtomicLong requested = new AtomicLong();
+
+        /** Number of drain requests, only the thread which moved it from zero drains. */
+        private final AtomicInteger wip = new AtomicInteger();
+
+        /** Query cursor. */
+        private volatile QueryCursor<Cache.Entry<K, V>> cur;
+
+        /** Iterator over initial query results, {@code null} once they are emitted. */
+        private Iterator<Cache.Entry<K, V>> initIt;
+
+        /** Failure to report to the subscriber. */
+        private volatile Throwable err;
+
+        /** Whether subscription is cancelled or terminated. */
+        private volatile boolean done;
+
+        /**
+         * @param sub Subscriber.
+         */
+        QuerySubscription(Flow.Subscriber<? super Cache.Entry<K, V>> sub) {
+            this.sub = sub;
+        }
+
+        /**
+         * Registers continuous query.
+         */
+        void open() {
+            QueryCursor<Cache.Entry<K, V>> c = cache.query(qry);
+
+            if (qry.getInitialQuery() != null)
+                initIt = c.iterator();
+
+            cur = c;
+
+            if (done)
+                c.close();
+            else
+                signal();
+        }
+
+        /** {@inheritDoc} */
+        @Override public void request(long n) {
+            if (done)
+                return;
+
+            if (n <= 0) {
+                fail(new IllegalArgumentException("Non-positive request: " + n));
+
+                return;
+            }
+
+            requested.accumulateAndGet(n, (r, add) -> r + add < 0 ? Long.MAX_VALUE : r + add);
+
+            signal();
+        }
+
+        /** {@inheritDoc} */
+        @Override public void cancel() {
+            done = true;
+
+            signal();
+        }
+
+        /**
+         * Fails subscription.
+         *
+         * @param e Error.
+         */
+        void fail(Throwable e) {
+            err = e;
+            done = true;
+
+            signal();
+        }
+
+        /**
+         * Schedules drain.
+         */
+        void signal() {
+            if (wip.getAndIncrement() == 0)
+                exec.execute(this::drain);
+        }
+
+        /**
+         * Emits requested entries.
+         */
+        private void drain() {
+            int missed = 1;
+
+            try {
+                for (;;) {
+                    if (done) {
+                        terminate();
+
+                        return;
+                    }
+
+                    // Query is not registered yet.
+                    if (cur == null) {
+                        missed = wip.addAndGet(-missed);
+
+                        if (missed == 0)
+                            return;
+
+                        continue;
+                    }
+
+                    long r = requested.get();
+                    long emitted = 0;
+
+                    while (emitted != r && !done) {
+                        Cache.Entry<K, V> e;
+
+                        if (initIt != null) {
+                            // May block while the next page of initial query results is fetched.
+                            if (!initIt.hasNext()) {
+                                initIt = null;
+
+                                continue;
+                            }
+
+                            e = initIt.next();
+                        }
+                        else if ((e = buf.poll()) == null)
+                            break;
+
+                        sub.onNext(e);
+
+                        emitted++;
+                    }
+
+                    if (emitted != 0 && r != Long.MAX_VALUE)
+                        requested.addAndGet(-emitted);
+
+                    missed = wip.addAndGet(-missed);
+
+                    if (missed == 0)
+                        return;
+                }
+            }
+            catch (Throwable e) {
+                err = e;
+                done = true;
+
+                terminate();
+            }
+        }
+
+        /**
+         * Closes query, releases blocked listener and reports error if any.
+         */
+        private void terminate() {
+            QueryCursor<Cache.Entry<K, V>> c = cur;
+
+            if (c != null)
+                c.close();
+
+            buf.clear();
+
+            Throwable e = err;
+
+            if (e != null) {
+                err = null;
+
+                sub.onError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,223 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count-min sketch estimating access frequency of keys in fixed memory, with a bounded set of
+ * heavy hitter candidates.
+ * <p>
+ * Counters are updated with atomic increments only, so the sketch can be updated from many threads
+ * on the hot path. Estimates never underestimate, overestimation is bounded by {@code total * e / width}
+ * with probability {@code 1 - exp(-depth)}.
+ * <p>
+ * Keys which are not candidates and whose estimate does not beat the cached minimum candidate estimate are
+ * rejected without locking. Other updates of the candidates take a short lock on the sketch.
+ */
+public class CountMinSketch {
+    /** Hash seeds of the rows. */
+    private static final long[] SEEDS = {
+        0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0x85EBCA77C2B2AE63L,
+        0x27D4EB2F165667C5L, 0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L, 0x94D049BB133111EBL
+    };
+
+    /** Number of rows. */
+    private final int depth;
+
+    /** Row width mask, width is a power of two. */
+    private final int mask;
+
+    /** Counters, row by row. */
+    private final AtomicLongArray cnts;
+
+    /** Maximum number of heavy hitters. */
+    private final int topK;
+
+    /** Heavy hitter candidates to their estimated counts, updated under the sketch lock. */
+    private final Map<Object, Long> top = new ConcurrentHashMap<>();
+
+    /** Candidates by estimated count, least frequent first, stale entries are skipped on read. */
+    private final PriorityQueue<Candidate> heap = new PriorityQueue<>();
+
+    /** Minimum estimated count of the candidates, {@code 0} while there are less than {@code topK}. */
+    private volatile long minEst;
+
+    /**
+     * @param depth Number of rows, at most {@code 8}.
+     * @param width Row width, rounded up to a power of two.
+     * @param topK Maximum number of heavy hitters to track.
+     */
+    public CountMinSketch(int depth, int width, int topK) {
+        if (depth < 1 || depth > SEEDS.length)
+            throw new IllegalArgumentException("Depth must be between 1 and " + SEEDS.length + ": " + depth);
+
+        int w = Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+
+        this.depth = depth;
+        this.topK = topK;
+
+        mask = w - 1;
+        cnts = new AtomicLongArray(depth * w);
+    }
+
+    /**
+     * Records single access of the key.
+     *
+     * @param key Key.
+     */
+    public void add(Object key) {
+        add(key, 1);
+    }
+
+    /**
+     * Records accesses of the key.
+     *
+     * @param key Key.
+     * @param cnt Number of accesses.
+     */
+    public void add(Object key, long cnt) {
+        int h = key.hashCode();
+        long est = Long.MAX_VALUE;
+
+        for (int i = 0; i < depth; i++)
+            est = Math.min(est, cnts.addAndGet(index(i, h), cnt));
+
+        if (topK > 0)
+            offer(key, est);
+    }
+
+    /**
+     * @param key Key.
+     * @return Estimated number of accesses.
+     */
+    public long estimate(Object key) {
+        int h = key.hashCode();
+        long est = Long.MAX_VALUE;
+
+        for (int i = 0; i < depth; i++)
+            est = Math.min(est, cnts.get(index(i, h)));
+
+        return est;
+    }
+
+    /**
+     * @return Heavy hitters with their estimated counts, most frequent first.
+     */
+    public List<Map.Entry<Object, Long>> topKeys() {
+        List<Map.Entry<Object, Long>> res = new ArrayList<>(top.entrySet());
+
+        res.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+
+        return res;
+    }
+
+    /**
+     * Resets all counters.
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < cnts.length(); i++)
+            cnts.set(i, 0);
+
+        top.clear();
+        heap.clear();
+
+        minEst = 0;
+    }
+
+    /**
+     * Updates heavy hitter candidates, the least frequent candidate is evicted when there are {@code topK}
+     * of them and the key is estimated higher.
+     *
+     * @param key Key.
+     * @param est Estimated count.
+     */
+    private void offer(Object key, long est) {
+        if (est <= minEst && !top.containsKey(key))
+            return;
+
+        synchronized (this) {
+            Long prev = top.get(key);
+
+            if (prev == null) {
+                if (top.size() >= topK) {
+                    Candidate min = peekMin();
+
+                    if (min.est >= est)
+                        return;
+
+                    heap.poll();
+                    top.remove(min.key);
+                }
+            }
+            else if (prev >= est)
+                return;
+
+            top.put(key, est);
+            heap.add(new Candidate(key, est));
+
+            // Every update of a candidate leaves a stale entry behind, rebuild before the heap outgrows the map.
+            if (heap.size() > topK * 4) {
+                heap.clear();
+
+                for (Map.Entry<Object, Long> e : top.entrySet())
+                    heap.add(new Candidate(e.getKey(), e.getValue()));
+            }
+
+            minEst = top.size() < topK ? 0 : peekMin().est;
+        }
+    }
+
+    /**
+     * Drops stale entries from the head of the heap, must be called under the sketch lock.
+     *
+     * @return Least frequent candidate or {@code null} if there are no candidates.
+     */
+    private Candidate peekMin() {
+        Candidate c;
+
+        while ((c = heap.peek()) != null && !Long.valueOf(c.est).equals(top.get(c.key)))
+            heap.poll();
+
+        return c;
+    }
+
+    /**
+     * @param row Row.
+     * @param h Key hash code.
+     * @return Counter index.
+     */
+    private int index(int row, int h) {
+        long x = (h ^ SEEDS[row]) * 0xFF51AFD7ED558CCDL;
+
+        x ^= x >>> 33;
+
+        return row * (mask + 1) + (int)(x & mask);
+    }
+
+    /**
+     * Heavy hitter candidate with its estimated count at the moment it was added to the heap.
+     */
+    private static class Candidate implements Comparable<Candidate> {
+        /** Key. */
+        private final Object key;
+
+        /** Estimated count. */
+        private final long est;
+
+        /**
+         * @param key Key.
+         * @param est Estimated count.
+         */
+        Candidate(Object key, long est) {
+            this.key = key;
+            this.est = est;
+        }
+
+        /** {@inheritDoc} */
+        @Override public int compareTo(Candidate o) {
+            return Long.compare(est, o.est);
+        }
+    }
+}
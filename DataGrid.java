@@ -1,21 +1,49 @@
 package com.bizruntime.Ignite.Ignite;
 
+import org.apache.ignite.DataRegionMetrics;
 import org.apache.ignite.Ignite;
 import org.apache.ignite.IgniteCache;
+import org.apache.ignite.IgniteInterruptedException;
 import org.apache.ignite.Ignition;
 
 public class DataGrid {
 	
 	public void PutAndGet() {
 		try (Ignite ignite = Ignition.start("examples/config/example-ignite.xml")) {
-		    IgniteCache<Integer, String> cache = ignite.getOrCreateCache("myCacheName");
+		    // Entries live for -Dsession.ttl milliseconds and are purged in the background at
+		    // -Dsession.purgeRate entries per second, by default they are kept forever.
+		    long ttl = Long.getLong("session.ttl", 0);
+
+		    IgniteCache<Integer, String> cache = ttl > 0 ?
+		        ignite.getOrCreateCache(SessionCache.<Integer, String>configuration("myCacheName", ttl, false)) :
+		        ignite.getOrCreateCache("myCacheName");
+
+		    try (SessionCache<Integer, String> sessions = ttl > 0 ? new SessionCache<>(ignite, cache)
+		        .setPurgeRate(Integer.getInteger("session.purgeRate", SessionCache.DFLT_PURGE_RATE)).start() : null) {
 		 
-		    // Store keys in cache (values will end up on different cache nodes).
-		    for (int i = 0; i < 10; i++)
-		        cache.put(i, Integer.toString(i));
+		        // Producers are delayed instead of running the node out of memory under bursty load.
+		        try (AdmissionController admission = new AdmissionController(ignite).start()) {
+		            // Store keys in cache (values will end up on different cache nodes).
+		            for (int i = 0; i < 10; i++) {
+		                admission.admit();
+
+		                if (sessions != null)
+		                    sessions.put(i, Integer.toString(i));
+		                else
+		                    cache.put(i, Integer.toString(i));
+		            }
+		        }
 		 
-		    for (int i = 0; i < 10; i++)
-		        System.out.println("Got [key=" + i + ", val=" + cache.get(i) + ']');
+		        for (int i = 0; i < 10; i++)
+		            System.out.println("Got [key=" + i + ", val=" + cache.get(i) + ']');
+
+		        // With -Dsession.churn=<seconds> sessions keep being created for that long while memory is sampled.
+		        if (sessions != null && Integer.getInteger("session.churn", 0) > 0)
+		            churn(ignite, sessions, Integer.getInteger("session.churn"));
+
+		        if (sessions != null)
+		            System.out.println(sessions.report());
+		    }
 		}
 	}
 	
@@ -34,6 +62,53 @@ public class DataGrid {
 	
 	
 
+	/**
+	 * Creates sessions at a constant rate and samples data region metrics every second. Under constant churn
+	 * used memory levels off once the first sessions expire, growth after that means expired entries are not
+	 * reclaimed fast enough.
+	 *
+	 * @param ignite Ignite instance.
+	 * @param sessions Session cache.
+	 * @param seconds Churn duration in seconds.
+	 */
+	private static void churn(Ignite ignite, SessionCache<Integer, String> sessions, int seconds) {
+	    System.out.println(">>> Session churn started [seconds=" + seconds + ", rate=10000/s]");
+	    System.out.println(String.format(">>> %6s %-12s %12s %14s %12s %12s", "sec", "region", "used, KB",
+	        "allocated, KB", "entries", "expired"));
+
+	    int key = 1_000;
+	    long start = System.currentTimeMillis();
+	    long nextSample = start;
+
+	    for (long now = start; now - start < seconds * 1000L; now = System.currentTimeMillis()) {
+	        for (int i = 0; i < 100; i++, key++)
+	            sessions.put(key, "session-" + key);
+
+	        if (now >= nextSample) {
+	            long entries = sessions.cache().sizeLong();
+	            long expired = sessions.metrics().expired();
+
+	            // Region metrics are reported only if enabled in the data region configuration.
+	            for (DataRegionMetrics m : ignite.dataRegionMetrics()) {
+	                System.out.println(String.format(">>> %6d %-12s %12d %14d %12d %12d", (now - start) / 1000,
+	                    m.getName(), m.getOffheapUsedSize() / 1024, m.getTotalAllocatedSize() / 1024, entries,
+	                    expired));
+	            }
+
+	            nextSample += 1000;
+	        }
+
+	        try {
+	            Thread.sleep(10);
+	        }
+	        catch (InterruptedException e) {
+	            Thread.currentThread().interrupt();
+
+	            throw new IgniteInterruptedException(e);
+	        }
+	    }
+	}
+
 	public static void main(String[] args) {
 		// TODO Auto-generated method stub
 		
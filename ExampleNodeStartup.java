@@ -1,7 +1,22 @@
+import org.apache.ignite.Ignite;
 import org.apache.ignite.IgniteException;
 import org.apache.ignite.Ignition;
+
+import cluster.WorkloadExecutors;
+import maven.ignite.CityPersonStore;
 public class ExampleNodeStartup {
     public static void main(String[] args) throws IgniteException {
-        Ignition.start("examples/config/example-ignite.xml");
+        // Dedicated pools of example workloads, jobs routed to them do not wait behind other jobs.
+        Ignite ignite = Ignition.start(WorkloadExecutors.EXAMPLES.configure(
+            ExamplesUtils.loadConfiguration("examples/config/example-ignite.xml")));
+
+        // Templates for City and Person tables persisted to the local database.
+        new CityPersonStore().registerTemplates(ignite);
+
+        // Warm up local partitions of all caches, including caches started later, so that first requests do not
+        // miss into the store.
+        new CacheWarmup(ignite)
+            .setMaxEntriesPerSecond(Long.getLong("warmup.maxEntriesPerSecond", 0))
+            .start();
     }
 }
@@ -1,8 +1,16 @@
+import java.io.File;
 import java.net.URL;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteException;
 import org.apache.ignite.cluster.ClusterGroup;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.springframework.context.support.GenericXmlApplicationContext;
+import org.springframework.core.io.FileSystemResource;
+
+import cluster.TopologySnapshotService;
 public class ExamplesUtils {
     /** */
     private static final ClassLoader CLS_LDR = ExamplesUtils.class.getClassLoader();
@@ -16,6 +24,32 @@ public class ExamplesUtils {
             System.exit(-1);
         }
     }
+    /**
+     * Loads node configuration from Spring XML, so that it can be amended in code before the node is started.
+     * Abstract parent beans are skipped, the file must define exactly one concrete {@link IgniteConfiguration}.
+     *
+     * @param path Path to Spring XML, relative to the working directory or to {@code IGNITE_HOME}.
+     * @return Node configuration.
+     */
+    public static IgniteConfiguration loadConfiguration(String path) {
+        File file = new File(path);
+
+        if (!file.exists()) {
+            String home = System.getProperty("IGNITE_HOME", System.getenv("IGNITE_HOME"));
+
+            if (home != null)
+                file = new File(home, path);
+        }
+
+        try (GenericXmlApplicationContext ctx = new GenericXmlApplicationContext(new FileSystemResource(file))) {
+            Map<String, IgniteConfiguration> cfgs = ctx.getBeansOfType(IgniteConfiguration.class);
+
+            if (cfgs.size() != 1)
+                throw new IgniteException("Expected one node configuration in " + file + ", found " + cfgs.size());
+
+            return cfgs.values().iterator().next();
+        }
+    }
     public static URL url(String path) {
         URL url = CLS_LDR.getResource(path);
 
@@ -44,6 +78,24 @@ public class ExamplesUtils {
 
         return true;
     }
+    public static boolean checkMinTopologySize(TopologySnapshotService top, int size) {
+        if (top.snapshot().nodes().size() < size) {
+            System.err.println(">>> Please start at least " + size + " cluster nodes to run example.");
+
+            return false;
+        }
+
+        return true;
+    }
+    public static boolean hasServerNodes(TopologySnapshotService top) {
+        if (top.snapshot().servers().isEmpty()) {
+            System.err.println("Server nodes not found (start data nodes with ExampleNodeStartup class)");
+
+            return false;
+        }
+
+        return true;
+    }
     public static void printQueryResults(List<?> res) {
         if (res == null || res.isEmpty())
             System.out.println("Query result set is empty.");
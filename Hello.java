@@ -3,14 +3,24 @@ package maven.ignite;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.List;
+
+import com.bizruntime.Ignite.Ignite.AdmissionController;
 
 public class Hello {
 
+	static final String URL = "jdbc:ignite:thin://192.168.1.16/";
+	
 	Connection conn = null;
 	
+	// Results of repeated queries, invalidated on updates of the tables
+	SqlResultCache resultCache = new SqlResultCache(100, 60_000);
+	
+	// Timings of all statements, slow ones are logged
+	QueryTracer tracer = new QueryTracer(100);
+	
 	public void Getconnection() {
 		// Register JDBC driver
 		try {
@@ -22,8 +32,7 @@ public class Hello {
 
 		// Open JDBC connection
 		try {
-			conn = DriverManager.getConnection(
-			    "jdbc:ignite:thin://192.168.1.16/");
+			conn = tracer.wrap(DriverManager.getConnection(URL));
 		} catch (SQLException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
@@ -54,27 +63,73 @@ public class Hello {
 	}
 	
 	
-	public void CreateIndexs() {
-		// Create indexes
+	public void CreateTableWithStore() {
+		
+		// Create database tables persisted to the local database with write-behind,
+		// templates are registered on server nodes with CityPersonStore#registerTemplates
+		
 		try (Statement stmt = conn.createStatement()) {
 
+		    stmt.executeUpdate("CREATE TABLE City11 (" + 
+		    " id LONG PRIMARY KEY, name VARCHAR) " +
+		    " WITH \"template=" + CityPersonStore.CITY_TEMPLATE + ", value_type=City\"");
+
+		    stmt.executeUpdate("CREATE TABLE Person1 (" +
+		    " id LONG, name VARCHAR, city_id LONG, " +
+		    " PRIMARY KEY (id, city_id)) " +
+		    " WITH \"template=" + CityPersonStore.PERSON_TEMPLATE + ", backups=1, affinityKey=city_id, " +
+		    "key_type=PersonKey, value_type=Person\"");
+		} catch (SQLException e) {
+			// TODO Auto-generated catch block
+			e.printStackTrace();
+		}
+	}
+	
+	
+	public void CreateIndexs() {
+		// Create indexes in background with 4 build threads per node and 32 bytes inlined into the index tree
+		IndexManager indexes = new IndexManager(URL);
+		
+		try {
 		    // Create an index on the City table
-		    stmt.executeUpdate("CREATE INDEX idx_city_name ON City11 (name)");
+		    IndexManager.IndexBuild cityIdx = indexes.createIndex("idx_city_name", "City11", "name", 4, 32);
 
 		    // Create an index on the Person table
-		    stmt.executeUpdate("CREATE INDEX idx_person_name ON Person1 (name)");
+		    IndexManager.IndexBuild personIdx = indexes.createIndex("idx_person_name", "Person1", "name", 4, 32);
+
+		    while (!personIdx.isDone()) {
+		        int[] progress = personIdx.progress();
+
+		        if (progress != null)
+		            System.out.println("Person index build: " + progress[0] + "/" + progress[1] + " partitions of the connected node");
+
+		        Thread.sleep(1000);
+		    }
+
+		    cityIdx.await();
+		    personIdx.await();
+
+		    System.out.println(cityIdx.report());
+		    System.out.println(personIdx.report());
 		} catch (SQLException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 		}
 	}
 	
 	
 	public void InsertData() {
+		// Delay inserts while client heap is under pressure
+		AdmissionController admission = new AdmissionController(null).start();
+		
 		// Populate City table
 		try (PreparedStatement stmt =
 		conn.prepareStatement("INSERT INTO City11 (id, name) VALUES (?, ?)")) {
 
+		    admission.admit();
+
 		    stmt.setLong(1, 1L);
 		    stmt.setString(2, "Forest Hill");
 		    stmt.executeUpdate();
@@ -95,6 +150,8 @@ public class Hello {
 		try (PreparedStatement stmt =
 		conn.prepareStatement("INSERT INTO Person1 (id, name, city_id) VALUES (?, ?, ?)")) {
 
+		    admission.admit();
+
 		    stmt.setLong(1, 1L);
 		    stmt.setString(2, "John Doe");
 		    stmt.setLong(3, 3L);
@@ -117,24 +174,26 @@ public class Hello {
 		} catch (SQLException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
+		} finally {
+			admission.close();
 		}
+		resultCache.invalidate("City11");
+		resultCache.invalidate("Person1");
 	}
 	
 	
 	public void ShowData() {
-		// Get data using an SQL join sample.
-		try (Statement stmt = conn.createStatement()) {
-		    try (ResultSet rs =
-		    stmt.executeQuery("SELECT p.name, c.name " +
+		// Get data using an SQL join sample, repeated calls are served from the result cache.
+		try {
+		    List<List<?>> rows = resultCache.query(conn, "SELECT p.name, c.name " +
 		    " FROM Person1 p, City11 c " +
-		    " WHERE p.city_id = c.id")) {
+		    " WHERE p.city_id = c.id", new Object[0], "Person1", "City11");
 
-		      System.out.println("Query result:");
+		    System.out.println("Query result:");
 
-		      while (rs.next())
-		         System.out.println(">>>    " + rs.getString(1) +
-		            ", " + rs.getString(2));
-		    }
+		    for (List<?> row : rows)
+		       System.out.println(">>>    " + row.get(0) +
+		          ", " + row.get(1));
 		} catch (SQLException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
@@ -152,6 +211,7 @@ public class Hello {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
+		resultCache.invalidate("City11");
 	}
 	
 	
@@ -166,6 +226,7 @@ public class Hello {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
+		resultCache.invalidate("Person1");
 	}
 	public static void main(String[] args) {
 		// TODO Auto-generated method stub
@@ -173,9 +234,11 @@ public class Hello {
 		Hello object = new Hello();
 		object.Getconnection();
 		//object.CreateTable();
+		//object.CreateTableWithStore();
 		//object.CreateIndexs();
 		object.InsertData();
 		System.out.println("done");
+		System.out.println(object.tracer.report());
 		//object.ShowData();
 		//object.UpdateData();
 		//object.RemoveData();
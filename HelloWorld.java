@@ -1,25 +1,77 @@
 import org.apache.ignite.Ignite;
 import org.apache.ignite.IgniteCache;
 import org.apache.ignite.IgniteException;
+import org.apache.ignite.IgniteInterruptedException;
 import org.apache.ignite.Ignition;
- 
+import org.apache.ignite.configuration.CacheConfiguration;
+
+import cluster.TopicNotifier;
+import cluster.WorkloadExecutors;
+import com.bizruntime.Ignite.Ignite.SessionCache;
+
 public class HelloWorld {
   public static void main(String[] args) throws IgniteException {
-    try (Ignite ignite = Ignition.start("examples/config/example-ignite.xml")) {
-      // Put values in cache.
-      IgniteCache<Integer, String> cache = ignite.getOrCreateCache("myCache");
-       
-      cache.put(1, "Hello");
-      cache.put(2, "World!");
- 
-      // Get values from cache and
-      // broadcast 'Hello World' on all the nodes in the cluster.
-      ignite.compute().broadcast(() -> {
-          String hello = cache.get(1);
-          String world = cache.get(2);
-
-        System.out.println(hello + " " + world);
-      });
+    try (Ignite ignite = Ignition.start(WorkloadExecutors.EXAMPLES.configure(
+        ExamplesUtils.loadConfiguration("examples/config/example-ignite.xml")))) {
+      // With -Dsession.ttl=<ms> values expire, 'World!' lives twice as long.
+      long ttl = Long.getLong("session.ttl", 0);
+
+      IgniteCache<Integer, String> cache = ignite.getOrCreateCache(ttl > 0 ?
+          SessionCache.<Integer, String>configuration("myCache", ttl, false) :
+          new CacheConfiguration<Integer, String>("myCache"));
+
+      try (SessionCache<Integer, String> sessions = ttl > 0 ? new SessionCache<>(ignite, cache).start() : null) {
+        // Put values in cache.
+        if (sessions != null) {
+          sessions.put(1, "Hello");
+          sessions.put(2, "World!", 2 * ttl);
+        }
+        else {
+          cache.put(1, "Hello");
+          cache.put(2, "World!");
+        }
+
+        // Get values from cache and send 'Hello World' as a topic message
+        // to all the nodes in the cluster, set with -Dmessaging=true.
+        if (Boolean.getBoolean("messaging")) {
+          // Message is fire-and-forget, closing notifier sends it and stops remote listeners.
+          // MessagingBenchmark shows acknowledged delivery.
+          try (TopicNotifier<String> notifier = new TopicNotifier<String>(ignite, ignite.cluster(), "helloWorld")) {
+            notifier.listen((nodeId, msg) -> {
+              System.out.println(msg);
+
+              return true;
+            });
+
+            notifier.send(cache.get(1) + " " + cache.get(2));
+          }
+        }
+        else {
+          // Get values from cache and
+          // broadcast 'Hello World' on all the nodes in the cluster, in a pool of its own.
+          WorkloadExecutors.EXAMPLES.broadcast("helloWorld", ignite.cluster(), () -> {
+              String hello = cache.get(1);
+              String world = cache.get(2);
+
+            System.out.println(hello + " " + world);
+          });
+        }
+
+        if (sessions != null) {
+          // Let 'Hello' expire and be purged.
+          try {
+            Thread.sleep(ttl + 1_000);
+          }
+          catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new IgniteInterruptedException(e);
+          }
+
+          System.out.println("After " + ttl + "ms: " + cache.get(1) + " " + cache.get(2));
+          System.out.println(sessions.report());
+        }
+      }
     }
   }
-}
\ No newline at end of file
+}
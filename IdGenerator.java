@@ -0,0 +1,95 @@
+package maven.ignite;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteAtomicSequence;
+import org.apache.ignite.configuration.AtomicConfiguration;
+
+/**
+ * Cluster-wide unique ID generator built on {@link IgniteAtomicSequence} with batched reservation.
+ * <p>
+ * Every thread reserves a range of {@code batchSize} IDs from the sequence and then draws IDs from it
+ * without any synchronization. The sequence itself reserves {@code batchSize * nodeBatches} IDs per node,
+ * so a cluster round trip is needed only once per that many IDs on a node. IDs are unique and grow within
+ * a thread, but are not ordered across threads and nodes, and unused IDs of a range are lost on restart.
+ */
+public class IdGenerator {
+    /** Default number of IDs reserved by a thread at once. */
+    public static final int DFLT_BATCH_SIZE = 1_000;
+
+    /** Number of thread batches reserved by a node at once. */
+    private static final int NODE_BATCHES = 16;
+
+    /** Sequence. */
+    private final IgniteAtomicSequence seq;
+
+    /** Number of IDs reserved by a thread at once. */
+    private final int batchSize;
+
+    /** Range of the current thread. */
+    private final ThreadLocal<Range> range = ThreadLocal.withInitial(Range::new);
+
+    /**
+     * @param ignite Ignite instance.
+     * @param name Sequence name, e.g. {@code "PersonId"}.
+     * @param batchSize Number of IDs reserved by a thread at once.
+     */
+    public IdGenerator(Ignite ignite, String name, int batchSize) {
+        this.batchSize = batchSize;
+
+        AtomicConfiguration cfg = new AtomicConfiguration()
+            .setAtomicSequenceReserveSize(batchSize * NODE_BATCHES);
+
+        seq = ignite.atomicSequence(name, cfg, 0, true);
+    }
+
+    /**
+     * @return Next ID.
+     */
+    public long nextId() {
+        Range r = range.get();
+
+        if (r.next == r.end)
+            reserve(r);
+
+        return r.next++;
+    }
+
+    /**
+     * Fills the array with next IDs.
+     *
+     * @param ids Array to fill.
+     */
+    public void nextIds(long[] ids) {
+        Range r = range.get();
+
+        for (int i = 0; i < ids.length; i++) {
+            if (r.next == r.end)
+                reserve(r);
+
+            ids[i] = r.next++;
+        }
+    }
+
+    /**
+     * Reserves new range for the current thread.
+     *
+     * @param r Range.
+     */
+    private void reserve(Range r) {
+        long start = seq.getAndAdd(batchSize) + 1;
+
+        r.next = start;
+        r.end = start + batchSize;
+    }
+
+    /**
+     * Reserved range of a thread.
+     */
+    private static class Range {
+        /** Next ID. */
+        private long next;
+
+        /** Range end, exclusive. */
+        private long end;
+    }
+}
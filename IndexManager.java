@@ -0,0 +1,394 @@
+package maven.ignite;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Builds SQL indexes in background through thin JDBC with configurable {@code PARALLEL} degree and
+ * {@code INLINE_SIZE}, exposing build progress.
+ * <p>
+ * Progress is read from the {@code IndexBuildCountPartitionsLeft} metric of the table cache group in
+ * {@code SYS.METRICS}, which is local to the node a connection is served by, and compared with the number
+ * of partitions of the group that node owns. By default only the node the manager is connected to is watched,
+ * with {@link #setProgressUrls(String...)} progress is summed over one connection per server node. If a write
+ * probe is set, it is run continuously before and during the build, so that the report shows how much
+ * concurrent write throughput the build costs.
+ */
+public class IndexManager {
+    /** Duration of write throughput measurement before the build in milliseconds. */
+    private static final long BASELINE_DURATION = 2_000;
+
+    /** JDBC URL. */
+    private final String url;
+
+    /** Write operation used to measure throughput impact, {@code null} to skip measurement. */
+    private SqlRunnable writeProbe;
+
+    /** URLs of server nodes progress is summed over. */
+    private List<String> progressUrls;
+
+    /**
+     * @param url Thin JDBC URL.
+     */
+    public IndexManager(String url) {
+        this.url = url;
+    }
+
+    /**
+     * @param writeProbe Write operation used to measure throughput impact, {@code null} to skip measurement.
+     * @return {@code this} for chaining.
+     */
+    public IndexManager setWriteProbe(SqlRunnable writeProbe) {
+        this.writeProbe = writeProbe;
+
+        return this;
+    }
+
+    /**
+     * @param urls Thin JDBC URLs, each pointing to a single distinct server node, e.g.
+     *      {@code jdbc:ignite:thin://10.0.0.1:10800}, progress is summed over them.
+     * @return {@code this} for chaining.
+     */
+    public IndexManager setProgressUrls(String... urls) {
+        progressUrls = Arrays.asList(urls);
+
+        return this;
+    }
+
+    /**
+     * Starts index build.
+     *
+     * @param name Index name.
+     * @param table Table name.
+     * @param cols Indexed columns, e.g. {@code "name"} or {@code "city_id, name DESC"}.
+     * @param parallel Number of threads building the index on each node, {@code 0} for default.
+     * @param inlineSize Index inline size in bytes, {@code -1} for default.
+     * @return Build handle.
+     * @throws SQLException If failed to connect.
+     */
+    public IndexBuild createIndex(String name, String table, String cols, int parallel, int inlineSize)
+        throws SQLException {
+        StringBuilder sql = new StringBuilder("CREATE INDEX IF NOT EXISTS ").append(name)
+            .append(" ON ").append(table).append(" (").append(cols).append(')');
+
+        if (inlineSize >= 0)
+            sql.append(" INLINE_SIZE ").append(inlineSize);
+
+        if (parallel > 0)
+            sql.append(" PARALLEL ").append(parallel);
+
+        return new IndexBuild(name, table, sql.toString()).start();
+    }
+
+    /**
+     * Runs write probe for the given time.
+     *
+     * @param duration Duration in milliseconds, or until the flag is set.
+     * @param stop Stop flag.
+     * @return Operations per second.
+     */
+    private double probe(long duration, AtomicBoolean stop) {
+        LongAdder ops = new LongAdder();
+
+        long start = System.nanoTime();
+        long end = duration > 0 ? start + duration * 1_000_000 : Long.MAX_VALUE;
+
+        try {
+            while (!stop.get() && System.nanoTime() < end) {
+                writeProbe.run();
+
+                ops.increment();
+            }
+        }
+        catch (SQLException e) {
+            System.err.println("Write probe failed: " + e.getMessage());
+        }
+
+        double secs = (System.nanoTime() - start) / 1e9;
+
+        return secs == 0 ? 0 : ops.sum() / secs;
+    }
+
+    /**
+     * Index build in progress.
+     */
+    public class IndexBuild {
+        /** Index name. */
+        private final String name;
+
+        /** Table name. */
+        private final String table;
+
+        /** DDL statement. */
+        private final String ddl;
+
+        /** Connection executing DDL. */
+        private Connection conn;
+
+        /** Build future. */
+        private final CompletableFuture<Void> fut = new CompletableFuture<>();
+
+        /** Whether build was cancelled. */
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+
+        /** Released when DDL execution starts. */
+        private final CountDownLatch started = new CountDownLatch(1);
+
+        /** Build start time. */
+        private volatile long startTime;
+
+        /** Build end time. */
+        private volatile long endTime;
+
+        /** Write throughput before the build. */
+        private volatile double baselineOps = Double.NaN;
+
+        /** Write throughput during the build. */
+        private volatile double buildOps = Double.NaN;
+
+        /**
+         * @param name Index name.
+         * @param table Table name.
+         * @param ddl DDL statement.
+         */
+        IndexBuild(String name, String table, String ddl) {
+            this.name = name;
+            this.table = table;
+            this.ddl = ddl;
+        }
+
+        /**
+         * @return {@code this} for chaining.
+         * @throws SQLException If failed to connect.
+         */
+        IndexBuild start() throws SQLException {
+            conn = DriverManager.getConnection(url);
+
+            AtomicBoolean built = new AtomicBoolean();
+
+            Thread builder = new Thread(() -> {
+                try {
+                    if (writeProbe != null)
+                        baselineOps = probe(BASELINE_DURATION, cancelled);
+
+                    startTime = System.currentTimeMillis();
+
+                    started.countDown();
+
+                    // Cancelled while measuring the baseline, nothing is built yet.
+                    if (!cancelled.get()) {
+                        try (Statement s = conn.createStatement()) {
+                            s.executeUpdate(ddl);
+                        }
+                    }
+
+                    fut.complete(null);
+                }
+                catch (Throwable e) {
+                    fut.completeExceptionally(e);
+                }
+                finally {
+                    endTime = System.currentTimeMillis();
+
+                    built.set(true);
+
+                    started.countDown();
+
+                    close(conn);
+                }
+            }, "index-build-" + name);
+
+            builder.setDaemon(true);
+            builder.start();
+
+            if (writeProbe != null) {
+                Thread prober = new Thread(() -> {
+                    try {
+                        started.await();
+                    }
+                    catch (InterruptedException ignored) {
+                        return;
+                    }
+
+                    buildOps = probe(0, built);
+                }, "index-build-probe-" + name);
+
+                prober.setDaemon(true);
+                prober.start();
+            }
+
+            return this;
+        }
+
+        /**
+         * @return Number of partitions already indexed and number of partitions owned, summed over watched
+         *      nodes, {@code null} if progress metric is not available on any of them.
+         * @throws SQLException If failed.
+         */
+        public int[] progress() throws SQLException {
+            if (fut.isDone() && !fut.isCompletedExceptionally())
+                return new int[] {1, 1};
+
+            String grp = "SQL_PUBLIC_" + table.toUpperCase(Locale.ROOT);
+
+            int[] res = null;
+
+            for (String nodeUrl : progressUrls != null ? progressUrls : Collections.singletonList(url)) {
+                int[] nodeRes = nodeProgress(nodeUrl, grp);
+
+                if (nodeRes == null)
+                    continue;
+
+                if (res == null)
+                    res = new int[2];
+
+                res[0] += nodeRes[0];
+                res[1] += nodeRes[1];
+            }
+
+            return res;
+        }
+
+        /**
+         * @param nodeUrl URL of a node.
+         * @param grp Cache group name.
+         * @return Number of partitions already indexed and number of partitions owned by the node the connection
+         *      is served by, {@code null} if progress metric is not available.
+         * @throws SQLException If failed.
+         */
+        private int[] nodeProgress(String nodeUrl, String grp) throws SQLException {
+            try (Connection c = DriverManager.getConnection(nodeUrl)) {
+                Integer owned = null;
+                Integer left = null;
+
+                // Both the metric and the local node are those of the node serving the connection.
+                String sql = "SELECT COUNT(*) FROM SYS.PARTITION_STATES p " +
+                    "JOIN SYS.CACHE_GROUPS g ON g.CACHE_GROUP_ID = p.CACHE_GROUP_ID " +
+                    "JOIN SYS.NODES n ON n.NODE_ID = p.NODE_ID " +
+                    "WHERE g.CACHE_GROUP_NAME = ? AND n.IS_LOCAL = TRUE AND p.STATE = 'OWNING'";
+
+                try (PreparedStatement s = c.prepareStatement(sql)) {
+                    s.setString(1, grp);
+
+                    try (ResultSet rs = s.executeQuery()) {
+                        if (rs.next())
+                            owned = rs.getInt(1);
+                    }
+                }
+
+                try (PreparedStatement s = c.prepareStatement("SELECT VALUE FROM SYS.METRICS WHERE NAME = ?")) {
+                    s.setString(1, "cacheGroups." + grp + ".IndexBuildCountPartitionsLeft");
+
+                    try (ResultSet rs = s.executeQuery()) {
+                        if (rs.next())
+                            left = Integer.valueOf(rs.getString(1));
+                    }
+                }
+
+                if (owned == null || left == null)
+                    return null;
+
+                return new int[] {Math.max(0, owned - left), owned};
+            }
+        }
+
+        /**
+         * Cancels the build as far as Ignite allows. A running {@code CREATE INDEX} cannot be interrupted and
+         * DDL operations are executed one by one, so {@code DROP INDEX} issued here waits for the build to
+         * complete and then drops the complete index. The call blocks until then. Cancelling before the
+         * baseline write measurement is over skips the build.
+         *
+         * @return {@code True} if build was not finished when cancelled.
+         */
+        public boolean cancel() {
+            if (fut.isDone() || !cancelled.compareAndSet(false, true))
+                return false;
+
+            try (Connection c = DriverManager.getConnection(url); Statement drop = c.createStatement()) {
+                drop.executeUpdate("DROP INDEX IF EXISTS " + name);
+            }
+            catch (SQLException e) {
+                System.err.println("Failed to drop index [name=" + name + ", err=" + e.getMessage() + ']');
+            }
+
+            return true;
+        }
+
+        /**
+         * Waits for the build to finish.
+         *
+         * @throws SQLException If build failed.
+         * @throws InterruptedException If interrupted.
+         */
+        public void await() throws SQLException, InterruptedException {
+            try {
+                fut.get();
+            }
+            catch (ExecutionException e) {
+                if (e.getCause() instanceof SQLException)
+                    throw (SQLException)e.getCause();
+
+                throw new SQLException("Index build failed: " + name, e.getCause());
+            }
+        }
+
+        /**
+         * @return {@code True} if build finished, successfully or not.
+         */
+        public boolean isDone() {
+            return fut.isDone();
+        }
+
+        /**
+         * @return Build summary: duration and write throughput before and during the build.
+         */
+        public String report() {
+            long end = endTime == 0 ? System.currentTimeMillis() : endTime;
+
+            String res = "Index build [name=" + name + ", table=" + table + ", duration=" +
+                (startTime == 0 ? 0 : end - startTime) + "ms, cancelled=" + cancelled.get();
+
+            if (!Double.isNaN(baselineOps) && !Double.isNaN(buildOps)) {
+                res += String.format(", writesBefore=%.0f ops/s, writesDuring=%.0f ops/s, impact=%.1f%%",
+                    baselineOps, buildOps, baselineOps == 0 ? 0 : (1 - buildOps / baselineOps) * 100);
+            }
+
+            return res + ']';
+        }
+    }
+
+    /**
+     * @param conn Connection.
+     */
+    private static void close(Connection conn) {
+        try {
+            conn.close();
+        }
+        catch (SQLException ignored) {
+            // No-op.
+        }
+    }
+
+    /**
+     * Write operation used to measure throughput impact.
+     */
+    public interface SqlRunnable {
+        /**
+         * @throws SQLException If failed.
+         */
+        public void run() throws SQLException;
+    }
+}
@@ -0,0 +1,481 @@
+package maven.ignite;
+
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.cache.Cache;
+import javax.cache.configuration.Factory;
+import javax.cache.integration.CacheLoaderException;
+import javax.cache.integration.CacheWriterException;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteException;
+import org.apache.ignite.binary.BinaryObject;
+import org.apache.ignite.binary.BinaryObjectBuilder;
+import org.apache.ignite.cache.affinity.Affinity;
+import org.apache.ignite.cache.store.CacheStoreAdapter;
+import org.apache.ignite.cluster.ClusterNode;
+import org.apache.ignite.lang.IgniteBiInClosure;
+import org.apache.ignite.lifecycle.LifecycleAware;
+import org.apache.ignite.resources.CacheNameResource;
+import org.apache.ignite.resources.IgniteInstanceResource;
+
+/**
+ * Cache store persisting a SQL table to a table of the same shape in a local JDBC database (e.g. H2 in file mode).
+ * <p>
+ * Keys and values are handled in binary form, so the cache must be configured with
+ * {@code setStoreKeepBinary(true)}. A table with a single primary key column is expected to have the column
+ * value as a cache key, a table with several primary key columns - a binary object of {@link Table#keyType()}.
+ * <p>
+ * Bulk writes and deletes are executed as JDBC batches in a single transaction, so with write-behind enabled
+ * every flush of the write-behind buffer costs one round trip to the database. Every row is stored with the
+ * Ignite partition of its key in an indexed {@code IGNITE_PART} column, so {@link #loadCache} on a node reads
+ * only rows of partitions the node owns, primary or backup, split between several threads, instead of the
+ * whole table. Rows stored before the column was added have no partition and are read by every node and
+ * filtered by affinity, until they are written again.
+ */
+public class JdbcTableStore extends CacheStoreAdapter<Object, BinaryObject> implements LifecycleAware {
+    /** Column holding partition of the row key. */
+    private static final String PART_COL = "IGNITE_PART";
+
+    /** Ignite instance. */
+    @IgniteInstanceResource
+    private Ignite ignite;
+
+    /** Cache name. */
+    @CacheNameResource
+    private String cacheName;
+
+    /** JDBC URL. */
+    private final String url;
+
+    /** Table. */
+    private final Table tbl;
+
+    /** Number of threads loading the cache. */
+    private final int loadThreads;
+
+    /**
+     * @param url JDBC URL.
+     * @param tbl Table.
+     * @param loadThreads Number of threads loading the cache.
+     */
+    public JdbcTableStore(String url, Table tbl, int loadThreads) {
+        this.url = url;
+        this.tbl = tbl;
+        this.loadThreads = loadThreads;
+    }
+
+    /** {@inheritDoc} */
+    @Override public void start() throws IgniteException {
+        StringBuilder sql = new StringBuilder("CREATE TABLE IF NOT EXISTS ").append(tbl.name).append(" (");
+
+        for (Map.Entry<String, String> col : tbl.cols.entrySet())
+            sql.append(col.getKey()).append(' ').append(col.getValue()).append(", ");
+
+        sql.append(PART_COL).append(" INT, PRIMARY KEY (").append(String.join(", ", tbl.keyCols)).append("))");
+
+        try (Connection conn = connection(); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(sql.toString());
+
+            // Tables created before rows were stored with partitions.
+            stmt.executeUpdate("ALTER TABLE " + tbl.name + " ADD COLUMN IF NOT EXISTS " + PART_COL + " INT");
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS " + tbl.name + '_' + PART_COL + "_IDX ON " + tbl.name +
+                " (" + PART_COL + ')');
+        }
+        catch (SQLException e) {
+            throw new IgniteException("Failed to create table: " + tbl.name, e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override public void stop() throws IgniteException {
+        // No-op.
+    }
+
+    /** {@inheritDoc} */
+    @Override public BinaryObject load(Object key) throws CacheLoaderException {
+        String sql = "SELECT " + String.join(", ", tbl.cols.keySet()) + " FROM " + tbl.name + " WHERE " +
+            String.join(" = ? AND ", tbl.keyCols) + " = ?";
+
+        try (Connection conn = connection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < tbl.keyCols.size(); i++)
+                stmt.setObject(i + 1, keyField(key, i));
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? value(rs) : null;
+            }
+        }
+        catch (SQLException e) {
+            throw new CacheLoaderException("Failed to load entry [table=" + tbl.name + ", key=" + key + ']', e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override public void write(Cache.Entry<?, ? extends BinaryObject> entry) throws CacheWriterException {
+        List<Cache.Entry<?, ? extends BinaryObject>> entries = new ArrayList<>(1);
+
+        entries.add(entry);
+
+        writeAll(entries);
+    }
+
+    /** {@inheritDoc} */
+    @Override public void writeAll(Collection<Cache.Entry<?, ? extends BinaryObject>> entries)
+        throws CacheWriterException {
+        String sql = "MERGE INTO " + tbl.name + " (" + String.join(", ", tbl.cols.keySet()) + ", " + PART_COL +
+            ") KEY (" + String.join(", ", tbl.keyCols) + ") VALUES (" + placeholders(tbl.cols.size() + 1) + ')';
+
+        Affinity<Object> aff = ignite.affinity(cacheName);
+
+        try (Connection conn = connection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+            conn.setAutoCommit(false);
+
+            for (Cache.Entry<?, ? extends BinaryObject> entry : entries) {
+                int idx = 1;
+
+                // Parameters follow the column list, key and value columns may interleave.
+                for (String col : tbl.cols.keySet()) {
+                    int keyIdx = tbl.keyCols.indexOf(col);
+
+                    stmt.setObject(idx++, keyIdx >= 0 ? keyField(entry.getKey(), keyIdx) : entry.getValue().field(col));
+                }
+
+                stmt.setInt(idx, aff.partition(entry.getKey()));
+
+                stmt.addBatch();
+            }
+
+            stmt.executeBatch();
+
+            conn.commit();
+
+            // Written entries are removed from collection, so that they are not retried.
+            entries.clear();
+        }
+        catch (SQLException e) {
+            throw new CacheWriterException("Failed to write entries [table=" + tbl.name +
+                ", cnt=" + entries.size() + ']', e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override public void delete(Object key) throws CacheWriterException {
+        List<Object> keys = new ArrayList<>(1);
+
+        keys.add(key);
+
+        deleteAll(keys);
+    }
+
+    /** {@inheritDoc} */
+    @Override public void deleteAll(Collection<?> keys) throws CacheWriterException {
+        String sql = "DELETE FROM " + tbl.name + " WHERE " + String.join(" = ? AND ", tbl.keyCols) + " = ?";
+
+        try (Connection conn = connection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+            conn.setAutoCommit(false);
+
+            for (Object key : keys) {
+                for (int i = 0; i < tbl.keyCols.size(); i++)
+                    stmt.setObject(i + 1, keyField(key, i));
+
+                stmt.addBatch();
+            }
+
+            stmt.executeBatch();
+
+            conn.commit();
+
+            keys.clear();
+        }
+        catch (SQLException e) {
+            throw new CacheWriterException("Failed to delete entries [table=" + tbl.name +
+                ", cnt=" + keys.size() + ']', e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override public void loadCache(IgniteBiInClosure<Object, BinaryObject> clo, Object... args)
+        throws CacheLoaderException {
+        Affinity<Object> aff = ignite.affinity(cacheName);
+        ClusterNode locNode = ignite.cluster().localNode();
+
+        // Entries are kept by their primary and backup nodes, each of them loads its own partitions.
+        int[] parts = aff.allPartitions(locNode);
+
+        int threads = Math.max(1, Math.min(loadThreads, parts.length));
+
+        ExecutorService exec = Executors.newFixedThreadPool(threads);
+
+        try {
+            List<Future<?>> futs = new ArrayList<>(threads + 1);
+
+            for (int i = 0; i < threads; i++) {
+                List<Integer> threadParts = new ArrayList<>();
+
+                for (int j = i; j < parts.length; j += threads)
+                    threadParts.add(parts[j]);
+
+                futs.add(exec.submit(() -> {
+                    loadPartitions(threadParts, clo);
+
+                    return null;
+                }));
+            }
+
+            futs.add(exec.submit(() -> {
+                loadUnpartitioned(aff, locNode, clo);
+
+                return null;
+            }));
+
+            for (Future<?> fut : futs)
+                fut.get();
+        }
+        catch (Exception e) {
+            throw new CacheLoaderException("Failed to load cache: " + tbl.name, e);
+        }
+        finally {
+            exec.shutdownNow();
+        }
+    }
+
+    /**
+     * Loads rows of the partitions.
+     *
+     * @param parts Partitions.
+     * @param clo Closure to pass loaded entries to.
+     * @throws SQLException If failed.
+     */
+    private void loadPartitions(List<Integer> parts, IgniteBiInClosure<Object, BinaryObject> clo)
+        throws SQLException {
+        if (parts.isEmpty())
+            return;
+
+        String sql = "SELECT " + String.join(", ", tbl.cols.keySet()) + " FROM " + tbl.name +
+            " WHERE " + PART_COL + " IN (" + placeholders(parts.size()) + ')';
+
+        try (Connection conn = connection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < parts.size(); i++)
+                stmt.setInt(i + 1, parts.get(i));
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next())
+                    clo.apply(key(rs), value(rs));
+            }
+        }
+    }
+
+    /**
+     * Loads rows stored without partition which belong to partitions of the local node.
+     *
+     * @param aff Cache affinity.
+     * @param locNode Local node.
+     * @param clo Closure to pass loaded entries to.
+     * @throws SQLException If failed.
+     */
+    private void loadUnpartitioned(Affinity<Object> aff, ClusterNode locNode,
+        IgniteBiInClosure<Object, BinaryObject> clo) throws SQLException {
+        String sql = "SELECT " + String.join(", ", tbl.cols.keySet()) + " FROM " + tbl.name +
+            " WHERE " + PART_COL + " IS NULL";
+
+        try (Connection conn = connection(); Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                Object key = key(rs);
+
+                if (aff.isPrimaryOrBackup(locNode, key))
+                    clo.apply(key, value(rs));
+            }
+        }
+    }
+
+    /**
+     * @param key Cache key.
+     * @param idx Key column index.
+     * @return Key column value.
+     */
+    private Object keyField(Object key, int idx) {
+        if (tbl.keyType == null)
+            return key;
+
+        return ((BinaryObject)key).field(tbl.keyCols.get(idx));
+    }
+
+    /**
+     * @param rs Result set positioned at a row.
+     * @return Cache key.
+     * @throws SQLException If failed.
+     */
+    private Object key(ResultSet rs) throws SQLException {
+        if (tbl.keyType == null)
+            return rs.getObject(tbl.keyCols.get(0));
+
+        BinaryObjectBuilder bldr = ignite.binary().builder(tbl.keyType);
+
+        for (String col : tbl.keyCols)
+            bldr.setField(col, rs.getObject(col));
+
+        return bldr.build();
+    }
+
+    /**
+     * @param rs Result set positioned at a row.
+     * @return Cache value.
+     * @throws SQLException If failed.
+     */
+    private BinaryObject value(ResultSet rs) throws SQLException {
+        BinaryObjectBuilder bldr = ignite.binary().builder(tbl.valType);
+
+        for (String col : tbl.cols.keySet()) {
+            if (!tbl.keyCols.contains(col))
+                bldr.setField(col, rs.getObject(col));
+        }
+
+        return bldr.build();
+    }
+
+    /**
+     * @return Connection.
+     * @throws SQLException If failed.
+     */
+    private Connection connection() throws SQLException {
+        return DriverManager.getConnection(url);
+    }
+
+    /**
+     * @param cnt Number of placeholders.
+     * @return Comma separated placeholders.
+     */
+    private static String placeholders(int cnt) {
+        StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < cnt; i++)
+            sb.append(i == 0 ? "?" : ", ?");
+
+        return sb.toString();
+    }
+
+    /**
+     * Shape of the persisted table.
+     */
+    public static class Table implements Serializable {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** Table name. */
+        private final String name;
+
+        /** Key binary type name, {@code null} for a single column key. */
+        private final String keyType;
+
+        /** Value binary type name. */
+        private final String valType;
+
+        /** Column names to SQL types, in table order. */
+        private final LinkedHashMap<String, String> cols = new LinkedHashMap<>();
+
+        /** Primary key columns. */
+        private final List<String> keyCols = new ArrayList<>();
+
+        /**
+         * @param name Table name.
+         * @param keyType Key binary type name, {@code null} for a single column key.
+         * @param valType Value binary type name.
+         */
+        public Table(String name, String keyType, String valType) {
+            this.name = name;
+            this.keyType = keyType;
+            this.valType = valType;
+        }
+
+        /**
+         * @param col Column name, upper case as in Ignite SQL.
+         * @param type SQL type.
+         * @return {@code this} for chaining.
+         */
+        public Table addKeyColumn(String col, String type) {
+            cols.put(col, type);
+            keyCols.add(col);
+
+            return this;
+        }
+
+        /**
+         * @param col Column name, upper case as in Ignite SQL.
+         * @param type SQL type.
+         * @return {@code this} for chaining.
+         */
+        public Table addColumn(String col, String type) {
+            cols.put(col, type);
+
+            return this;
+        }
+
+        /**
+         * @return Table name.
+         */
+        public String name() {
+            return name;
+        }
+
+        /**
+         * @return Key binary type name, {@code null} for a single column key.
+         */
+        public String keyType() {
+            return keyType;
+        }
+
+        /**
+         * @return Value binary type name.
+         */
+        public String valueType() {
+            return valType;
+        }
+    }
+
+    /**
+     * Store factory.
+     */
+    public static class StoreFactory implements Factory<JdbcTableStore> {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** JDBC URL. */
+        private final String url;
+
+        /** Table. */
+        private final Table tbl;
+
+        /** Number of threads loading the cache. */
+        private final int loadThreads;
+
+        /**
+         * @param url JDBC URL.
+         * @param tbl Table.
+         * @param loadThreads Number of threads loading the cache.
+         */
+        public StoreFactory(String url, Table tbl, int loadThreads) {
+            this.url = url;
+            this.tbl = tbl;
+            this.loadThreads = loadThreads;
+        }
+
+        /** {@inheritDoc} */
+        @Override public JdbcTableStore create() {
+            return new JdbcTableStore(url, tbl, loadThreads);
+        }
+    }
+}
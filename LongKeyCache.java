@@ -0,0 +1,304 @@
+package com.bizruntime.Ignite.Ignite;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongFunction;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.cache.affinity.Affinity;
+
+/**
+ * Facade over a cache with {@link Long} or {@link Integer} keys which accepts primitive keys.
+ * <p>
+ * Boxed keys for the range {@code [0, poolSize)} are created once and reused on every call, so tight
+ * put/get loops over a bounded key space do not allocate a new key object per operation. Bulk operations
+ * take primitive arrays, box every key at most once per call into a reusable array, group keys by partition
+ * on the arrays and send each group as a single batch reusing the same pre-sized key buffers.
+ * <p>
+ * Autoboxing already reuses {@link Integer} and {@link Long} objects for {@code [-128, 127]}, so the pool
+ * pays off only for key spaces well beyond that range.
+ * <p>
+ * Instances are not thread-safe, every thread should use its own facade over the same cache.
+ */
+public class LongKeyCache<K, V> {
+    /** Default maximum number of keys in one bulk batch. */
+    public static final int DFLT_BATCH_SIZE = 512;
+
+    /** Underlying cache. */
+    private final IgniteCache<K, V> cache;
+
+    /** Cache affinity. */
+    private final Affinity<K> aff;
+
+    /** Converts primitive key to the cache key. */
+    private final LongFunction<K> boxer;
+
+    /** Boxed keys for range {@code [0, pool.length)}. */
+    private final Object[] pool;
+
+    /** Maximum number of keys in one bulk batch. */
+    private final int batchSize;
+
+    /** Reusable key buffer for bulk gets and removes. */
+    private final Set<K> keyBuf;
+
+    /** Reusable entry buffer for bulk puts, keeps partition order of the batch. */
+    private final Map<K, V> entryBuf;
+
+    /** Reusable cache keys of the bulk call, boxed once. */
+    private Object[] boxed = new Object[0];
+
+    /** Reusable partition numbers of bulk keys. */
+    private int[] parts = new int[0];
+
+    /** Reusable indexes of bulk keys ordered by partition. */
+    private int[] order = new int[0];
+
+    /** Reusable per-partition counters. */
+    private final int[] cnts;
+
+    /**
+     * @param ignite Ignite instance.
+     * @param cache Cache.
+     * @param boxer Converts primitive key to the cache key.
+     * @param poolSize Number of pooled boxed keys starting from zero.
+     * @param batchSize Maximum number of keys in one bulk batch.
+     */
+    private LongKeyCache(Ignite ignite, IgniteCache<K, V> cache, LongFunction<K> boxer, int poolSize,
+        int batchSize) {
+        this.cache = cache;
+        this.boxer = boxer;
+        this.batchSize = batchSize;
+
+        // Sized so that a full batch never rehashes.
+        keyBuf = new HashSet<>(batchSize * 4 / 3 + 1);
+        entryBuf = new LinkedHashMap<>(batchSize * 4 / 3 + 1);
+
+        aff = ignite.affinity(cache.getName());
+        cnts = new int[aff.partitions() + 1];
+        pool = new Object[poolSize];
+
+        for (int i = 0; i < poolSize; i++)
+            pool[i] = boxer.apply(i);
+    }
+
+    /**
+     * Creates facade over a cache with {@link Long} keys.
+     *
+     * @param ignite Ignite instance.
+     * @param cache Cache.
+     * @param poolSize Number of pooled boxed keys starting from zero.
+     * @return Facade.
+     */
+    public static <V> LongKeyCache<Long, V> ofLong(Ignite ignite, IgniteCache<Long, V> cache, int poolSize) {
+        return new LongKeyCache<>(ignite, cache, Long::valueOf, poolSize, DFLT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates facade over a cache with {@link Integer} keys.
+     *
+     * @param ignite Ignite instance.
+     * @param cache Cache.
+     * @param poolSize Number of pooled boxed keys starting from zero.
+     * @return Facade.
+     */
+    public static <V> LongKeyCache<Integer, V> ofInt(Ignite ignite, IgniteCache<Integer, V> cache, int poolSize) {
+        return new LongKeyCache<>(ignite, cache, k -> {
+            if (k < Integer.MIN_VALUE || k > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Key is out of integer range: " + k);
+
+            return Integer.valueOf((int)k);
+        }, poolSize, DFLT_BATCH_SIZE);
+    }
+
+    /**
+     * @return Underlying cache.
+     */
+    public IgniteCache<K, V> cache() {
+        return cache;
+    }
+
+    /**
+     * @param key Key.
+     * @return Value or {@code null} if there is no mapping for the key.
+     */
+    public V getLong(long key) {
+        return cache.get(key(key));
+    }
+
+    /**
+     * @param key Key.
+     * @param val Value.
+     */
+    public void putLong(long key, V val) {
+        cache.put(key(key), val);
+    }
+
+    /**
+     * @param key Key.
+     * @return {@code True} if entry was removed.
+     */
+    public boolean removeLong(long key) {
+        return cache.remove(key(key));
+    }
+
+    /**
+     * Gets values for the given keys.
+     *
+     * @param keys Keys.
+     * @param vals Array to store values to, value at index {@code i} corresponds to key at index {@code i}.
+     */
+    public void getAll(long[] keys, V[] vals) {
+        if (vals.length < keys.length)
+            throw new IllegalArgumentException("Values array is shorter than keys array.");
+
+        int n = orderByPartition(keys);
+
+        for (int from = 0; from < n; from += batchSize) {
+            int to = Math.min(from + batchSize, n);
+
+            keyBuf.clear();
+
+            for (int i = from; i < to; i++)
+                keyBuf.add(boxed(order[i]));
+
+            Map<K, V> res = cache.getAll(keyBuf);
+
+            for (int i = from; i < to; i++) {
+                int idx = order[i];
+
+                vals[idx] = res.get(boxed(idx));
+            }
+        }
+
+        release(n);
+    }
+
+    /**
+     * Puts the given entries.
+     *
+     * @param keys Keys.
+     * @param vals Values, value at index {@code i} corresponds to key at index {@code i}.
+     */
+    public void putAll(long[] keys, V[] vals) {
+        if (vals.length < keys.length)
+            throw new IllegalArgumentException("Values array is shorter than keys array.");
+
+        int n = orderByPartition(keys);
+
+        for (int from = 0; from < n; from += batchSize) {
+            int to = Math.min(from + batchSize, n);
+
+            entryBuf.clear();
+
+            for (int i = from; i < to; i++) {
+                int idx = order[i];
+
+                entryBuf.put(boxed(idx), vals[idx]);
+            }
+
+            // Entries go in partition order, transactional caches need callers to agree on key order
+            // to avoid deadlocks of concurrent bulk updates.
+            cache.putAll(entryBuf);
+        }
+
+        release(n);
+    }
+
+    /**
+     * Removes the given keys.
+     *
+     * @param keys Keys.
+     */
+    public void removeAll(long[] keys) {
+        int n = orderByPartition(keys);
+
+        for (int from = 0; from < n; from += batchSize) {
+            int to = Math.min(from + batchSize, n);
+
+            keyBuf.clear();
+
+            for (int i = from; i < to; i++)
+                keyBuf.add(boxed(order[i]));
+
+            cache.removeAll(keyBuf);
+        }
+
+        release(n);
+    }
+
+    /**
+     * Boxes keys into {@link #boxed} and fills {@link #order} with key indexes sorted by partition
+     * (counting sort), so that consecutive batches touch as few partitions and nodes as possible.
+     *
+     * @param keys Keys.
+     * @return Number of keys.
+     */
+    private int orderByPartition(long[] keys) {
+        int n = keys.length;
+
+        if (parts.length < n) {
+            parts = new int[n];
+            order = new int[n];
+            boxed = new Object[n];
+        }
+
+        Arrays.fill(cnts, 0);
+
+        for (int i = 0; i < n; i++) {
+            K key = key(keys[i]);
+
+            boxed[i] = key;
+
+            int p = aff.partition(key);
+
+            parts[i] = p;
+            cnts[p + 1]++;
+        }
+
+        for (int p = 1; p < cnts.length; p++)
+            cnts[p] += cnts[p - 1];
+
+        for (int i = 0; i < n; i++)
+            order[cnts[parts[i]]++] = i;
+
+        return n;
+    }
+
+    /**
+     * @param idx Key index in the bulk call.
+     * @return Cache key boxed by {@link #orderByPartition(long[])}.
+     */
+    @SuppressWarnings("unchecked")
+    private K boxed(int idx) {
+        return (K)boxed[idx];
+    }
+
+    /**
+     * Clears buffers of the bulk call, so that they do not retain keys and values.
+     *
+     * @param n Number of keys.
+     */
+    private void release(int n) {
+        keyBuf.clear();
+        entryBuf.clear();
+
+        Arrays.fill(boxed, 0, n, null);
+    }
+
+    /**
+     * @param key Primitive key.
+     * @return Cache key, pooled if possible.
+     */
+    @SuppressWarnings("unchecked")
+    private K key(long key) {
+        if (key >= 0 && key < pool.length)
+            return (K)pool[(int)key];
+
+        return boxer.apply(key);
+    }
+}
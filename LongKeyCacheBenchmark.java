@@ -0,0 +1,141 @@
+package com.bizruntime.Ignite.Ignite;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+import com.sun.management.ThreadMXBean;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.Ignition;
+
+/**
+ * Compares heap allocated by the calling thread per operation for put/get loops over an {@link Integer}-keyed
+ * cache with autoboxed keys and with {@link LongKeyCache}.
+ * <p>
+ * Keys are {@code [0, keys)}, so all but the first 128 of them are outside the autoboxing cache. Every mode
+ * runs twice and the second run is reported, so that class loading and JIT do not count. Allocation includes
+ * everything the cache does on the calling thread, the difference between modes is what the facade saves.
+ * <p>
+ * Settings are passed as system properties: {@code keys} and {@code batch} (keys per bulk call).
+ */
+public class LongKeyCacheBenchmark {
+    /** Number of keys. */
+    private static final int KEYS = Integer.getInteger("keys", 100_000);
+
+    /** Number of keys per bulk call. */
+    private static final int BATCH = Integer.getInteger("batch", LongKeyCache.DFLT_BATCH_SIZE);
+
+    /** Cache name. */
+    private static final String CACHE_NAME = "LongKeyCacheBenchmark";
+
+    /**
+     * @param args Command line arguments, none required.
+     */
+    public static void main(String[] args) {
+        String[] vals = new String[KEYS];
+
+        for (int i = 0; i < KEYS; i++)
+            vals[i] = "value-" + i;
+
+        try (Ignite ignite = Ignition.start("examples/config/example-ignite.xml")) {
+            try (IgniteCache<Integer, String> cache = ignite.getOrCreateCache(CACHE_NAME)) {
+                LongKeyCache<Integer, String> keyCache = LongKeyCache.ofInt(ignite, cache, KEYS);
+
+                System.out.println();
+                System.out.println(">>> Long key cache benchmark started [keys=" + KEYS + ", batch=" + BATCH + ']');
+
+                System.out.println(String.format(">>> %-16s %14s %14s", "mode", "put, B/op", "get, B/op"));
+
+                print("boxed",
+                    i -> cache.put(i, vals[i]),
+                    i -> cache.get(i));
+
+                print("LongKeyCache",
+                    i -> keyCache.putLong(i, vals[i]),
+                    i -> keyCache.getLong(i));
+
+                Map<Integer, String> batch = new LinkedHashMap<>(BATCH * 4 / 3 + 1);
+                Set<Integer> batchKeys = new HashSet<>(BATCH * 4 / 3 + 1);
+
+                print("boxed bulk",
+                    from -> {
+                        batch.clear();
+
+                        for (int i = 0; i < BATCH; i++)
+                            batch.put((from + i) % KEYS, vals[(from + i) % KEYS]);
+
+                        cache.putAll(batch);
+                    },
+                    from -> {
+                        batchKeys.clear();
+
+                        for (int i = 0; i < BATCH; i++)
+                            batchKeys.add((from + i) % KEYS);
+
+                        cache.getAll(batchKeys);
+                    });
+
+                long[] bulkKeys = new long[BATCH];
+                String[] bulkVals = new String[BATCH];
+
+                print("LongKeyCache bulk",
+                    from -> {
+                        for (int i = 0; i < BATCH; i++) {
+                            bulkKeys[i] = (from + i) % KEYS;
+                            bulkVals[i] = vals[(from + i) % KEYS];
+                        }
+
+                        keyCache.putAll(bulkKeys, bulkVals);
+                    },
+                    from -> {
+                        for (int i = 0; i < BATCH; i++)
+                            bulkKeys[i] = (from + i) % KEYS;
+
+                        keyCache.getAll(bulkKeys, bulkVals);
+                    });
+            }
+            finally {
+                ignite.destroyCache(CACHE_NAME);
+            }
+        }
+    }
+
+    /**
+     * Runs put and get loops twice and prints allocation of the second run.
+     *
+     * @param mode Mode name.
+     * @param put Puts entries starting from the given key, bulk modes put a batch.
+     * @param get Gets entries starting from the given key, bulk modes get a batch.
+     */
+    private static void print(String mode, IntConsumer put, IntConsumer get) {
+        int step = mode.endsWith("bulk") ? BATCH : 1;
+
+        allocated(put, step);
+        allocated(get, step);
+
+        System.out.println(String.format(">>> %-16s %14.1f %14.1f", mode, allocated(put, step),
+            allocated(get, step)));
+    }
+
+    /**
+     * @param op Operation taking the first key.
+     * @param step Number of keys processed by one operation.
+     * @return Heap allocated by the current thread per key in bytes.
+     */
+    private static double allocated(IntConsumer op, int step) {
+        ThreadMXBean threads = (ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+        long tid = Thread.currentThread().getId();
+
+        long start = threads.getThreadAllocatedBytes(tid);
+
+        for (int from = 0; from < KEYS; from += step)
+            op.accept(from);
+
+        return (double)(threads.getThreadAllocatedBytes(tid) - start) / KEYS;
+    }
+}
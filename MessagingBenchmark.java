@@ -0,0 +1,293 @@
+package cluster;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCompute;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.cluster.ClusterGroup;
+import org.apache.ignite.lang.IgniteBiPredicate;
+import org.apache.ignite.lang.IgniteRunnable;
+import org.apache.ignite.resources.IgniteInstanceResource;
+
+/**
+ * Compares throughput and latency of fan-out notifications sent with closure broadcast and with
+ * {@link TopicNotifier} in unordered, batched unordered and batched ordered modes.
+ * <p>
+ * Every notification is acknowledged by every server node, latency is the time from sending a notification
+ * until all nodes acknowledged it. Acknowledgements of topic messages are batched the same way as the
+ * notifications themselves. At most {@code window} notifications are in flight.
+ * <p>
+ * Start one or more nodes with {@code ExampleNodeStartup} first, the benchmark node joins them as a server.
+ * Number of notifications and window are set with {@code -Dmsgs} and {@code -Dwindow}.
+ */
+public class MessagingBenchmark {
+    /** Number of notifications per mode. */
+    private static final int MSGS = Integer.getInteger("msgs", 100_000);
+
+    /** Maximum number of notifications in flight. */
+    private static final int WINDOW = Integer.getInteger("window", 1_000);
+
+    /**
+     * @param args Command line arguments, none required.
+     * @throws Exception If failed.
+     */
+    public static void main(String[] args) throws Exception {
+        try (Ignite ignite = Ignition.start("examples/config/example-ignite.xml")) {
+            ClusterGroup grp = ignite.cluster().forServers();
+
+            System.out.println();
+            System.out.println(">>> Messaging benchmark started [nodes=" + grp.nodes().size() + ", msgs=" + MSGS +
+                ", window=" + WINDOW + ']');
+
+            System.out.println(String.format(">>> %-20s %12s %10s %10s %10s", "mode", "msgs/s", "p50, ms", "p99, ms",
+                "sent msgs"));
+
+            print("broadcast", broadcast(ignite, grp));
+            print("unordered", messaging(ignite, grp, "bench-unordered", false, 1));
+            print("unordered, batched", messaging(ignite, grp, "bench-unordered-batched", false,
+                TopicNotifier.DFLT_BATCH_SIZE));
+            print("ordered, batched", messaging(ignite, grp, "bench-ordered-batched", true,
+                TopicNotifier.DFLT_BATCH_SIZE));
+        }
+    }
+
+    /**
+     * @param ignite Ignite instance.
+     * @param grp Receivers.
+     * @return Result.
+     * @throws InterruptedException If interrupted.
+     */
+    private static Result broadcast(Ignite ignite, ClusterGroup grp) throws InterruptedException {
+        IgniteCompute compute = ignite.compute(grp);
+
+        long[] lat = new long[MSGS];
+
+        Semaphore window = new Semaphore(WINDOW);
+        CountDownLatch done = new CountDownLatch(MSGS);
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < MSGS; i++) {
+            window.acquire();
+
+            int seq = i;
+            long sendTime = System.nanoTime();
+
+            compute.broadcastAsync(new Notification(seq)).listen(fut -> {
+                lat[seq] = System.nanoTime() - sendTime;
+
+                window.release();
+                done.countDown();
+            });
+        }
+
+        done.await();
+
+        // Every notification is a job request per node.
+        return new Result(System.nanoTime() - start, lat, (long)MSGS * grp.nodes().size());
+    }
+
+    /**
+     * @param ignite Ignite instance.
+     * @param grp Receivers.
+     * @param topic Topic.
+     * @param ordered Whether messages are ordered.
+     * @param batchSize Batch size.
+     * @return Result.
+     * @throws InterruptedException If interrupted.
+     */
+    private static Result messaging(Ignite ignite, ClusterGroup grp, String topic, boolean ordered, int batchSize)
+        throws InterruptedException {
+        int nodes = grp.nodes().size();
+
+        long[] sendTime = new long[MSGS];
+        long[] lat = new long[MSGS];
+
+        AtomicIntegerArray acks = new AtomicIntegerArray(MSGS);
+
+        Semaphore window = new Semaphore(WINDOW);
+        CountDownLatch done = new CountDownLatch(MSGS);
+
+        String ackTopic = topic + "-ack";
+
+        try (TopicNotifier<Integer> notifier = new TopicNotifier<Integer>(ignite, grp, topic)
+                .setOrdered(ordered).setBatchSize(batchSize);
+             TopicNotifier<Integer> ackNotifier = new TopicNotifier<Integer>(ignite, grp, ackTopic)) {
+            ackNotifier.localListen((nodeId, seq) -> {
+                if (acks.incrementAndGet(seq) == nodes) {
+                    lat[seq] = System.nanoTime() - sendTime[seq];
+
+                    window.release();
+                    done.countDown();
+                }
+
+                return true;
+            });
+
+            notifier.listen(new Ack(ackTopic, ordered, batchSize));
+
+            long start = System.nanoTime();
+
+            for (int i = 0; i < MSGS; i++) {
+                window.acquire();
+
+                sendTime[i] = System.nanoTime();
+
+                notifier.send(i);
+            }
+
+            notifier.flush();
+
+            done.await();
+
+            // Every batch is a message per node.
+            return new Result(System.nanoTime() - start, lat, notifier.batches() * nodes);
+        }
+        finally {
+            ignite.compute(grp).broadcast(new CloseAck(ackTopic));
+        }
+    }
+
+    /**
+     * @param mode Mode.
+     * @param res Result.
+     */
+    private static void print(String mode, Result res) {
+        long[] lat = res.lat;
+
+        Arrays.sort(lat);
+
+        System.out.println(String.format(">>> %-20s %12.0f %10.2f %10.2f %10d", mode,
+            MSGS / (res.dur / 1e9), lat[lat.length / 2] / 1e6, lat[(int)(lat.length * 0.99)] / 1e6, res.netMsgs));
+    }
+
+    /**
+     * Notification executed by broadcast.
+     */
+    private static class Notification implements IgniteRunnable {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** Sequence number. */
+        private final int seq;
+
+        /**
+         * @param seq Sequence number.
+         */
+        Notification(int seq) {
+            this.seq = seq;
+        }
+
+        /** {@inheritDoc} */
+        @Override public void run() {
+            // Same amount of work as acknowledged topic message: none.
+            assert seq >= 0;
+        }
+    }
+
+    /**
+     * Receiver listener acknowledging notifications to the sender.
+     */
+    private static class Ack implements IgniteBiPredicate<UUID, Integer> {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** Acknowledgement topic. */
+        private final String ackTopic;
+
+        /** Whether acknowledgements are ordered. */
+        private final boolean ordered;
+
+        /** Acknowledgement batch size. */
+        private final int batchSize;
+
+        /** Ignite instance. */
+        @IgniteInstanceResource
+        private transient Ignite ignite;
+
+        /**
+         * @param ackTopic Acknowledgement topic.
+         * @param ordered Whether acknowledgements are ordered.
+         * @param batchSize Acknowledgement batch size.
+         */
+        Ack(String ackTopic, boolean ordered, int batchSize) {
+            this.ackTopic = ackTopic;
+            this.ordered = ordered;
+            this.batchSize = batchSize;
+        }
+
+        /** {@inheritDoc} */
+        @Override public boolean apply(UUID nodeId, Integer seq) {
+            ConcurrentMap<String, TopicNotifier<Integer>> notifiers = ignite.cluster().nodeLocalMap();
+
+            TopicNotifier<Integer> notifier = notifiers.computeIfAbsent(ackTopic, t ->
+                new TopicNotifier<Integer>(ignite, ignite.cluster().forNodeId(nodeId), t)
+                    .setOrdered(ordered).setBatchSize(batchSize));
+
+            notifier.send(seq);
+
+            return true;
+        }
+    }
+
+    /**
+     * Closes acknowledgement notifier on a receiver.
+     */
+    private static class CloseAck implements IgniteRunnable {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** Acknowledgement topic. */
+        private final String ackTopic;
+
+        /** Ignite instance. */
+        @IgniteInstanceResource
+        private transient Ignite ignite;
+
+        /**
+         * @param ackTopic Acknowledgement topic.
+         */
+        CloseAck(String ackTopic) {
+            this.ackTopic = ackTopic;
+        }
+
+        /** {@inheritDoc} */
+        @Override public void run() {
+            Object notifier = ignite.cluster().nodeLocalMap().remove(ackTopic);
+
+            if (notifier != null)
+                ((TopicNotifier<?>)notifier).close();
+        }
+    }
+
+    /**
+     * Result of a mode.
+     */
+    private static class Result {
+        /** Duration in nanoseconds. */
+        private final long dur;
+
+        /** Latencies in nanoseconds. */
+        private final long[] lat;
+
+        /** Number of network messages sent by the sender. */
+        private final long netMsgs;
+
+        /**
+         * @param dur Duration in nanoseconds.
+         * @param lat Latencies in nanoseconds.
+         * @param netMsgs Number of network messages sent by the sender.
+         */
+        Result(long dur, long[] lat, long netMsgs) {
+            this.dur = dur;
+            this.lat = lat;
+            this.netMsgs = netMsgs;
+        }
+    }
+}
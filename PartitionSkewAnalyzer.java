@@ -0,0 +1,228 @@
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.cache.CacheMetrics;
+import org.apache.ignite.cache.CachePeekMode;
+import org.apache.ignite.lang.IgniteCallable;
+import org.apache.ignite.resources.IgniteInstanceResource;
+
+/**
+ * Detects partition skew and hot affinity keys of a partitioned cache, e.g. Person table partitioned
+ * by {@code city_id}.
+ * <p>
+ * Entry counts of primary partitions and off-heap size are collected from every data node by a compute job.
+ * Access frequency of affinity keys is sampled on the hot path with {@link #recordAccess(Object)} into a
+ * {@link CountMinSketch}. When the largest partition exceeds the mean by more than the configured ratio,
+ * the report suggests a composite affinity key which spreads every hot affinity key over several buckets.
+ * <p>
+ * Per-partition off-heap size is estimated from the node off-heap size proportionally to entry counts,
+ * since the public metrics expose off-heap size per node only, and requires cache statistics to be enabled.
+ */
+public class PartitionSkewAnalyzer {
+    /** Cache name. */
+    private final String cacheName;
+
+    /** Affinity key column, used in suggestions. */
+    private final String affCol;
+
+    /** Primary key column spreading an affinity key over buckets, used in suggestions. */
+    private final String idCol;
+
+    /** Ratio of the largest partition to the mean one which is considered skewed. */
+    private final double threshold;
+
+    /** Every N-th access is recorded. */
+    private final int sampleRate;
+
+    /** Sampled affinity key accesses. */
+    private final CountMinSketch sketch = new CountMinSketch(4, 1 << 14, 20);
+
+    /**
+     * @param cacheName Cache name.
+     * @param affCol Affinity key column, used in suggestions.
+     * @param idCol Primary key column spreading an affinity key over buckets, used in suggestions.
+     * @param threshold Ratio of the largest partition to the mean one which is considered skewed.
+     * @param sampleRate Every N-th access is recorded.
+     */
+    public PartitionSkewAnalyzer(String cacheName, String affCol, String idCol, double threshold, int sampleRate) {
+        this.cacheName = cacheName;
+        this.affCol = affCol;
+        this.idCol = idCol;
+        this.threshold = threshold;
+        this.sampleRate = Math.max(1, sampleRate);
+    }
+
+    /**
+     * Samples access of the affinity key, cheap enough to be called on the hot path.
+     *
+     * @param affKey Affinity key.
+     */
+    public void recordAccess(Object affKey) {
+        if (sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0)
+            sketch.add(affKey, sampleRate);
+    }
+
+    /**
+     * Collects partition statistics from all data nodes of the cache and builds report.
+     *
+     * @param ignite Ignite instance.
+     * @param topN Number of hottest partitions and keys to report.
+     * @return Report.
+     */
+    public String analyze(Ignite ignite, int topN) {
+        Collection<NodeStats> stats = ignite.compute(ignite.cluster().forDataNodes(cacheName))
+            .broadcast(new PartitionStatsJob(cacheName));
+
+        int parts = ignite.affinity(cacheName).partitions();
+
+        long[] partSize = new long[parts];
+        long[] partBytes = new long[parts];
+        UUID[] partNode = new UUID[parts];
+
+        long total = 0;
+        long maxNode = 0;
+
+        for (NodeStats s : stats) {
+            long nodeEntries = 0;
+
+            for (int i = 0; i < s.parts.length; i++)
+                nodeEntries += s.sizes[i];
+
+            for (int i = 0; i < s.parts.length; i++) {
+                int p = s.parts[i];
+
+                partSize[p] = s.sizes[i];
+                partNode[p] = s.nodeId;
+                partBytes[p] = nodeEntries == 0 ? 0 : s.offHeap * s.sizes[i] / nodeEntries;
+            }
+
+            total += nodeEntries;
+            maxNode = Math.max(maxNode, nodeEntries);
+        }
+
+        List<Integer> order = new ArrayList<>(parts);
+
+        for (int p = 0; p < parts; p++)
+            order.add(p);
+
+        order.sort((a, b) -> Long.compare(partSize[b], partSize[a]));
+
+        double mean = (double)total / parts;
+        double skew = mean == 0 ? 0 : partSize[order.get(0)] / mean;
+        double nodeSkew = stats.isEmpty() || total == 0 ? 0 : maxNode / ((double)total / stats.size());
+
+        StringBuilder sb = new StringBuilder();
+
+        sb.append(String.format("Partition skew [cache=%s, entries=%d, nodes=%d, partitions=%d, " +
+            "maxPartition/mean=%.2f, maxNode/mean=%.2f]%n", cacheName, total, stats.size(), parts, skew, nodeSkew));
+
+        sb.append("Hottest partitions:").append(System.lineSeparator());
+
+        for (int i = 0; i < Math.min(topN, parts) && partSize[order.get(i)] > 0; i++) {
+            int p = order.get(i);
+
+            sb.append(String.format("    part=%d, entries=%d, offHeapBytes~%d, node=%s%n",
+                p, partSize[p], partBytes[p], partNode[p]));
+        }
+
+        List<Map.Entry<Object, Long>> hot = sketch.topKeys();
+
+        if (!hot.isEmpty()) {
+            sb.append("Hottest affinity keys (sampled accesses):").append(System.lineSeparator());
+
+            for (int i = 0; i < Math.min(topN, hot.size()); i++) {
+                Map.Entry<Object, Long> e = hot.get(i);
+
+                sb.append(String.format("    %s=%s, accesses~%d, part=%d%n", affCol, e.getKey(), e.getValue(),
+                    ignite.affinity(cacheName).partition(e.getKey())));
+            }
+        }
+
+        if (skew > threshold) {
+            int buckets = (int)Math.ceil(skew);
+
+            sb.append(String.format("Skew exceeds threshold %.2f, consider composite affinity key " +
+                "(%s, bucket) with bucket = %s %% %d, so that every hot %s is spread over %d partitions.%n",
+                threshold, affCol, idCol, buckets, affCol, buckets));
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Collects entry counts of local primary partitions.
+     */
+    private static class PartitionStatsJob implements IgniteCallable<NodeStats> {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** Local Ignite instance. */
+        @IgniteInstanceResource
+        private transient Ignite ignite;
+
+        /** Cache name. */
+        private final String cacheName;
+
+        /**
+         * @param cacheName Cache name.
+         */
+        PartitionStatsJob(String cacheName) {
+            this.cacheName = cacheName;
+        }
+
+        /** {@inheritDoc} */
+        @Override public NodeStats call() {
+            IgniteCache<Object, Object> cache = ignite.cache(cacheName);
+
+            int[] parts = ignite.affinity(cacheName).primaryPartitions(ignite.cluster().localNode());
+            long[] sizes = new long[parts.length];
+
+            for (int i = 0; i < parts.length; i++)
+                sizes[i] = cache.localSizeLong(parts[i], CachePeekMode.PRIMARY);
+
+            CacheMetrics metrics = cache.localMetrics();
+
+            return new NodeStats(ignite.cluster().localNode().id(), parts, sizes, metrics.getOffHeapAllocatedSize());
+        }
+    }
+
+    /**
+     * Partition statistics of a single node.
+     */
+    private static class NodeStats implements Serializable {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** Node ID. */
+        private final UUID nodeId;
+
+        /** Primary partitions. */
+        private final int[] parts;
+
+        /** Entry counts of primary partitions. */
+        private final long[] sizes;
+
+        /** Off-heap allocated size of the cache on the node. */
+        private final long offHeap;
+
+        /**
+         * @param nodeId Node ID.
+         * @param parts Primary partitions.
+         * @param sizes Entry counts of primary partitions.
+         * @param offHeap Off-heap allocated size of the cache on the node.
+         */
+        NodeStats(UUID nodeId, int[] parts, long[] sizes, long offHeap) {
+            this.nodeId = nodeId;
+            this.parts = parts;
+            this.sizes = sizes;
+            this.offHeap = offHeap;
+        }
+    }
+}
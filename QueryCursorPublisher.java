@@ -0,0 +1,194 @@
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.cache.query.Query;
+import org.apache.ignite.cache.query.QueryCursor;
+import org.apache.ignite.cache.query.SqlFieldsQuery;
+
+/**
+ * {@link Flow.Publisher} over a cache query cursor.
+ * <p>
+ * Every subscription executes the query anew and pulls rows from the cursor only as they are requested,
+ * so the cursor fetches the next page from the remote nodes only when the subscriber's demand reaches it,
+ * and at most one page per node is held in memory. {@link SqlFieldsQuery} is switched to lazy mode, so
+ * server nodes do not materialize the whole result set either. Cancelling the subscription closes the cursor.
+ * <p>
+ * Rows are emitted on the given executor, since pulling from the cursor blocks while a page is fetched.
+ */
+public class QueryCursorPublisher<T> implements Flow.Publisher<T> {
+    /** Cache. */
+    private final IgniteCache<?, ?> cache;
+
+    /** Query. */
+    private final Query<T> qry;
+
+    /** Executor emitting rows. */
+    private final Executor exec;
+
+    /**
+     * @param cache Cache.
+     * @param qry Query.
+     * @param pageSize Number of rows fetched from a node at once.
+     */
+    public QueryCursorPublisher(IgniteCache<?, ?> cache, Query<T> qry, int pageSize) {
+        this(cache, qry, pageSize, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param cache Cache.
+     * @param qry Query, its page size and lazy flag are updated.
+     * @param pageSize Number of rows fetched from a node at once.
+     * @param exec Executor emitting rows.
+     */
+    public QueryCursorPublisher(IgniteCache<?, ?> cache, Query<T> qry, int pageSize, Executor exec) {
+        this.cache = cache;
+        this.qry = qry;
+        this.exec = exec;
+
+        qry.setPageSize(pageSize);
+
+        if (qry instanceof SqlFieldsQuery)
+            ((SqlFieldsQuery)qry).setLazy(true);
+    }
+
+    /** {@inheritDoc} */
+    @Override public void subscribe(Flow.Subscriber<? super T> sub) {
+        if (sub == null)
+            throw new NullPointerException("sub");
+
+        CursorSubscription s = new CursorSubscription(sub);
+
+        sub.onSubscribe(s);
+    }
+
+    /**
+     * Subscription pulling rows from its own cursor.
+     */
+    private class CursorSubscription implements Flow.Subscription {
+        /** Subscriber. */
+        private final Flow.Subscriber<? super T> sub;
+
+        /** Outstanding demand. */
+        private final AtomicLong requested = new AtomicLong();
+
+        /** Number of drain requests, only the thread which moved it from zero drains. */
+        private final AtomicInteger wip = new AtomicInteger();
+
+        /** Cursor, opened on first demand. */
+        private QueryCursor<T> cur;
+
+        /** Cursor iterator. */
+        private Iterator<T> it;
+
+        /** Whether subscription is cancelled or terminated. */
+        private volatile boolean done;
+
+        /**
+         * @param sub Subscriber.
+         */
+        CursorSubscription(Flow.Subscriber<? super T> sub) {
+            this.sub = sub;
+        }
+
+        /** {@inheritDoc} */
+        @Override public void request(long n) {
+            if (done)
+                return;
+
+            if (n <= 0) {
+                cancel();
+
+                sub.onError(new IllegalArgumentException("Non-positive request: " + n));
+
+                return;
+            }
+
+            requested.accumulateAndGet(n, (r, add) -> r + add < 0 ? Long.MAX_VALUE : r + add);
+
+            if (wip.getAndIncrement() == 0)
+                exec.execute(this::drain);
+        }
+
+        /** {@inheritDoc} */
+        @Override public void cancel() {
+            done = true;
+
+            // Cursor is closed by the draining thread, or right here if nobody is draining.
+            if (wip.getAndIncrement() == 0)
+                exec.execute(this::drain);
+        }
+
+        /**
+         * Emits requested rows, fetching cursor pages as needed.
+         */
+        private void drain() {
+            int missed = 1;
+
+            try {
+                for (;;) {
+                    if (done) {
+                        closeCursor();
+
+                        return;
+                    }
+
+                    if (it == null) {
+                        cur = cache.query(qry);
+                        it = cur.iterator();
+                    }
+
+                    long r = requested.get();
+                    long emitted = 0;
+
+                    while (emitted != r && !done) {
+                        // May block while the next page is fetched.
+                        if (!it.hasNext()) {
+                            done = true;
+
+                            closeCursor();
+
+                            sub.onComplete();
+
+                            return;
+                        }
+
+                        sub.onNext(it.next());
+
+                        emitted++;
+                    }
+
+                    if (emitted != 0 && r != Long.MAX_VALUE)
+                        requested.addAndGet(-emitted);
+
+                    missed = wip.addAndGet(-missed);
+
+                    if (missed == 0)
+                        return;
+                }
+            }
+            catch (Throwable e) {
+                done = true;
+
+                closeCursor();
+
+                sub.onError(e);
+            }
+        }
+
+        /**
+         * Closes cursor if it is open.
+         */
+        private void closeCursor() {
+            if (cur != null) {
+                cur.close();
+
+                cur = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,491 @@
+package maven.ignite;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.cache.query.FieldsQueryCursor;
+import org.apache.ignite.cache.query.SqlFieldsQuery;
+
+/**
+ * Per-query tracing and slow-query log for {@link IgniteCache#query} and JDBC statements.
+ * <p>
+ * For every query the tracer records time to open the cursor or prepare the statement (parse and plan,
+ * including map phase start for distributed queries), first-row latency, total time, number of rows and
+ * approximate size of the returned values. Queries slower than the threshold are written to the slow-query
+ * log, all queries are aggregated per statement fingerprint (normalized SQL with literals replaced by
+ * {@code ?}) and reported with latency percentiles by {@link #report()}.
+ * <p>
+ * Server-side map and reduce timings are not available on the client, they can be read from the
+ * {@code SQL_QUERIES_HISTORY} system view of the server nodes.
+ */
+public class QueryTracer {
+    /** Number of latest latencies kept per fingerprint for percentiles. */
+    private static final int WINDOW = 1024;
+
+    /** Slow query threshold in nanoseconds. */
+    private final long threshold;
+
+    /** Slow query log. */
+    private final Consumer<String> slowLog;
+
+    /** Statistics by fingerprint. */
+    private final ConcurrentMap<String, Stats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * @param thresholdMs Slow query threshold in milliseconds.
+     */
+    public QueryTracer(long thresholdMs) {
+        this(thresholdMs, msg -> System.out.println(">>> " + msg));
+    }
+
+    /**
+     * @param thresholdMs Slow query threshold in milliseconds.
+     * @param slowLog Slow query log.
+     */
+    public QueryTracer(long thresholdMs, Consumer<String> slowLog) {
+        this.threshold = TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+        this.slowLog = slowLog;
+    }
+
+    /**
+     * Executes fields query on the cache and reads all rows, tracing the execution.
+     *
+     * @param cache Cache.
+     * @param qry Query.
+     * @return Rows.
+     */
+    public List<List<?>> queryAll(IgniteCache<?, ?> cache, SqlFieldsQuery qry) {
+        Trace trace = new Trace(qry.getSql());
+
+        List<List<?>> rows = new ArrayList<>();
+
+        try (FieldsQueryCursor<List<?>> cur = cache.query(qry)) {
+            trace.prepared();
+
+            Iterator<List<?>> it = cur.iterator();
+
+            while (it.hasNext()) {
+                List<?> row = it.next();
+
+                trace.row();
+
+                for (Object val : row)
+                    trace.bytes(sizeOf(val));
+
+                rows.add(row);
+            }
+        }
+        finally {
+            finish(trace);
+        }
+
+        return rows;
+    }
+
+    /**
+     * Wraps JDBC connection, so that statements created by it are traced.
+     *
+     * @param conn Connection.
+     * @return Traced connection.
+     */
+    public Connection wrap(Connection conn) {
+        return proxy(Connection.class, conn, (target, mtd, args) -> {
+            if (mtd.getName().equals("prepareStatement") && args != null && args[0] instanceof String) {
+                Trace trace = new Trace((String)args[0]);
+
+                PreparedStatement stmt = (PreparedStatement)invoke(target, mtd, args);
+
+                trace.prepared();
+
+                return proxy(PreparedStatement.class, stmt, new StatementHandler(trace));
+            }
+
+            if (mtd.getName().equals("createStatement"))
+                return proxy(Statement.class, (Statement)invoke(target, mtd, args), new StatementHandler(null));
+
+            return invoke(target, mtd, args);
+        });
+    }
+
+    /**
+     * @return Report of latency percentiles per statement fingerprint, slowest first.
+     */
+    public String report() {
+        List<Map.Entry<String, Stats>> entries = new ArrayList<>(stats.entrySet());
+
+        entries.sort((a, b) -> Long.compare(b.getValue().percentile(0.99), a.getValue().percentile(0.99)));
+
+        StringBuilder sb = new StringBuilder();
+
+        for (Map.Entry<String, Stats> e : entries) {
+            Stats s = e.getValue();
+
+            synchronized (s) {
+                sb.append(String.format("cnt=%d, p50=%.3fms, p95=%.3fms, p99=%.3fms, max=%.3fms, " +
+                        "avgRows=%.1f, avgBytes=%.0f, sql=%s%n", s.cnt,
+                    s.percentile(0.5) / 1e6, s.percentile(0.95) / 1e6, s.percentile(0.99) / 1e6, s.max / 1e6,
+                    (double)s.rows / s.cnt, (double)s.bytes / s.cnt, e.getKey()));
+            }
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Accounts finished query.
+     *
+     * @param trace Trace.
+     */
+    private void finish(Trace trace) {
+        long total = System.nanoTime() - trace.start;
+
+        String fp = fingerprint(trace.sql);
+
+        stats.computeIfAbsent(fp, k -> new Stats()).add(total, trace.rows, trace.bytes);
+
+        if (total >= threshold) {
+            slowLog.accept(String.format("Slow query [total=%.3fms, prepare=%.3fms, firstRow=%.3fms, rows=%d, " +
+                    "bytes=%d, sql=%s]", total / 1e6, trace.prepare / 1e6,
+                trace.firstRow < 0 ? -1 : trace.firstRow / 1e6, trace.rows, trace.bytes, trace.sql));
+        }
+    }
+
+    /**
+     * @param sql SQL query.
+     * @return Normalized SQL with numeric and string literals replaced by {@code ?}.
+     */
+    static String fingerprint(String sql) {
+        String norm = SqlResultCache.normalize(sql);
+
+        StringBuilder sb = new StringBuilder(norm.length());
+
+        for (int i = 0; i < norm.length(); i++) {
+            char c = norm.charAt(i);
+
+            if (c == '\'') {
+                int end = norm.indexOf('\'', i + 1);
+
+                sb.append('?');
+
+                i = end < 0 ? norm.length() : end;
+            }
+            else if (c == '"') {
+                int end = norm.indexOf('"', i + 1);
+
+                end = end < 0 ? norm.length() - 1 : end;
+
+                sb.append(norm, i, end + 1);
+
+                i = end;
+            }
+            else if (Character.isDigit(c) && !inIdentifier(sb)) {
+                while (i + 1 < norm.length() && (Character.isDigit(norm.charAt(i + 1)) || norm.charAt(i + 1) == '.'))
+                    i++;
+
+                sb.append('?');
+            }
+            else
+                sb.append(c);
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * @param sb Fingerprint built so far.
+     * @return {@code True} if next character continues an identifier, e.g. digit in {@code city11}.
+     */
+    private static boolean inIdentifier(StringBuilder sb) {
+        if (sb.length() == 0)
+            return false;
+
+        char prev = sb.charAt(sb.length() - 1);
+
+        return Character.isLetterOrDigit(prev) || prev == '_';
+    }
+
+    /**
+     * @param val Value.
+     * @return Approximate size of the value in bytes.
+     */
+    private static long sizeOf(Object val) {
+        if (val == null)
+            return 0;
+
+        if (val instanceof String)
+            return ((String)val).length() * 2L;
+
+        if (val instanceof byte[])
+            return ((byte[])val).length;
+
+        if (val instanceof Integer || val instanceof Float)
+            return 4;
+
+        return 8;
+    }
+
+    /**
+     * @param target Target.
+     * @param mtd Method.
+     * @param args Arguments.
+     * @return Result.
+     * @throws Throwable If target method failed.
+     */
+    private static Object invoke(Object target, Method mtd, Object[] args) throws Throwable {
+        try {
+            return mtd.invoke(target, args);
+        }
+        catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * @param itf Interface.
+     * @param target Target.
+     * @param hnd Handler.
+     * @return Proxy.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> itf, T target, TargetHandler hnd) {
+        return (T)Proxy.newProxyInstance(QueryTracer.class.getClassLoader(), new Class<?>[] {itf},
+            (proxy, mtd, args) -> hnd.invoke(target, mtd, args));
+    }
+
+    /**
+     * Invocation handler with explicit target.
+     */
+    private interface TargetHandler {
+        /**
+         * @param target Target.
+         * @param mtd Method.
+         * @param args Arguments.
+         * @return Result.
+         * @throws Throwable If failed.
+         */
+        Object invoke(Object target, Method mtd, Object[] args) throws Throwable;
+    }
+
+    /**
+     * Traces statement executions.
+     */
+    private class StatementHandler implements TargetHandler {
+        /** Trace of prepared statement, {@code null} for plain statement. */
+        private final Trace prepared;
+
+        /**
+         * @param prepared Trace of prepared statement, {@code null} for plain statement.
+         */
+        StatementHandler(Trace prepared) {
+            this.prepared = prepared;
+        }
+
+        /** {@inheritDoc} */
+        @Override public Object invoke(Object target, Method mtd, Object[] args) throws Throwable {
+            String name = mtd.getName();
+
+            if (!name.startsWith("execute"))
+                return QueryTracer.invoke(target, mtd, args);
+
+            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String)args[0] :
+                prepared != null ? prepared.sql : "<batch>";
+
+            Trace trace = new Trace(sql);
+
+            Object res;
+
+            try {
+                res = QueryTracer.invoke(target, mtd, args);
+            }
+            catch (Throwable e) {
+                finish(trace);
+
+                throw e;
+            }
+
+            trace.prepared();
+
+            // Client-side statement preparation is attributed to the first execution only.
+            if (prepared != null && args == null) {
+                trace.prepare += prepared.prepare;
+
+                prepared.prepare = 0;
+            }
+
+            if (res instanceof ResultSet)
+                return proxy(ResultSet.class, (ResultSet)res, new ResultSetHandler(trace));
+
+            if (res instanceof Integer || res instanceof Long)
+                trace.rows = ((Number)res).longValue();
+            else if (res instanceof int[])
+                trace.rows = Arrays.stream((int[])res).sum();
+
+            finish(trace);
+
+            return res;
+        }
+    }
+
+    /**
+     * Traces result set reads.
+     */
+    private class ResultSetHandler implements TargetHandler {
+        /** Trace. */
+        private final Trace trace;
+
+        /** Whether trace is finished. */
+        private boolean finished;
+
+        /**
+         * @param trace Trace.
+         */
+        ResultSetHandler(Trace trace) {
+            this.trace = trace;
+        }
+
+        /** {@inheritDoc} */
+        @Override public Object invoke(Object target, Method mtd, Object[] args) throws Throwable {
+            Object res = QueryTracer.invoke(target, mtd, args);
+
+            String name = mtd.getName();
+
+            if (finished)
+                return res;
+
+            if (name.equals("next")) {
+                if (Boolean.TRUE.equals(res))
+                    trace.row();
+                else
+                    done();
+            }
+            else if (name.equals("close"))
+                done();
+            else if (name.startsWith("get") && args != null && args.length == 1)
+                trace.bytes(sizeOf(res));
+
+            return res;
+        }
+
+        /** */
+        private void done() {
+            finished = true;
+
+            finish(trace);
+        }
+    }
+
+    /**
+     * Single query execution.
+     */
+    private static class Trace {
+        /** SQL. */
+        private final String sql;
+
+        /** Start time. */
+        private final long start = System.nanoTime();
+
+        /** Prepare (parse and plan) time. */
+        private long prepare;
+
+        /** First row latency, {@code -1} if no rows. */
+        private long firstRow = -1;
+
+        /** Rows. */
+        private long rows;
+
+        /** Bytes. */
+        private long bytes;
+
+        /**
+         * @param sql SQL.
+         */
+        Trace(String sql) {
+            this.sql = sql;
+        }
+
+        /** */
+        void prepared() {
+            prepare = System.nanoTime() - start;
+        }
+
+        /** */
+        void row() {
+            if (rows++ == 0)
+                firstRow = System.nanoTime() - start;
+        }
+
+        /**
+         * @param size Bytes.
+         */
+        void bytes(long size) {
+            bytes += size;
+        }
+    }
+
+    /**
+     * Statistics of a single fingerprint.
+     */
+    private static class Stats {
+        /** Latest latencies. */
+        private final long[] window = new long[WINDOW];
+
+        /** Number of executions. */
+        private long cnt;
+
+        /** Maximum latency. */
+        private long max;
+
+        /** Total rows. */
+        private long rows;
+
+        /** Total bytes. */
+        private long bytes;
+
+        /**
+         * @param lat Latency.
+         * @param rows Rows.
+         * @param bytes Bytes.
+         */
+        synchronized void add(long lat, long rows, long bytes) {
+            window[(int)(cnt % WINDOW)] = lat;
+
+            cnt++;
+            max = Math.max(max, lat);
+
+            this.rows += rows;
+            this.bytes += bytes;
+        }
+
+        /**
+         * @param q Quantile.
+         * @return Latency percentile over latest executions.
+         */
+        synchronized long percentile(double q) {
+            int n = (int)Math.min(cnt, WINDOW);
+
+            if (n == 0)
+                return 0;
+
+            long[] sorted = Arrays.copyOf(window, n);
+
+            Arrays.sort(sorted);
+
+            return sorted[Math.min(n - 1, (int)(n * q))];
+        }
+    }
+}
@@ -0,0 +1,460 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.IgniteDataStreamer;
+import org.apache.ignite.IgniteException;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.configuration.CacheConfiguration;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.apache.ignite.events.CacheRebalancingEvent;
+import org.apache.ignite.events.EventType;
+import org.apache.ignite.examples.model.Organization;
+import org.apache.ignite.examples.model.Person;
+import org.apache.ignite.spi.discovery.tcp.TcpDiscoverySpi;
+import org.apache.ignite.spi.discovery.tcp.ipfinder.vm.TcpDiscoveryVmIpFinder;
+
+/**
+ * Measures how long rebalance of the partitioned person cache ({@code backups=1}) takes after a node joins
+ * and after a node leaves, and how it affects p99 latency of a concurrent put/get workload, for a list of
+ * {@link RebalanceTuning} settings.
+ * <p>
+ * For every setting the harness starts a fresh cluster of local nodes on a separate discovery port range,
+ * loads data, starts the workload on the first node and then joins one more node and stops it again,
+ * waiting for rebalance to finish each time. Results are printed as a table and a chart and written to
+ * {@code rebalance-harness.csv} in the temporary directory. All nodes run in this JVM, so absolute numbers
+ * are lower than on separate hosts, but settings can be compared with each other.
+ * <p>
+ * Settings are passed as system properties: {@code tunings} (comma separated {@code batchKb:threads:throttleMs}),
+ * {@code nodes} (initial cluster size), {@code keys}, {@code valueSize} (resume length), {@code threads}
+ * (workload threads) and {@code baseline} (seconds of workload measured before the first topology change).
+ */
+public class RebalanceHarness {
+    /** Settings to compare. */
+    private static final String TUNINGS = System.getProperty("tunings", "512:4:0,512:1:0,2048:4:0,512:4:10");
+
+    /** Initial number of nodes. */
+    private static final int NODES = Integer.getInteger("nodes", 2);
+
+    /** Number of keys. */
+    private static final int KEYS = Integer.getInteger("keys", 200_000);
+
+    /** Resume length in characters. */
+    private static final int VALUE_SIZE = Integer.getInteger("valueSize", 1_024);
+
+    /** Number of workload threads. */
+    private static final int THREADS = Integer.getInteger("threads", 4);
+
+    /** Duration of workload before the first topology change in seconds. */
+    private static final int BASELINE = Integer.getInteger("baseline", 5);
+
+    /** Maximum time to wait for rebalance in milliseconds. */
+    private static final long REBALANCE_TIMEOUT = 5 * 60_000;
+
+    /** Cache name. */
+    private static final String CACHE_NAME = "RebalanceHarnessPersons";
+
+    /**
+     * @param args Command line arguments, none required.
+     * @throws Exception If failed.
+     */
+    public static void main(String[] args) throws Exception {
+        List<Row> rows = new ArrayList<>();
+
+        for (String s : TUNINGS.split(","))
+            rows.addAll(run(RebalanceTuning.parse(s)));
+
+        print(rows);
+
+        File csv = new File(System.getProperty("java.io.tmpdir"), "rebalance-harness.csv");
+
+        write(rows, csv);
+
+        System.out.println();
+        System.out.println(">>> Results are written to " + csv);
+    }
+
+    /**
+     * Runs join and leave scenarios with the given settings.
+     *
+     * @param tuning Rebalance settings.
+     * @return Result rows.
+     * @throws Exception If failed.
+     */
+    private static List<Row> run(RebalanceTuning tuning) throws Exception {
+        System.out.println();
+        System.out.println(">>> Rebalance harness [" + tuning + ']');
+
+        List<Ignite> nodes = new ArrayList<>();
+
+        AtomicLong lastRebalanced = new AtomicLong();
+
+        try {
+            for (int i = 0; i < NODES; i++)
+                nodes.add(startNode(i, tuning, lastRebalanced));
+
+            Ignite ignite = nodes.get(0);
+
+            populate(ignite);
+
+            Workload workload = new Workload(ignite.cache(CACHE_NAME));
+
+            workload.start();
+
+            long base = System.nanoTime();
+
+            Thread.sleep(TimeUnit.SECONDS.toMillis(BASELINE));
+
+            // Node joins, its partitions are moved from existing nodes.
+            long joinStart = System.nanoTime();
+
+            nodes.add(startNode(nodes.size(), tuning, lastRebalanced));
+
+            long joinEnd = awaitRebalance(nodes, joinStart, lastRebalanced);
+
+            Thread.sleep(1_000);
+
+            // Node leaves, lost backups are restored on remaining nodes.
+            long leaveStart = System.nanoTime();
+
+            nodes.remove(nodes.size() - 1).close();
+
+            long leaveEnd = awaitRebalance(nodes, leaveStart, lastRebalanced);
+
+            workload.stop();
+
+            long baseP99 = workload.p99(base, joinStart);
+
+            return Arrays.asList(
+                new Row(tuning, "join", joinEnd - joinStart, baseP99, workload.p99(joinStart, joinEnd)),
+                new Row(tuning, "leave", leaveEnd - leaveStart, baseP99, workload.p99(leaveStart, leaveEnd)));
+        }
+        finally {
+            Collections.reverse(nodes);
+
+            for (Ignite node : nodes)
+                node.close();
+        }
+    }
+
+    /**
+     * @param idx Node index.
+     * @param tuning Rebalance settings.
+     * @param lastRebalanced Time of the last rebalance stop event on any node.
+     * @return Started node.
+     */
+    private static Ignite startNode(int idx, RebalanceTuning tuning, AtomicLong lastRebalanced) {
+        TcpDiscoveryVmIpFinder ipFinder = new TcpDiscoveryVmIpFinder()
+            .setAddresses(Collections.singletonList("127.0.0.1:48500..48509"));
+
+        CacheConfiguration<Long, Person> cacheCfg = new CacheConfiguration<Long, Person>(CACHE_NAME)
+            .setBackups(1)
+            .setStatisticsEnabled(true);
+
+        IgniteConfiguration cfg = tuning.apply(new IgniteConfiguration()
+            .setIgniteInstanceName("rebalance-harness-" + idx)
+            .setDiscoverySpi(new TcpDiscoverySpi().setIpFinder(ipFinder).setLocalPort(48500).setLocalPortRange(10))
+            .setIncludeEventTypes(EventType.EVT_CACHE_REBALANCE_STOPPED)
+            .setCacheConfiguration(cacheCfg));
+
+        Ignite ignite = Ignition.start(cfg);
+
+        ignite.events().localListen(evt -> {
+            // System caches rebalance too, only the measured cache matters.
+            if (CACHE_NAME.equals(((CacheRebalancingEvent)evt).cacheName()))
+                lastRebalanced.set(System.nanoTime());
+
+            return true;
+        }, EventType.EVT_CACHE_REBALANCE_STOPPED);
+
+        return ignite;
+    }
+
+    /**
+     * Waits until no partition of the cache is rebalancing on any node.
+     *
+     * @param nodes Alive nodes.
+     * @param start Topology change time.
+     * @param lastRebalanced Time of the last rebalance stop event on any node.
+     * @return Rebalance end time.
+     * @throws InterruptedException If interrupted.
+     */
+    private static long awaitRebalance(List<Ignite> nodes, long start, AtomicLong lastRebalanced)
+        throws InterruptedException {
+        long deadline = System.currentTimeMillis() + REBALANCE_TIMEOUT;
+
+        while (System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+
+            if (lastRebalanced.get() < start)
+                continue;
+
+            boolean rebalancing = false;
+
+            for (Ignite node : nodes) {
+                if (node.cache(CACHE_NAME).localMetrics().getRebalancingPartitionsCount() > 0) {
+                    rebalancing = true;
+
+                    break;
+                }
+            }
+
+            if (!rebalancing)
+                return lastRebalanced.get();
+        }
+
+        throw new IgniteException("Rebalance did not finish in " + REBALANCE_TIMEOUT + "ms.");
+    }
+
+    /**
+     * @param ignite Ignite instance.
+     */
+    private static void populate(Ignite ignite) {
+        Organization org = new Organization("RebalanceHarness");
+
+        char[] resume = new char[VALUE_SIZE];
+
+        Arrays.fill(resume, 'x');
+
+        try (IgniteDataStreamer<Long, Person> streamer = ignite.dataStreamer(CACHE_NAME)) {
+            for (long k = 0; k < KEYS; k++)
+                streamer.addData(k, new Person(org, "First" + k, "Last" + k, k % 10_000, new String(resume)));
+        }
+    }
+
+    /**
+     * @param rows Result rows.
+     */
+    private static void print(List<Row> rows) {
+        System.out.println();
+        System.out.println(String.format(">>> %-50s %-6s %14s %14s %14s", "tuning", "event", "rebalance, ms",
+            "p99 base, ms", "p99 during, ms"));
+
+        double maxDur = 0;
+        double maxP99 = 0;
+
+        for (Row r : rows) {
+            System.out.println(String.format(">>> %-50s %-6s %14.0f %14.2f %14.2f", r.tuning, r.evt, r.dur / 1e6,
+                r.baseP99 / 1e6, r.p99 / 1e6));
+
+            maxDur = Math.max(maxDur, r.dur);
+            maxP99 = Math.max(maxP99, r.p99);
+        }
+
+        // Duration bar (#) against p99 bar (=), each scaled to its maximum.
+        System.out.println();
+        System.out.println(">>> Rebalance duration (#) vs p99 during rebalance (=):");
+
+        for (Row r : rows) {
+            System.out.println(String.format(">>> %-50s %-6s %s", r.tuning, r.evt, bar('#', r.dur / maxDur)));
+            System.out.println(String.format(">>> %-50s %-6s %s", "", "", bar('=', r.p99 / maxP99)));
+        }
+    }
+
+    /**
+     * @param c Bar character.
+     * @param ratio Bar length relative to the maximum length.
+     * @return Bar.
+     */
+    private static String bar(char c, double ratio) {
+        char[] bar = new char[(int)Math.max(1, Math.round(ratio * 40))];
+
+        Arrays.fill(bar, c);
+
+        return new String(bar);
+    }
+
+    /**
+     * @param rows Result rows.
+     * @param file File.
+     * @throws IOException If failed.
+     */
+    private static void write(List<Row> rows, File file) throws IOException {
+        try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+            out.println("tuning,event,rebalance_ms,p99_base_ms,p99_during_ms");
+
+            for (Row r : rows) {
+                out.println(String.format("\"%s\",%s,%.0f,%.3f,%.3f", r.tuning, r.evt, r.dur / 1e6, r.baseP99 / 1e6,
+                    r.p99 / 1e6));
+            }
+        }
+    }
+
+    /**
+     * Put/get workload recording start time and latency of every operation.
+     */
+    private static class Workload {
+        /** Cache. */
+        private final IgniteCache<Long, Person> cache;
+
+        /** Workload threads. */
+        private final List<Thread> threads = new ArrayList<>();
+
+        /** Samples of every thread. */
+        private final List<Samples> samples = Collections.synchronizedList(new ArrayList<>());
+
+        /** Stops threads. */
+        private final CountDownLatch stop = new CountDownLatch(1);
+
+        /**
+         * @param cache Cache.
+         */
+        Workload(IgniteCache<Long, Person> cache) {
+            this.cache = cache;
+        }
+
+        /**
+         * Starts workload threads.
+         */
+        void start() {
+            for (int i = 0; i < THREADS; i++) {
+                Thread t = new Thread(this::run, "rebalance-harness-workload-" + i);
+
+                threads.add(t);
+
+                t.start();
+            }
+        }
+
+        /**
+         * Runs put/get operations until stopped.
+         */
+        private void run() {
+            Samples s = new Samples();
+
+            samples.add(s);
+
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+
+            while (stop.getCount() > 0) {
+                long key = rnd.nextLong(KEYS);
+
+                long start = System.nanoTime();
+
+                if (rnd.nextBoolean()) {
+                    Person p = cache.get(key);
+
+                    if (p != null)
+                        cache.put(key, p);
+                }
+                else
+                    cache.get(key);
+
+                s.add(start, System.nanoTime() - start);
+            }
+        }
+
+        /**
+         * Stops workload threads.
+         *
+         * @throws InterruptedException If interrupted.
+         */
+        void stop() throws InterruptedException {
+            stop.countDown();
+
+            for (Thread t : threads)
+                t.join();
+        }
+
+        /**
+         * @param from Window start.
+         * @param to Window end.
+         * @return 99th percentile of latencies of operations started in the window, in nanoseconds.
+         */
+        long p99(long from, long to) {
+            long[] lat = new long[0];
+            int cnt = 0;
+
+            for (Samples s : samples) {
+                for (int i = 0; i < s.size; i++) {
+                    if (s.time[i] >= from && s.time[i] < to) {
+                        if (cnt == lat.length)
+                            lat = Arrays.copyOf(lat, Math.max(1024, cnt * 2));
+
+                        lat[cnt++] = s.lat[i];
+                    }
+                }
+            }
+
+            if (cnt == 0)
+                return 0;
+
+            Arrays.sort(lat, 0, cnt);
+
+            return lat[(int)(cnt * 0.99)];
+        }
+    }
+
+    /**
+     * Operation samples of a thread.
+     */
+    private static class Samples {
+        /** Start times. */
+        private long[] time = new long[1024];
+
+        /** Latencies. */
+        private long[] lat = new long[1024];
+
+        /** Number of samples. */
+        private int size;
+
+        /**
+         * @param start Start time.
+         * @param l Latency.
+         */
+        void add(long start, long l) {
+            if (size == time.length) {
+                time = Arrays.copyOf(time, size * 2);
+                lat = Arrays.copyOf(lat, size * 2);
+            }
+
+            time[size] = start;
+            lat[size++] = l;
+        }
+    }
+
+    /**
+     * Result of a scenario.
+     */
+    private static class Row {
+        /** Settings. */
+        private final RebalanceTuning tuning;
+
+        /** Topology event. */
+        private final String evt;
+
+        /** Rebalance duration in nanoseconds. */
+        private final long dur;
+
+        /** Workload p99 before topology changes in nanoseconds. */
+        private final long baseP99;
+
+        /** Workload p99 during rebalance in nanoseconds. */
+        private final long p99;
+
+        /**
+         * @param tuning Settings.
+         * @param evt Topology event.
+         * @param dur Rebalance duration in nanoseconds.
+         * @param baseP99 Workload p99 before topology changes in nanoseconds.
+         * @param p99 Workload p99 during rebalance in nanoseconds.
+         */
+        Row(RebalanceTuning tuning, String evt, long dur, long baseP99, long p99) {
+            this.tuning = tuning;
+            this.evt = evt;
+            this.dur = dur;
+            this.baseP99 = baseP99;
+            this.p99 = p99;
+        }
+    }
+}
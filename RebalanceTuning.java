@@ -0,0 +1,107 @@
+import org.apache.ignite.configuration.IgniteConfiguration;
+
+/**
+ * Node rebalance settings: supply batch size, rebalance thread pool size, throttle between batches and
+ * number of batches prefetched by the demander.
+ * <p>
+ * Smaller batches, fewer threads and a non-zero throttle make rebalance take longer but leave more CPU and
+ * network to the foreground workload, larger ones do the opposite. Use {@link RebalanceHarness} to measure
+ * the trade-off for a given data set before a scale-out.
+ */
+public class RebalanceTuning {
+    /** Supply batch size in bytes. */
+    private int batchSize = IgniteConfiguration.DFLT_REBALANCE_BATCH_SIZE;
+
+    /** Rebalance thread pool size. */
+    private int threadPoolSize = IgniteConfiguration.DFLT_REBALANCE_THREAD_POOL_SIZE;
+
+    /** Delay between supply batches in milliseconds. */
+    private long throttle = IgniteConfiguration.DFLT_REBALANCE_THROTTLE;
+
+    /** Number of batches prefetched by the demander. */
+    private long prefetch = IgniteConfiguration.DFLT_REBALANCE_BATCHES_PREFETCH_COUNT;
+
+    /**
+     * Parses settings in {@code batchKb:threads:throttleMs[:prefetch]} format, e.g. {@code 512:4:0}.
+     *
+     * @param s Settings.
+     * @return Tuning.
+     */
+    public static RebalanceTuning parse(String s) {
+        String[] parts = s.trim().split(":");
+
+        if (parts.length < 3 || parts.length > 4)
+            throw new IllegalArgumentException("Expected batchKb:threads:throttleMs[:prefetch]: " + s);
+
+        RebalanceTuning tuning = new RebalanceTuning()
+            .setBatchSize(Integer.parseInt(parts[0]) * 1024)
+            .setThreadPoolSize(Integer.parseInt(parts[1]))
+            .setThrottle(Long.parseLong(parts[2]));
+
+        if (parts.length == 4)
+            tuning.setPrefetch(Long.parseLong(parts[3]));
+
+        return tuning;
+    }
+
+    /**
+     * @param batchSize Supply batch size in bytes.
+     * @return {@code this} for chaining.
+     */
+    public RebalanceTuning setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+
+        return this;
+    }
+
+    /**
+     * @param threadPoolSize Rebalance thread pool size.
+     * @return {@code this} for chaining.
+     */
+    public RebalanceTuning setThreadPoolSize(int threadPoolSize) {
+        this.threadPoolSize = threadPoolSize;
+
+        return this;
+    }
+
+    /**
+     * @param throttle Delay between supply batches in milliseconds.
+     * @return {@code this} for chaining.
+     */
+    public RebalanceTuning setThrottle(long throttle) {
+        this.throttle = throttle;
+
+        return this;
+    }
+
+    /**
+     * @param prefetch Number of batches prefetched by the demander.
+     * @return {@code this} for chaining.
+     */
+    public RebalanceTuning setPrefetch(long prefetch) {
+        this.prefetch = prefetch;
+
+        return this;
+    }
+
+    /**
+     * Applies settings to the node configuration. All nodes of a cluster should use the same settings:
+     * batch size and throttle are applied by suppliers, thread pool size by both sides.
+     *
+     * @param cfg Node configuration.
+     * @return Node configuration.
+     */
+    public IgniteConfiguration apply(IgniteConfiguration cfg) {
+        return cfg
+            .setRebalanceBatchSize(batchSize)
+            .setRebalanceThreadPoolSize(threadPoolSize)
+            .setRebalanceThrottle(throttle)
+            .setRebalanceBatchesPrefetchCount(prefetch);
+    }
+
+    /** {@inheritDoc} */
+    @Override public String toString() {
+        return "batch=" + batchSize / 1024 + "KB, threads=" + threadPoolSize + ", throttle=" + throttle +
+            "ms, prefetch=" + prefetch;
+    }
+}
@@ -0,0 +1,540 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.management.OperatingSystemMXBean;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.IgniteCompute;
+import org.apache.ignite.IgniteDataStreamer;
+import org.apache.ignite.IgniteException;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.cache.affinity.AffinityKey;
+import org.apache.ignite.cache.query.SqlFieldsQuery;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.apache.ignite.examples.model.Organization;
+import org.apache.ignite.examples.model.Person;
+import org.apache.ignite.lang.IgniteRunnable;
+import org.apache.ignite.spi.discovery.tcp.TcpDiscoverySpi;
+import org.apache.ignite.spi.discovery.tcp.ipfinder.vm.TcpDiscoveryVmIpFinder;
+
+/**
+ * Measures how throughput and p99 latency of the example workloads scale with the number of server nodes.
+ * <p>
+ * Server nodes are started one by one as separate JVM processes on this host, with the classpath of this JVM
+ * and static discovery on localhost ports {@code 47600..47619}, so no network or external services are
+ * needed. A node process is the equivalent of {@code ExampleNodeStartup} with this configuration and exits
+ * when the harness exits. The harness itself joins as a client node and, for every cluster size, runs
+ * {@code DataGrid} put/get, {@code SqlQueriesExample} collocated SQL join and {@code ClusterGroupExample}
+ * compute broadcast workloads. Results are printed as a table and a curve of throughput relative to a single
+ * node, and written to {@code scaling-harness.csv} in the temporary directory.
+ * <p>
+ * Operations are synchronous, so the number of client threads grows with the number of server nodes to keep
+ * every node as busy as with one node. All load still comes from this single JVM, so CPU usage of the harness
+ * process is reported with every result: a workload which saturates the client CPU is limited by the load
+ * generator rather than by the cluster.
+ * <p>
+ * Settings are passed as system properties: {@code maxNodes}, {@code threads} (client threads per workload
+ * and server node),
+ * {@code duration} and {@code warmup} (seconds per workload), {@code settle} (seconds to wait for rebalance
+ * after a node joins) and {@code nodeXmx} (heap of node processes).
+ */
+public class ScalingHarness {
+    /** Maximum number of server nodes. */
+    private static final int MAX_NODES = Integer.getInteger("maxNodes", 4);
+
+    /** Client threads per workload and server node. */
+    private static final int THREADS = Integer.getInteger("threads", 8);
+
+    /** Measured duration of a workload in seconds. */
+    private static final int DURATION = Integer.getInteger("duration", 10);
+
+    /** Warm-up duration of a workload in seconds. */
+    private static final int WARMUP = Integer.getInteger("warmup", 3);
+
+    /** Time to wait for rebalance after a node joins in seconds. */
+    private static final int SETTLE = Integer.getInteger("settle", 5);
+
+    /** Heap of node processes. */
+    private static final String NODE_XMX = System.getProperty("nodeXmx", "1g");
+
+    /** Discovery addresses. */
+    private static final String ADDRS = "127.0.0.1:47600..47619";
+
+    /** Put/get cache name. */
+    private static final String PUT_GET_CACHE = "ScalingHarnessPutGet";
+
+    /** Number of put/get keys. */
+    private static final int KEYS = 100_000;
+
+    /** Number of organizations for SQL join. */
+    private static final int ORGS = 100;
+
+    /** Number of persons per organization for SQL join. */
+    private static final int PERSONS = 100;
+
+    /** Client CPU usage above which a result is marked as limited by the load generator. */
+    private static final double CLIENT_CPU_LIMIT = 0.8;
+
+    /** Workload names. */
+    private static final List<String> WORKLOADS = Arrays.asList("put/get", "sql join", "broadcast");
+
+    /**
+     * Starts harness, or a server node if the first argument is {@code node}.
+     *
+     * @param args Command line arguments.
+     * @throws Exception If failed.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && "node".equals(args[0])) {
+            runNode(args[1]);
+
+            return;
+        }
+
+        List<Process> procs = new ArrayList<>();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> procs.forEach(Process::destroy)));
+
+        Map<String, List<Result>> results = new LinkedHashMap<>();
+
+        for (String w : WORKLOADS)
+            results.put(w, new ArrayList<>());
+
+        try {
+            procs.add(startNode(0));
+
+            try (Ignite client = Ignition.start(configuration("scaling-harness-client").setClientMode(true))) {
+                for (int n = 1; n <= MAX_NODES; n++) {
+                    if (n > 1)
+                        procs.add(startNode(n - 1));
+
+                    awaitServers(client, n);
+
+                    if (n == 1)
+                        populate(client);
+
+                    TimeUnit.SECONDS.sleep(SETTLE);
+
+                    System.out.println();
+                    System.out.println(">>> Cluster of " + n + " server node(s):");
+
+                    results.get("put/get").add(measure(n, "put/get", putGet(client)));
+                    results.get("sql join").add(measure(n, "sql join", sqlJoin(client)));
+                    results.get("broadcast").add(measure(n, "broadcast", broadcast(client)));
+                }
+            }
+        }
+        finally {
+            for (Process p : procs)
+                p.destroy();
+        }
+
+        print(results);
+
+        File csv = new File(System.getProperty("java.io.tmpdir"), "scaling-harness.csv");
+
+        write(results, csv);
+
+        System.out.println();
+        System.out.println(">>> Results are written to " + csv);
+    }
+
+    /**
+     * @param name Instance name.
+     * @return Node configuration with static discovery on localhost.
+     */
+    private static IgniteConfiguration configuration(String name) {
+        TcpDiscoveryVmIpFinder ipFinder = new TcpDiscoveryVmIpFinder()
+            .setAddresses(Collections.singletonList(ADDRS));
+
+        return new IgniteConfiguration()
+            .setIgniteInstanceName(name)
+            .setLocalHost("127.0.0.1")
+            .setDiscoverySpi(new TcpDiscoverySpi().setIpFinder(ipFinder).setLocalPort(47600).setLocalPortRange(20));
+    }
+
+    /**
+     * Runs server node until standard input is closed, i.e. until the harness exits.
+     *
+     * @param name Instance name.
+     * @throws IOException If failed.
+     */
+    private static void runNode(String name) throws IOException {
+        try (Ignite ignored = Ignition.start(configuration(name))) {
+            while (System.in.read() != -1) {
+                // No-op.
+            }
+        }
+    }
+
+    /**
+     * @param idx Node index.
+     * @return Node process.
+     * @throws IOException If failed.
+     */
+    private static Process startNode(int idx) throws IOException {
+        List<String> cmd = new ArrayList<>();
+
+        cmd.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        cmd.add("-Xmx" + NODE_XMX);
+
+        // Module options required by Ignite on newer JDKs are inherited from this JVM.
+        for (String arg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (arg.startsWith("--add-") || arg.startsWith("-DIGNITE_"))
+                cmd.add(arg);
+        }
+
+        cmd.add("-cp");
+        cmd.add(System.getProperty("java.class.path"));
+        cmd.add(ScalingHarness.class.getName());
+        cmd.add("node");
+        cmd.add("scaling-harness-" + idx);
+
+        File log = new File(System.getProperty("java.io.tmpdir"), "scaling-harness-" + idx + ".log");
+
+        System.out.println(">>> Starting node " + idx + ", log: " + log);
+
+        return new ProcessBuilder(cmd).redirectErrorStream(true).redirectOutput(log).start();
+    }
+
+    /**
+     * @param ignite Client node.
+     * @param n Expected number of server nodes.
+     * @throws InterruptedException If interrupted.
+     */
+    private static void awaitServers(Ignite ignite, int n) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 120_000;
+
+        while (ignite.cluster().forServers().nodes().size() < n) {
+            if (System.currentTimeMillis() > deadline)
+                throw new IgniteException("Node did not join in 2 minutes, see its log.");
+
+            Thread.sleep(200);
+        }
+    }
+
+    /**
+     * Creates and loads caches of the workloads.
+     *
+     * @param ignite Client node.
+     */
+    private static void populate(Ignite ignite) {
+        ignite.getOrCreateCache(PUT_GET_CACHE);
+        ignite.getOrCreateCache(SqlQueriesExample.orgCacheConfiguration(1));
+        ignite.getOrCreateCache(SqlQueriesExample.collocatedPersonCacheConfiguration(1));
+
+        try (IgniteDataStreamer<Integer, String> streamer = ignite.dataStreamer(PUT_GET_CACHE)) {
+            for (int i = 0; i < KEYS; i++)
+                streamer.addData(i, Integer.toString(i));
+        }
+
+        try (IgniteDataStreamer<Long, Organization> orgs = ignite.dataStreamer(SqlQueriesExample.ORG_CACHE);
+             IgniteDataStreamer<AffinityKey<Long>, Person> persons =
+                 ignite.dataStreamer(SqlQueriesExample.COLLOCATED_PERSON_CACHE)) {
+            for (int i = 0; i < ORGS; i++) {
+                Organization org = new Organization("Organization" + i);
+
+                orgs.addData(org.id(), org);
+
+                for (int j = 0; j < PERSONS; j++) {
+                    Person p = new Person(org, "First" + j, "Last" + j, 1000 + j * 10, "Person " + j);
+
+                    persons.addData(p.key(), p);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param ignite Client node.
+     * @return Random put or get, as in {@code DataGrid}.
+     */
+    private static Op putGet(Ignite ignite) {
+        IgniteCache<Integer, String> cache = ignite.cache(PUT_GET_CACHE);
+
+        return () -> {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+
+            int key = rnd.nextInt(KEYS);
+
+            if (rnd.nextBoolean())
+                cache.put(key, Integer.toString(key));
+            else
+                cache.get(key);
+        };
+    }
+
+    /**
+     * @param ignite Client node.
+     * @return Collocated join of persons of a random organization, as in {@code SqlQueriesExample}.
+     */
+    private static Op sqlJoin(Ignite ignite) {
+        IgniteCache<AffinityKey<Long>, Person> cache = ignite.cache(SqlQueriesExample.COLLOCATED_PERSON_CACHE);
+
+        String sql =
+            "select concat(firstName, ' ', lastName), org.name " +
+            "from Person, \"" + SqlQueriesExample.ORG_CACHE + "\".Organization as org " +
+            "where Person.orgId = org.id " +
+            "and org.name = ?";
+
+        return () -> cache.query(new SqlFieldsQuery(sql)
+            .setArgs("Organization" + ThreadLocalRandom.current().nextInt(ORGS))).getAll();
+    }
+
+    /**
+     * @param ignite Client node.
+     * @return Broadcast of an empty closure to all server nodes, as in {@code ClusterGroupExample}.
+     */
+    private static Op broadcast(Ignite ignite) {
+        IgniteCompute compute = ignite.compute(ignite.cluster().forServers());
+
+        return () -> compute.broadcast(new Noop());
+    }
+
+    /**
+     * Runs operation in {@link #THREADS} threads per server node.
+     *
+     * @param nodes Number of server nodes.
+     * @param name Workload name.
+     * @param op Operation.
+     * @return Result.
+     * @throws InterruptedException If interrupted.
+     */
+    private static Result measure(int nodes, String name, Op op) throws InterruptedException {
+        long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(WARMUP);
+        long end = warmupEnd + TimeUnit.SECONDS.toNanos(DURATION);
+
+        int threadCnt = THREADS * nodes;
+
+        long[][] lats = new long[threadCnt][];
+        int[] cnts = new int[threadCnt];
+        long[] errs = new long[threadCnt];
+
+        Thread[] threads = new Thread[threadCnt];
+
+        for (int t = 0; t < threadCnt; t++) {
+            int idx = t;
+
+            threads[t] = new Thread(() -> {
+                long[] lat = new long[1024];
+                int cnt = 0;
+                long err = 0;
+
+                long now;
+
+                try {
+                    while ((now = System.nanoTime()) < end) {
+                        // A failed operation, e.g. a timeout under load, is an error, not a sample.
+                        try {
+                            op.run();
+                        }
+                        catch (RuntimeException e) {
+                            if (now >= warmupEnd && err++ == 0)
+                                System.err.println(">>> " + name + " operation failed: " + e);
+
+                            continue;
+                        }
+
+                        if (now < warmupEnd)
+                            continue;
+
+                        if (cnt == lat.length)
+                            lat = Arrays.copyOf(lat, cnt * 2);
+
+                        lat[cnt++] = System.nanoTime() - now;
+                    }
+                }
+                finally {
+                    lats[idx] = lat;
+                    cnts[idx] = cnt;
+                    errs[idx] = err;
+                }
+            }, "scaling-harness-" + t);
+
+            threads[t].start();
+        }
+
+        OperatingSystemMXBean os = (OperatingSystemMXBean)ManagementFactory.getOperatingSystemMXBean();
+
+        TimeUnit.NANOSECONDS.sleep(warmupEnd - System.nanoTime());
+
+        long cpuStart = os.getProcessCpuTime();
+        long start = System.nanoTime();
+
+        int total = 0;
+        long errors = 0;
+
+        for (int t = 0; t < threadCnt; t++) {
+            threads[t].join();
+
+            total += cnts[t];
+            errors += errs[t];
+        }
+
+        double clientCpu = (double)(os.getProcessCpuTime() - cpuStart) /
+            ((System.nanoTime() - start) * Runtime.getRuntime().availableProcessors());
+
+        long[] all = new long[total];
+        int pos = 0;
+
+        for (int t = 0; t < threadCnt; t++) {
+            System.arraycopy(lats[t], 0, all, pos, cnts[t]);
+
+            pos += cnts[t];
+        }
+
+        Arrays.sort(all);
+
+        Result res = new Result(nodes, threadCnt, total / (double)DURATION,
+            total == 0 ? 0 : all[(int)(total * 0.99)], errors, clientCpu);
+
+        System.out.println(String.format(">>>     %-10s %12.0f ops/s, p99=%.2fms, errors=%d, threads=%d, " +
+            "client cpu=%.0f%%", name, res.throughput, res.p99 / 1e6, res.errors, res.threads, res.clientCpu * 100));
+
+        return res;
+    }
+
+    /**
+     * @param results Results by workload.
+     */
+    private static void print(Map<String, List<Result>> results) {
+        System.out.println();
+        System.out.println(String.format(">>> %-10s %6s %8s %14s %10s %10s %8s %11s", "workload", "nodes",
+            "threads", "ops/s", "p99, ms", "speedup", "errors", "client cpu"));
+
+        boolean limited = false;
+
+        for (Map.Entry<String, List<Result>> e : results.entrySet()) {
+            double base = e.getValue().isEmpty() ? 0 : e.getValue().get(0).throughput;
+
+            for (Result r : e.getValue()) {
+                boolean clientBound = r.clientCpu >= CLIENT_CPU_LIMIT;
+
+                limited |= clientBound;
+
+                System.out.println(String.format(">>> %-10s %6d %8d %14.0f %10.2f %9.2fx %8d %10.0f%%%s", e.getKey(),
+                    r.nodes, r.threads, r.throughput, r.p99 / 1e6, base == 0 ? 0 : r.throughput / base, r.errors,
+                    r.clientCpu * 100, clientBound ? " *" : ""));
+            }
+        }
+
+        System.out.println();
+        System.out.println(">>> Load is generated by this single client JVM with " + THREADS +
+            " thread(s) per server node and workload.");
+
+        if (limited) {
+            System.out.println(">>> * Client CPU is above " + Math.round(CLIENT_CPU_LIMIT * 100) + "%, throughput " +
+                "is capped by the load generator, run the harness on a bigger host to measure the cluster.");
+        }
+
+        // Throughput relative to a single node, linear scaling doubles the bar with the node count.
+        System.out.println();
+        System.out.println(">>> Scalability curve (throughput relative to 1 node, | marks linear):");
+
+        for (Map.Entry<String, List<Result>> e : results.entrySet()) {
+            double base = e.getValue().isEmpty() ? 0 : e.getValue().get(0).throughput;
+
+            for (Result r : e.getValue()) {
+                double speedup = base == 0 ? 0 : r.throughput / base;
+
+                char[] bar = new char[(int)Math.round(Math.max(speedup, r.nodes) * 10) + 1];
+
+                Arrays.fill(bar, ' ');
+                Arrays.fill(bar, 0, (int)Math.round(speedup * 10), '#');
+
+                bar[r.nodes * 10] = '|';
+
+                System.out.println(String.format(">>> %-10s %2d %s", e.getKey(), r.nodes, new String(bar)));
+            }
+        }
+    }
+
+    /**
+     * @param results Results by workload.
+     * @param file File.
+     * @throws IOException If failed.
+     */
+    private static void write(Map<String, List<Result>> results, File file) throws IOException {
+        try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+            out.println("workload,nodes,threads,ops_per_sec,p99_ms,errors,client_cpu");
+
+            for (Map.Entry<String, List<Result>> e : results.entrySet()) {
+                for (Result r : e.getValue()) {
+                    out.println(String.format("%s,%d,%d,%.0f,%.3f,%d,%.2f", e.getKey(), r.nodes, r.threads,
+                        r.throughput, r.p99 / 1e6, r.errors, r.clientCpu));
+                }
+            }
+        }
+    }
+
+    /**
+     * Workload operation.
+     */
+    private interface Op {
+        /** Runs operation. */
+        void run();
+    }
+
+    /**
+     * Empty broadcast closure.
+     */
+    private static class Noop implements IgniteRunnable {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** {@inheritDoc} */
+        @Override public void run() {
+            // No-op.
+        }
+    }
+
+    /**
+     * Workload result for a cluster size.
+     */
+    private static class Result {
+        /** Number of server nodes. */
+        private final int nodes;
+
+        /** Number of client threads. */
+        private final int threads;
+
+        /** Operations per second. */
+        private final double throughput;
+
+        /** 99th percentile latency in nanoseconds. */
+        private final long p99;
+
+        /** Number of failed operations. */
+        private final long errors;
+
+        /** CPU usage of the client process, from {@code 0} to {@code 1} of all cores. */
+        private final double clientCpu;
+
+        /**
+         * @param nodes Number of server nodes.
+         * @param threads Number of client threads.
+         * @param throughput Operations per second.
+         * @param p99 99th percentile latency in nanoseconds.
+         * @param errors Number of failed operations.
+         * @param clientCpu CPU usage of the client process, from {@code 0} to {@code 1} of all cores.
+         */
+        Result(int nodes, int threads, double throughput, long p99, long errors, double clientCpu) {
+            this.nodes = nodes;
+            this.threads = threads;
+            this.throughput = throughput;
+            this.p99 = p99;
+            this.errors = errors;
+            this.clientCpu = clientCpu;
+        }
+    }
+}
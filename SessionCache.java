@@ -0,0 +1,723 @@
+package com.bizruntime.Ignite.Ignite;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.cache.expiry.CreatedExpiryPolicy;
+import javax.cache.expiry.Duration;
+import javax.cache.expiry.ExpiryPolicy;
+import javax.cache.expiry.TouchedExpiryPolicy;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.IgniteLogger;
+import org.apache.ignite.cache.query.QueryCursor;
+import org.apache.ignite.cache.query.ScanQuery;
+import org.apache.ignite.cluster.ClusterGroup;
+import org.apache.ignite.cluster.ClusterNode;
+import org.apache.ignite.configuration.CacheConfiguration;
+import org.apache.ignite.events.CacheEvent;
+import org.apache.ignite.events.DiscoveryEvent;
+import org.apache.ignite.events.Event;
+import org.apache.ignite.events.EventType;
+import org.apache.ignite.lang.IgniteCallable;
+import org.apache.ignite.lang.IgniteFuture;
+import org.apache.ignite.lang.IgnitePredicate;
+import org.apache.ignite.lang.IgniteRunnable;
+import org.apache.ignite.resources.IgniteInstanceResource;
+
+/**
+ * Cache of short-lived entries, e.g. sessions, which expire after a time to live and are purged eagerly in
+ * the background at a bounded rate.
+ * <p>
+ * Time to live is set for the cache with {@link #configuration(String, long, boolean)}, either since creation
+ * or since last access, and can be overridden for an entry with {@link #put(Object, Object, long)}, which
+ * writes through {@link IgniteCache#withExpiryPolicy(ExpiryPolicy)}. Expired entries are never returned.
+ * <p>
+ * Eager TTL is enabled for the cache, so Ignite removes expired entries in the background on every server node
+ * whoever wrote them and also after restart. While this facade is started, every server node, including nodes
+ * joining later, additionally runs a purger which pages through its primary partitions one by one with a local
+ * {@link ScanQuery}, reading at most {@code purgeRate} live rows per second. The scan is carried across ticks,
+ * so a large partition is read in small pages and not in one burst. Ignite checks every row the scan reads
+ * against its expire time and removes the expired one instead of returning it, so only entries which actually
+ * expired are purged. Spreading the work evenly keeps the pending backlog small, so that Ignite's cleanup does
+ * not fall behind under constant churn and then remove a burst of entries competing with foreground operations.
+ * <p>
+ * Purging relies on this behavior of the scan, so it is checked rather than assumed: every server node counts
+ * expiry events of the cache ({@code EVT_CACHE_OBJECT_EXPIRED} is enabled locally for that) and tells the ones
+ * raised by its purge thread from the ones raised by Ignite's TTL worker. Both counts, expired entries per
+ * second and memory reclaimed are summed over server nodes with {@link #metrics()} and logged by every node
+ * when its purger stops. Entries are counted per node, so backup copies count too. Memory is estimated from
+ * {@link String} and {@code byte[]} values only.
+ */
+public class SessionCache<K, V> implements AutoCloseable {
+    /** Default purge rate, entries per second visited on every server node. */
+    public static final int DFLT_PURGE_RATE = 10_000;
+
+    /** Purge interval in milliseconds. */
+    private static final long TICK = 100;
+
+    /** Ignite instance. */
+    private final Ignite ignite;
+
+    /** Cache. */
+    private final IgniteCache<K, V> cache;
+
+    /** Default time to live in milliseconds. */
+    private final long ttl;
+
+    /** Whether access prolongs time to live. */
+    private final boolean touched;
+
+    /** Caches with time to live of an entry by time to live. */
+    private final ConcurrentMap<Long, IgniteCache<K, V>> ttlCaches = new ConcurrentHashMap<>();
+
+    /** Purge rate, entries per second visited on every server node, {@code 0} for Ignite's cleanup only. */
+    private int purgeRate = DFLT_PURGE_RATE;
+
+    /** Whether purgers are started. */
+    private boolean started;
+
+    /** IDs of nodes purgers were started on by this facade. */
+    private final Set<UUID> purgerNodes = ConcurrentHashMap.newKeySet();
+
+    /** Starts purgers on server nodes joining after {@link #start()}. */
+    private IgnitePredicate<Event> joinLsnr;
+
+    /**
+     * @param ignite Ignite instance.
+     * @param cache Cache with expiry policy from {@link #configuration(String, long, boolean)}.
+     */
+    public SessionCache(Ignite ignite, IgniteCache<K, V> cache) {
+        this.ignite = ignite;
+        this.cache = cache;
+
+        @SuppressWarnings("unchecked")
+        CacheConfiguration<K, V> cfg = cache.getConfiguration(CacheConfiguration.class);
+
+        if (cfg.getExpiryPolicyFactory() == null)
+            throw new IllegalArgumentException("Cache has no expiry policy: " + cache.getName());
+
+        ExpiryPolicy plc = (ExpiryPolicy)cfg.getExpiryPolicyFactory().create();
+
+        Duration created = plc.getExpiryForCreation();
+
+        ttl = created == null || created.isEternal() ? 0 : created.getTimeUnit().toMillis(created.getDurationAmount());
+        touched = plc.getExpiryForAccess() != null;
+    }
+
+    /**
+     * Configuration of a cache with time to live and eager TTL.
+     *
+     * @param name Cache name.
+     * @param ttl Time to live in milliseconds.
+     * @param touched {@code True} if reads and writes prolong time to live, {@code false} if it is counted
+     *      since creation.
+     * @return Cache configuration.
+     */
+    public static <K, V> CacheConfiguration<K, V> configuration(String name, long ttl, boolean touched) {
+        Duration dur = new Duration(TimeUnit.MILLISECONDS, ttl);
+
+        return new CacheConfiguration<K, V>(name)
+            .setExpiryPolicyFactory(touched ? TouchedExpiryPolicy.factoryOf(dur) : CreatedExpiryPolicy.factoryOf(dur))
+            .setEagerTtl(true);
+    }
+
+    /**
+     * @param purgeRate Purge rate, entries per second visited on every server node, {@code 0} for Ignite's
+     *      cleanup only.
+     * @return {@code this} for chaining.
+     */
+    public SessionCache<K, V> setPurgeRate(int purgeRate) {
+        this.purgeRate = purgeRate;
+
+        return this;
+    }
+
+    /**
+     * Starts purgers on server nodes and on server nodes joining later, a purger already started for the cache
+     * by another facade is shared and takes the purge rate of this one.
+     *
+     * @return {@code this} for chaining.
+     */
+    public synchronized SessionCache<K, V> start() {
+        if (started)
+            throw new IllegalStateException("Session cache is already started.");
+
+        // Listener goes first, so that a node joining meanwhile is not missed, purgerNodes drops duplicates.
+        joinLsnr = evt -> {
+            ClusterNode node = ((DiscoveryEvent)evt).eventNode();
+
+            // Discovery thread must not block, the purger is started asynchronously.
+            if (!node.isClient())
+                startPurgers(Collections.singleton(node.id()));
+
+            return true;
+        };
+
+        ignite.events().enableLocal(EventType.EVT_NODE_JOINED);
+        ignite.events().localListen(joinLsnr, EventType.EVT_NODE_JOINED);
+
+        Collection<UUID> ids = new ArrayList<>();
+
+        for (ClusterNode node : ignite.cluster().forServers().nodes())
+            ids.add(node.id());
+
+        IgniteFuture<Void> fut = startPurgers(ids);
+
+        if (fut != null)
+            fut.get();
+
+        started = true;
+
+        return this;
+    }
+
+    /**
+     * @return Underlying cache.
+     */
+    public IgniteCache<K, V> cache() {
+        return cache;
+    }
+
+    /**
+     * Puts entry with time to live of the cache.
+     *
+     * @param key Key.
+     * @param val Value.
+     */
+    public void put(K key, V val) {
+        cache.put(key, val);
+    }
+
+    /**
+     * Puts entry with its own time to live.
+     *
+     * @param key Key.
+     * @param val Value.
+     * @param ttl Time to live of the entry in milliseconds, positive.
+     */
+    public void put(K key, V val, long ttl) {
+        ttlCaches.computeIfAbsent(ttl, t -> cache.withExpiryPolicy(touched ?
+            new TouchedExpiryPolicy(new Duration(TimeUnit.MILLISECONDS, t)) :
+            new CreatedExpiryPolicy(new Duration(TimeUnit.MILLISECONDS, t)))).put(key, val);
+    }
+
+    /**
+     * @param key Key.
+     * @return Value or {@code null} if absent or expired.
+     */
+    public V get(K key) {
+        return cache.get(key);
+    }
+
+    /**
+     * @param key Key.
+     * @return {@code True} if entry was removed.
+     */
+    public boolean remove(K key) {
+        return cache.remove(key);
+    }
+
+    /**
+     * @return Expiry metrics summed over server nodes running purgers.
+     */
+    public PurgeMetrics metrics() {
+        long expired = 0;
+        long purged = 0;
+        double expiredPerSec = 0;
+        long reclaimed = 0;
+
+        Collection<double[]> nodeMetrics =
+            ignite.compute(ignite.cluster().forServers()).broadcast(new PurgerMetrics(cache.getName()));
+
+        for (double[] m : nodeMetrics) {
+            expired += (long)m[0];
+            expiredPerSec += m[1];
+            reclaimed += (long)m[2];
+            purged += (long)m[3];
+        }
+
+        return new PurgeMetrics(cache.getName(), ttl, touched, expired, purged, expiredPerSec, reclaimed);
+    }
+
+    /**
+     * @return Expiry metrics.
+     */
+    public String report() {
+        return metrics().toString();
+    }
+
+    /** {@inheritDoc} */
+    @Override public synchronized void close() {
+        if (started) {
+            ignite.events().stopLocalListen(joinLsnr, EventType.EVT_NODE_JOINED);
+
+            ClusterGroup alive = ignite.cluster().forNodeIds(purgerNodes);
+
+            if (!alive.nodes().isEmpty())
+                ignite.compute(alive).broadcast(new StopPurger(cache.getName()));
+
+            purgerNodes.clear();
+
+            started = false;
+        }
+    }
+
+    /**
+     * Starts purgers on nodes this facade has not started them on yet.
+     *
+     * @param ids Node IDs.
+     * @return Future of the start, {@code null} if purgers are started on all nodes already.
+     */
+    private IgniteFuture<Void> startPurgers(Collection<UUID> ids) {
+        Collection<UUID> fresh = new ArrayList<>();
+
+        for (UUID id : ids) {
+            if (purgerNodes.add(id))
+                fresh.add(id);
+        }
+
+        if (fresh.isEmpty())
+            return null;
+
+        return ignite.compute(ignite.cluster().forNodeIds(fresh))
+            .broadcastAsync(new StartPurger(cache.getName(), purgeRate));
+    }
+
+    /**
+     * @param cacheName Cache name.
+     * @return Key of the purger in the node local map.
+     */
+    private static String purgerKey(String cacheName) {
+        return "session-purger-" + cacheName;
+    }
+
+    /**
+     * Purges local primary partitions of a cache and counts expired entries of the node.
+     */
+    private static class Purger implements Runnable {
+        /** Ignite instance. */
+        private final Ignite ignite;
+
+        /** Cache with binary values, so that value classes are not needed on server nodes. */
+        private final IgniteCache<Object, Object> cache;
+
+        /** Logger. */
+        private final IgniteLogger log;
+
+        /** Number of facades sharing the purger. */
+        private final AtomicInteger refs = new AtomicInteger();
+
+        /** Purge rate, entries per second. */
+        private volatile int rate;
+
+        /** Number of expired entries. */
+        private final LongAdder expired = new LongAdder();
+
+        /** Number of expired entries removed by the purge thread. */
+        private final LongAdder purged = new LongAdder();
+
+        /** Estimated reclaimed memory in bytes. */
+        private final LongAdder reclaimed = new LongAdder();
+
+        /** Expired entries per second over the last second. */
+        private volatile double expiredPerSec;
+
+        /** Start of the current rate sampling window. */
+        private long rateStart = System.currentTimeMillis();
+
+        /** Number of expired entries at the start of the current rate sampling window. */
+        private long rateBase;
+
+        /** Entries which can be visited without exceeding the rate. */
+        private long credit;
+
+        /** Primary partitions of the current pass. */
+        private int[] parts = new int[0];
+
+        /** Next partition to purge. */
+        private int next;
+
+        /** Scan of the current partition, carried across ticks. */
+        private QueryCursor<?> scanCur;
+
+        /** Iterator of the current partition scan. */
+        private Iterator<?> scanIt;
+
+        /** Counts expiry events. */
+        private IgnitePredicate<Event> expiryLsnr;
+
+        /** Purge thread. */
+        private volatile Thread purgeThread;
+
+        /** Purge executor. */
+        private ScheduledExecutorService exec;
+
+        /**
+         * @param ignite Ignite instance.
+         * @param cacheName Cache name.
+         */
+        Purger(Ignite ignite, String cacheName) {
+            this.ignite = ignite;
+
+            cache = ignite.cache(cacheName).withKeepBinary();
+            log = ignite.log().getLogger(SessionCache.class);
+        }
+
+        /**
+         * Starts counting expired entries and purging.
+         */
+        synchronized void start() {
+            String cacheName = cache.getName();
+
+            // Local listeners are notified in the thread which expired the entry.
+            expiryLsnr = evt -> {
+                CacheEvent e = (CacheEvent)evt;
+
+                if (cacheName.equals(e.cacheName())) {
+                    expired.increment();
+                    reclaimed.add(sizeOf(e.oldValue()));
+
+                    if (Thread.currentThread() == purgeThread)
+                        purged.increment();
+                }
+
+                return true;
+            };
+
+            ignite.events().enableLocal(EventType.EVT_CACHE_OBJECT_EXPIRED);
+            ignite.events().localListen(expiryLsnr, EventType.EVT_CACHE_OBJECT_EXPIRED);
+
+            exec = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "session-purger-" + cacheName);
+
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+
+                purgeThread = t;
+
+                return t;
+            });
+
+            exec.scheduleWithFixedDelay(this, TICK, TICK, TimeUnit.MILLISECONDS);
+        }
+
+        /** {@inheritDoc} */
+        @Override public void run() {
+            long now = System.currentTimeMillis();
+
+            int rate = this.rate;
+
+            try {
+                if (rate > 0) {
+                    long perTick = Math.max(1, (long)rate * TICK / 1000);
+
+                    // Unused credit is kept for a second at most, so that an idle purger does not burst.
+                    credit = Math.min(rate, credit + perTick);
+
+                    while (credit > 0) {
+                        if (scanIt == null || !scanIt.hasNext()) {
+                            closeScan();
+
+                            if (next == parts.length) {
+                                parts = ignite.affinity(cache.getName())
+                                    .primaryPartitions(ignite.cluster().localNode());
+                                next = 0;
+
+                                if (parts.length == 0)
+                                    break;
+                            }
+
+                            // Pages are no larger than a tick, so that a tick does not read ahead of its credit.
+                            scanCur = cache.query(new ScanQuery<>(parts[next++]).setLocal(true)
+                                .setPageSize((int)Math.min(perTick, 1024)));
+                            scanIt = scanCur.iterator();
+
+                            // Opening a partition costs a visit, so that empty partitions are paced too.
+                            credit--;
+
+                            continue;
+                        }
+
+                        // Live row, the expired ones on the way to it are removed by the scan.
+                        scanIt.next();
+
+                        credit--;
+                    }
+                }
+            }
+            catch (RuntimeException e) {
+                closeScan();
+
+                // Next partition is purged on the next tick, Ignite's cleanup removes what is missed.
+                log.warning("Session purge failed [cache=" + cache.getName() + ']', e);
+            }
+
+            if (now - rateStart >= 1000) {
+                long n = expired.sum();
+
+                expiredPerSec = (n - rateBase) * 1000.0 / (now - rateStart);
+
+                rateBase = n;
+                rateStart = now;
+            }
+        }
+
+        /**
+         * Closes scan of the current partition.
+         */
+        private void closeScan() {
+            if (scanCur != null) {
+                scanCur.close();
+
+                scanCur = null;
+                scanIt = null;
+            }
+        }
+
+        /**
+         * @return Expired entries, expired entries per second, reclaimed bytes and entries removed by the purger.
+         */
+        double[] metrics() {
+            return new double[] {expired.sum(), expiredPerSec, reclaimed.sum(), purged.sum()};
+        }
+
+        /**
+         * Stops purging and counting.
+         */
+        synchronized void stop() {
+            // Scan is closed in the purge thread, periodic ticks are cancelled by shutdown.
+            exec.execute(this::closeScan);
+            exec.shutdown();
+
+            ignite.events().stopLocalListen(expiryLsnr, EventType.EVT_CACHE_OBJECT_EXPIRED);
+
+            long n = expired.sum();
+            long p = purged.sum();
+
+            if (log.isInfoEnabled()) {
+                log.info("Session purger stopped [cache=" + cache.getName() + ", expired=" + n +
+                    ", byPurger=" + p + ", byTtlWorker=" + (n - p) + ']');
+            }
+        }
+
+        /**
+         * @param val Value.
+         * @return Estimated stored size in bytes, {@code 0} if unknown.
+         */
+        private static int sizeOf(Object val) {
+            if (val instanceof String)
+                return ((String)val).length();
+
+            if (val instanceof byte[])
+                return ((byte[])val).length;
+
+            return 0;
+        }
+    }
+
+    /**
+     * Starts purger on a server node or updates rate of the running one.
+     */
+    private static class StartPurger implements IgniteRunnable {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** Cache name. */
+        private final String cacheName;
+
+        /** Purge rate. */
+        private final int rate;
+
+        /** Ignite instance. */
+        @IgniteInstanceResource
+        private transient Ignite ignite;
+
+        /**
+         * @param cacheName Cache name.
+         * @param rate Purge rate.
+         */
+        StartPurger(String cacheName, int rate) {
+            this.cacheName = cacheName;
+            this.rate = rate;
+        }
+
+        /** {@inheritDoc} */
+        @Override public void run() {
+            ConcurrentMap<String, Purger> purgers = ignite.cluster().nodeLocalMap();
+
+            Purger purger = purgers.compute(purgerKey(cacheName), (k, p) -> {
+                if (p == null) {
+                    p = new Purger(ignite, cacheName);
+
+                    p.start();
+                }
+
+                p.refs.incrementAndGet();
+
+                return p;
+            });
+
+            purger.rate = rate;
+        }
+    }
+
+    /**
+     * Stops purger on a server node when the last facade sharing it is closed.
+     */
+    private static class StopPurger implements IgniteRunnable {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** Cache name. */
+        private final String cacheName;
+
+        /** Ignite instance. */
+        @IgniteInstanceResource
+        private transient Ignite ignite;
+
+        /**
+         * @param cacheName Cache name.
+         */
+        StopPurger(String cacheName) {
+            this.cacheName = cacheName;
+        }
+
+        /** {@inheritDoc} */
+        @Override public void run() {
+            ConcurrentMap<String, Purger> purgers = ignite.cluster().nodeLocalMap();
+
+            purgers.computeIfPresent(purgerKey(cacheName), (k, p) -> {
+                if (p.refs.decrementAndGet() > 0)
+                    return p;
+
+                p.stop();
+
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Returns metrics of the purger on a server node.
+     */
+    private static class PurgerMetrics implements IgniteCallable<double[]> {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** Cache name. */
+        private final String cacheName;
+
+        /** Ignite instance. */
+        @IgniteInstanceResource
+        private transient Ignite ignite;
+
+        /**
+         * @param cacheName Cache name.
+         */
+        PurgerMetrics(String cacheName) {
+            this.cacheName = cacheName;
+        }
+
+        /** {@inheritDoc} */
+        @Override public double[] call() {
+            ConcurrentMap<String, Purger> purgers = ignite.cluster().nodeLocalMap();
+
+            Purger purger = purgers.get(purgerKey(cacheName));
+
+            return purger == null ? new double[4] : purger.metrics();
+        }
+    }
+
+    /**
+     * Expiry metrics of a cache.
+     */
+    public static class PurgeMetrics {
+        /** Cache name. */
+        private final String cacheName;
+
+        /** Default time to live in milliseconds. */
+        private final long ttl;
+
+        /** Whether access prolongs time to live. */
+        private final boolean touched;
+
+        /** Number of expired entries. */
+        private final long expired;
+
+        /** Number of expired entries removed by purgers, the rest was removed by Ignite's TTL worker. */
+        private final long purged;
+
+        /** Expired entries per second over the last second. */
+        private final double expiredPerSec;
+
+        /** Estimated reclaimed memory in bytes. */
+        private final long reclaimed;
+
+        /**
+         * @param cacheName Cache name.
+         * @param ttl Default time to live in milliseconds.
+         * @param touched Whether access prolongs time to live.
+         * @param expired Number of expired entries.
+         * @param purged Number of expired entries removed by purgers.
+         * @param expiredPerSec Expired entries per second over the last second.
+         * @param reclaimed Estimated reclaimed memory in bytes.
+         */
+        PurgeMetrics(String cacheName, long ttl, boolean touched, long expired, long purged, double expiredPerSec,
+            long reclaimed) {
+            this.cacheName = cacheName;
+            this.ttl = ttl;
+            this.touched = touched;
+            this.expired = expired;
+            this.purged = purged;
+            this.expiredPerSec = expiredPerSec;
+            this.reclaimed = reclaimed;
+        }
+
+        /**
+         * @return Number of expired entries.
+         */
+        public long expired() {
+            return expired;
+        }
+
+        /**
+         * @return Number of expired entries removed by purgers, the rest was removed by Ignite's TTL worker.
+         */
+        public long purged() {
+            return purged;
+        }
+
+        /**
+         * @return Expired entries per second over the last second.
+         */
+        public double expiredPerSecond() {
+            return expiredPerSec;
+        }
+
+        /**
+         * @return Estimated reclaimed memory in bytes.
+         */
+        public long reclaimedBytes() {
+            return reclaimed;
+        }
+
+        /** {@inheritDoc} */
+        @Override public String toString() {
+            return String.format("Session cache [name=%s, ttl=%dms, touched=%b, expired=%d, byPurger=%d, " +
+                "byTtlWorker=%d, expiredPerSec=%.1f, reclaimed=%dKB]", cacheName, ttl, touched, expired, purged,
+                expired - purged, expiredPerSec, reclaimed / 1024);
+        }
+    }
+}
@@ -0,0 +1,360 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteException;
+import org.apache.ignite.cluster.ClusterNode;
+import org.apache.ignite.configuration.DataStorageConfiguration;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.apache.ignite.lang.IgniteCallable;
+import org.apache.ignite.resources.IgniteInstanceResource;
+
+/**
+ * Point-in-time backup of persistent caches to a local directory and restore from it.
+ * <p>
+ * A backup is taken in two phases. First a consistent cluster snapshot is created with
+ * {@link org.apache.ignite.IgniteSnapshot#createSnapshot(String)}: all nodes checkpoint at the same
+ * topology version and copy their partition files into the snapshot directory. Then the snapshot is copied
+ * from the snapshot directory of every node to the backup directory on the node's host, one task per file
+ * (i.e. per partition) on a thread pool, with zero-copy {@link FileChannel#transferTo(long, long,
+ * java.nio.channels.WritableByteChannel)}. Restore copies files back the same way, if the snapshot is missing,
+ * and then restores cache groups with {@link org.apache.ignite.IgniteSnapshot#restoreSnapshot(String,
+ * Collection)}, which loads partitions on every node in parallel.
+ * <p>
+ * Nodes on the same host sharing a snapshot directory copy it once. Every phase is reported with its
+ * duration and throughput in MB/s.
+ */
+public class SnapshotBackup {
+    /** Node attribute holding MAC addresses of the host. */
+    private static final String ATTR_MACS = "org.apache.ignite.macs";
+
+    /** Ignite instance. */
+    private final Ignite ignite;
+
+    /** Backup directory, the same path on every host. */
+    private final File backupDir;
+
+    /** Number of files copied in parallel on each host. */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * @param ignite Ignite instance.
+     * @param backupDir Backup directory, the same path on every host.
+     */
+    public SnapshotBackup(Ignite ignite, File backupDir) {
+        this.ignite = ignite;
+        this.backupDir = backupDir;
+    }
+
+    /**
+     * @param threads Number of files copied in parallel on each host.
+     * @return {@code this} for chaining.
+     */
+    public SnapshotBackup setThreads(int threads) {
+        this.threads = threads;
+
+        return this;
+    }
+
+    /**
+     * @param ignite Ignite instance.
+     * @return Whether default data region of the local node is persistent.
+     */
+    public static boolean persistenceEnabled(Ignite ignite) {
+        DataStorageConfiguration dsCfg = ignite.configuration().getDataStorageConfiguration();
+
+        return dsCfg != null && dsCfg.getDefaultDataRegionConfiguration().isPersistenceEnabled();
+    }
+
+    /**
+     * Creates cluster snapshot and copies it to the backup directory.
+     *
+     * @param name Snapshot name.
+     * @return Phase reports: create and copy.
+     */
+    public List<Phase> backup(String name) {
+        List<Phase> phases = new ArrayList<>();
+
+        long start = System.nanoTime();
+
+        ignite.snapshot().createSnapshot(name).get();
+
+        long createTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+
+        long[] bytes = copy(name, true);
+
+        // Snapshot size is known once it is copied.
+        phases.add(new Phase("create", createTime, bytes[1]));
+        phases.add(new Phase("copy", System.nanoTime() - start, bytes[0]));
+
+        return phases;
+    }
+
+    /**
+     * Copies snapshot back from the backup directory if it is missing and restores cache groups from it.
+     * Caches of the groups must not exist in the cluster.
+     *
+     * @param name Snapshot name.
+     * @param cacheGrps Cache groups to restore, a cache without explicit group is a group of its own name.
+     * @return Phase reports: copy back and restore.
+     */
+    public List<Phase> restore(String name, Collection<String> cacheGrps) {
+        List<Phase> phases = new ArrayList<>();
+
+        long start = System.nanoTime();
+
+        long[] bytes = copy(name, false);
+
+        phases.add(new Phase("copy back", System.nanoTime() - start, bytes[0]));
+
+        start = System.nanoTime();
+
+        ignite.snapshot().restoreSnapshot(name, cacheGrps).get();
+
+        phases.add(new Phase("restore", System.nanoTime() - start, bytes[1]));
+
+        return phases;
+    }
+
+    /**
+     * Copies snapshot between snapshot and backup directories on all hosts.
+     *
+     * @param name Snapshot name.
+     * @param toBackup {@code True} to copy to the backup directory, {@code false} to copy back.
+     * @return Number of copied bytes and size of the snapshot over all hosts.
+     */
+    private long[] copy(String name, boolean toBackup) {
+        Map<String, UUID> copiers = new HashMap<>();
+
+        // Single node per host and snapshot directory.
+        for (String[] loc : ignite.compute(ignite.cluster().forServers()).broadcast(new LocateJob()))
+            copiers.putIfAbsent(loc[1], UUID.fromString(loc[0]));
+
+        long[] bytes = new long[2];
+
+        for (long[] b : ignite.compute(ignite.cluster().forNodeIds(copiers.values()))
+            .broadcast(new CopyJob(name, backupDir, toBackup, threads))) {
+            bytes[0] += b[0];
+            bytes[1] += b[1];
+        }
+
+        return bytes;
+    }
+
+    /**
+     * @param cfg Node configuration.
+     * @return Snapshot directory of the node.
+     */
+    private static File snapshotRoot(IgniteConfiguration cfg) {
+        File root = new File(cfg.getSnapshotPath());
+
+        if (root.isAbsolute())
+            return root;
+
+        File work = cfg.getWorkDirectory() != null ? new File(cfg.getWorkDirectory()) :
+            new File(cfg.getIgniteHome(), "work");
+
+        return new File(work, cfg.getSnapshotPath());
+    }
+
+    /**
+     * Returns node ID and key of its host and snapshot directory.
+     */
+    private static class LocateJob implements IgniteCallable<String[]> {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** Ignite instance. */
+        @IgniteInstanceResource
+        private transient Ignite ignite;
+
+        /** {@inheritDoc} */
+        @Override public String[] call() throws Exception {
+            ClusterNode node = ignite.cluster().localNode();
+
+            return new String[] {
+                node.id().toString(),
+                node.attribute(ATTR_MACS) + "|" + snapshotRoot(ignite.configuration()).getCanonicalPath()
+            };
+        }
+    }
+
+    /**
+     * Copies snapshot files of the host in parallel, returns number of copied bytes and snapshot size.
+     */
+    private static class CopyJob implements IgniteCallable<long[]> {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** Snapshot name. */
+        private final String name;
+
+        /** Backup directory. */
+        private final File backupDir;
+
+        /** Copy direction. */
+        private final boolean toBackup;
+
+        /** Number of files copied in parallel. */
+        private final int threads;
+
+        /** Ignite instance. */
+        @IgniteInstanceResource
+        private transient Ignite ignite;
+
+        /**
+         * @param name Snapshot name.
+         * @param backupDir Backup directory.
+         * @param toBackup Copy direction.
+         * @param threads Number of files copied in parallel.
+         */
+        CopyJob(String name, File backupDir, boolean toBackup, int threads) {
+            this.name = name;
+            this.backupDir = backupDir;
+            this.toBackup = toBackup;
+            this.threads = threads;
+        }
+
+        /** {@inheritDoc} */
+        @Override public long[] call() throws Exception {
+            Path snp = snapshotRoot(ignite.configuration()).toPath().resolve(name);
+            Path bak = backupDir.toPath().resolve(name);
+
+            Path src = toBackup ? snp : bak;
+            Path dst = toBackup ? bak : snp;
+
+            if (!Files.isDirectory(src))
+                throw new IgniteException("Snapshot is not found: " + src);
+
+            // Existing snapshot is not overwritten on restore, it is what the cluster would restore anyway.
+            if (!toBackup && Files.isDirectory(dst))
+                return new long[] {0, size(dst)};
+
+            List<Path> files;
+
+            try (Stream<Path> s = Files.walk(src)) {
+                files = s.filter(Files::isRegularFile).collect(Collectors.toList());
+            }
+
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+            try {
+                List<Future<Long>> futs = new ArrayList<>(files.size());
+
+                for (Path f : files) {
+                    Path target = dst.resolve(src.relativize(f));
+
+                    Files.createDirectories(target.getParent());
+
+                    futs.add(pool.submit(() -> transfer(f, target)));
+                }
+
+                long bytes = 0;
+
+                for (Future<Long> fut : futs)
+                    bytes += fut.get();
+
+                return new long[] {bytes, bytes};
+            }
+            finally {
+                pool.shutdownNow();
+            }
+        }
+
+        /**
+         * @param from Source file.
+         * @param to Target file.
+         * @return Number of copied bytes.
+         * @throws IOException If failed.
+         */
+        private static long transfer(Path from, Path to) throws IOException {
+            try (FileChannel in = FileChannel.open(from, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(to, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+                long size = in.size();
+                long pos = 0;
+
+                while (pos < size)
+                    pos += in.transferTo(pos, size - pos, out);
+
+                out.force(false);
+
+                return size;
+            }
+        }
+
+        /**
+         * @param dir Directory.
+         * @return Size of files in the directory.
+         * @throws IOException If failed.
+         */
+        private static long size(Path dir) throws IOException {
+            try (Stream<Path> s = Files.walk(dir)) {
+                return s.filter(Files::isRegularFile).mapToLong(f -> {
+                    try {
+                        return Files.size(f);
+                    }
+                    catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }).sum();
+            }
+        }
+    }
+
+    /**
+     * Duration and throughput of a phase.
+     */
+    public static class Phase {
+        /** Phase name. */
+        private final String name;
+
+        /** Duration in nanoseconds. */
+        private final long dur;
+
+        /** Number of bytes. */
+        private final long bytes;
+
+        /**
+         * @param name Phase name.
+         * @param dur Duration in nanoseconds.
+         * @param bytes Number of bytes.
+         */
+        Phase(String name, long dur, long bytes) {
+            this.name = name;
+            this.dur = dur;
+            this.bytes = bytes;
+        }
+
+        /**
+         * @return Throughput in MB/s.
+         */
+        public double mbPerSec() {
+            return dur == 0 ? 0 : bytes / (1024.0 * 1024) / (dur / 1e9);
+        }
+
+        /** {@inheritDoc} */
+        @Override public String toString() {
+            return String.format("%s [size=%.1fMB, duration=%dms, throughput=%.1fMB/s]", name,
+                bytes / (1024.0 * 1024), dur / 1_000_000, mbPerSec());
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package maven.ignite;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.cache.event.CacheEntryEvent;
+
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.cache.query.ContinuousQuery;
+import org.apache.ignite.cache.query.QueryCursor;
+import org.apache.ignite.cache.query.SqlFieldsQuery;
+
+/**
+ * Client-side cache of SQL query results, keyed by normalized SQL text and arguments.
+ * <p>
+ * Every cached result remembers update versions of the tables it was read from. A table version is
+ * incremented either explicitly with {@link #invalidate(String)} (e.g. after an update through JDBC), or by a
+ * {@link ContinuousQuery} registered with {@link #watch(IgniteCache, String)} on every update of the table
+ * cache. A result is served from memory until a version of any of its tables changes, its TTL expires or it
+ * is evicted as the least recently used one.
+ */
+public class SqlResultCache implements AutoCloseable {
+    /** Maximum number of cached results. */
+    private final int maxSize;
+
+    /** Time to live of a cached result in milliseconds. */
+    private final long ttl;
+
+    /** Update versions by upper case table name. */
+    private final ConcurrentMap<String, AtomicLong> vers = new ConcurrentHashMap<>();
+
+    /** Cached results in access order. */
+    private final LinkedHashMap<Key, Result> results;
+
+    /** Continuous queries watching table caches. */
+    private final List<QueryCursor<?>> watches = new CopyOnWriteArrayList<>();
+
+    /** Number of hits. */
+    private final AtomicLong hits = new AtomicLong();
+
+    /** Number of misses. */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxSize Maximum number of cached results.
+     * @param ttl Time to live of a cached result in milliseconds.
+     */
+    public SqlResultCache(int maxSize, long ttl) {
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+
+        results = new LinkedHashMap<Key, Result>(16, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<Key, Result> eldest) {
+                return size() > SqlResultCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Executes query through JDBC connection or returns cached result.
+     *
+     * @param conn Connection.
+     * @param sql SQL query.
+     * @param args Query arguments.
+     * @param tables Tables the query reads.
+     * @return Rows.
+     * @throws SQLException If failed.
+     */
+    public List<List<?>> query(Connection conn, String sql, Object[] args, String... tables) throws SQLException {
+        return get(sql, args, tables, () -> {
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                for (int i = 0; i < args.length; i++)
+                    stmt.setObject(i + 1, args[i]);
+
+                try (ResultSet rs = stmt.executeQuery()) {
+                    int cols = rs.getMetaData().getColumnCount();
+
+                    List<List<?>> rows = new ArrayList<>();
+
+                    while (rs.next()) {
+                        Object[] row = new Object[cols];
+
+                        for (int i = 0; i < cols; i++)
+                            row[i] = rs.getObject(i + 1);
+
+                        rows.add(Arrays.asList(row));
+                    }
+
+                    return rows;
+                }
+            }
+        });
+    }
+
+    /**
+     * Executes query on a cache or returns cached result.
+     *
+     * @param cache Cache.
+     * @param qry Query.
+     * @param tables Tables the query reads.
+     * @return Rows.
+     */
+    public List<List<?>> query(IgniteCache<?, ?> cache, SqlFieldsQuery qry, String... tables) {
+        try {
+            return get(qry.getSql(), qry.getArgs() == null ? new Object[0] : qry.getArgs(), tables,
+                () -> cache.query(qry).getAll());
+        }
+        catch (SQLException e) {
+            throw new AssertionError(e); // Cache query does not throw checked exceptions.
+        }
+    }
+
+    /**
+     * Returns cached result if it is still valid, otherwise loads and caches it.
+     *
+     * @param sql SQL query.
+     * @param args Query arguments.
+     * @param tables Tables the query reads.
+     * @param loader Loads result.
+     * @return Rows.
+     * @throws SQLException If failed to load.
+     */
+    public List<List<?>> get(String sql, Object[] args, String[] tables, Loader loader) throws SQLException {
+        Key key = new Key(normalize(sql), args);
+
+        // Versions are taken before loading, so an update racing with the load invalidates the result.
+        long[] curVers = versions(tables);
+
+        Result res;
+
+        synchronized (results) {
+            res = results.get(key);
+        }
+
+        if (res != null && res.valid(curVers, ttl)) {
+            hits.incrementAndGet();
+
+            return res.rows;
+        }
+
+        misses.incrementAndGet();
+
+        List<List<?>> rows = Collections.unmodifiableList(new ArrayList<>(loader.load()));
+
+        synchronized (results) {
+            results.put(key, new Result(rows, curVers));
+        }
+
+        return rows;
+    }
+
+    /**
+     * Invalidates all cached results read from the table.
+     *
+     * @param table Table name.
+     */
+    public void invalidate(String table) {
+        version(table).incrementAndGet();
+    }
+
+    /**
+     * Invalidates results read from the table on every update of the table cache.
+     *
+     * @param cache Table cache, e.g. {@code SQL_PUBLIC_PERSON} for table {@code Person}.
+     * @param table Table name.
+     */
+    public <K, V> void watch(IgniteCache<K, V> cache, String table) {
+        AtomicLong ver = version(table);
+
+        ContinuousQuery<K, V> qry = new ContinuousQuery<>();
+
+        qry.setLocalListener(evts -> {
+            for (CacheEntryEvent<? extends K, ? extends V> ignored : evts)
+                ver.incrementAndGet();
+        });
+
+        watches.add(cache.query(qry));
+    }
+
+    /**
+     * @return Number of results served from cache.
+     */
+    public long hits() {
+        return hits.get();
+    }
+
+    /**
+     * @return Number of loaded results.
+     */
+    public long misses() {
+        return misses.get();
+    }
+
+    /** {@inheritDoc} */
+    @Override public void close() {
+        for (QueryCursor<?> cur : watches)
+            cur.close();
+
+        watches.clear();
+
+        synchronized (results) {
+            results.clear();
+        }
+    }
+
+    /**
+     * @param table Table name.
+     * @return Update version of the table.
+     */
+    private AtomicLong version(String table) {
+        return vers.computeIfAbsent(table.toUpperCase(Locale.ROOT), t -> new AtomicLong());
+    }
+
+    /**
+     * @param tables Table names.
+     * @return Current update versions of the tables.
+     */
+    private long[] versions(String[] tables) {
+        long[] res = new long[tables.length];
+
+        for (int i = 0; i < tables.length; i++)
+            res[i] = version(tables[i]).get();
+
+        return res;
+    }
+
+    /**
+     * Collapses whitespace and converts SQL to lower case outside of quoted literals and identifiers.
+     *
+     * @param sql SQL query.
+     * @return Normalized SQL.
+     */
+    static String normalize(String sql) {
+        StringBuilder sb = new StringBuilder(sql.length());
+
+        char quote = 0;
+        boolean space = false;
+
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+
+            if (quote != 0) {
+                sb.append(c);
+
+                if (c == quote)
+                    quote = 0;
+            }
+            else if (Character.isWhitespace(c))
+                space = sb.length() > 0;
+            else {
+                if (space) {
+                    sb.append(' ');
+
+                    space = false;
+                }
+
+                if (c == '\'' || c == '"')
+                    quote = c;
+
+                sb.append(Character.toLowerCase(c));
+            }
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Loads query result.
+     */
+    public interface Loader {
+        /**
+         * @return Rows.
+         * @throws SQLException If failed.
+         */
+        public List<List<?>> load() throws SQLException;
+    }
+
+    /**
+     * Normalized SQL and arguments.
+     */
+    private static class Key {
+        /** Normalized SQL. */
+        private final String sql;
+
+        /** Arguments. */
+        private final Object[] args;
+
+        /**
+         * @param sql Normalized SQL.
+         * @param args Arguments.
+         */
+        Key(String sql, Object[] args) {
+            this.sql = sql;
+            this.args = args == null ? new Object[0] : args.clone();
+        }
+
+        /** {@inheritDoc} */
+        @Override public boolean equals(Object o) {
+            if (this == o)
+                return true;
+
+            if (!(o instanceof Key))
+                return false;
+
+            Key key = (Key)o;
+
+            return sql.equals(key.sql) && Arrays.deepEquals(args, key.args);
+        }
+
+        /** {@inheritDoc} */
+        @Override public int hashCode() {
+            return 31 * sql.hashCode() + Arrays.deepHashCode(args);
+        }
+    }
+
+    /**
+     * Cached result.
+     */
+    private static class Result {
+        /** Rows. */
+        private final List<List<?>> rows;
+
+        /** Table versions the result was read at. */
+        private final long[] vers;
+
+        /** Load time. */
+        private final long time = System.currentTimeMillis();
+
+        /**
+         * @param rows Rows.
+         * @param vers Table versions the result was read at.
+         */
+        Result(List<List<?>> rows, long[] vers) {
+            this.rows = rows;
+            this.vers = vers;
+        }
+
+        /**
+         * @param curVers Current table versions.
+         * @param ttl Time to live.
+         * @return {@code True} if result can be served.
+         */
+        boolean valid(long[] curVers, long ttl) {
+            return Arrays.equals(vers, curVers) && System.currentTimeMillis() - time < ttl;
+        }
+    }
+}
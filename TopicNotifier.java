@@ -0,0 +1,356 @@
+package cluster;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteMessaging;
+import org.apache.ignite.cluster.ClusterGroup;
+import org.apache.ignite.lang.IgniteBiPredicate;
+
+/**
+ * Fan-out notifications over {@link IgniteMessaging} topic, an alternative to broadcasting a closure.
+ * <p>
+ * Broadcast serializes, deploys and executes a job on every node for every notification. Here receivers
+ * register a listener on the topic once, and every notification is a plain message. Small messages are
+ * additionally batched on the sender side: they are collected into a list which is sent when it reaches
+ * the batch size or when the linger time elapses, whichever comes first. Listeners registered through this
+ * class unpack batches, so they see single messages.
+ * <p>
+ * Ordered mode uses {@link IgniteMessaging#sendOrdered(Object, Object, long)}, so receivers process messages
+ * of this sender in send order. Unordered mode has lower latency, but only messages of the same batch keep
+ * send order: batches may arrive out of order and be processed concurrently.
+ */
+public class TopicNotifier<T> implements AutoCloseable {
+    /** Default number of messages in a batch. */
+    public static final int DFLT_BATCH_SIZE = 64;
+
+    /** Default time a message may wait for its batch to fill, in milliseconds. */
+    public static final long DFLT_LINGER = 5;
+
+    /** Ignite instance. */
+    private final Ignite ignite;
+
+    /** Receivers. */
+    private final ClusterGroup grp;
+
+    /** Topic. */
+    private final String topic;
+
+    /** Whether messages are ordered. */
+    private boolean ordered;
+
+    /** Number of messages in a batch, {@code 1} disables batching. */
+    private int batchSize = DFLT_BATCH_SIZE;
+
+    /** Time a message may wait for its batch to fill, in milliseconds. */
+    private long linger = DFLT_LINGER;
+
+    /** Ordered message timeout in milliseconds, {@code 0} for the configured network timeout. */
+    private long orderedTimeout;
+
+    /** Pending batch, guarded by {@code this}. */
+    private List<T> batch = new ArrayList<>();
+
+    /** Flushes batches which did not fill in time. */
+    private ScheduledExecutorService timer;
+
+    /** Scheduled flush of the pending batch, guarded by {@code this}. */
+    private ScheduledFuture<?> lingerFlush;
+
+    /** Remote listener IDs. */
+    private final Collection<UUID> remoteLsnrs = new CopyOnWriteArrayList<>();
+
+    /** Local listeners. */
+    private final Collection<IgniteBiPredicate<UUID, ?>> localLsnrs = new CopyOnWriteArrayList<>();
+
+    /** Number of sent messages. */
+    private final LongAdder sent = new LongAdder();
+
+    /** Number of sent batches. */
+    private final LongAdder batches = new LongAdder();
+
+    /**
+     * @param ignite Ignite instance.
+     * @param grp Receivers.
+     * @param topic Topic.
+     */
+    public TopicNotifier(Ignite ignite, ClusterGroup grp, String topic) {
+        this.ignite = ignite;
+        this.grp = grp;
+        this.topic = topic;
+    }
+
+    /**
+     * @param ordered Whether messages are delivered in send order.
+     * @return {@code this} for chaining.
+     */
+    public TopicNotifier<T> setOrdered(boolean ordered) {
+        this.ordered = ordered;
+
+        return this;
+    }
+
+    /**
+     * @param orderedTimeout Ordered message timeout in milliseconds, {@code 0} for the configured network timeout.
+     * @return {@code this} for chaining.
+     */
+    public TopicNotifier<T> setOrderedTimeout(long orderedTimeout) {
+        this.orderedTimeout = orderedTimeout;
+
+        return this;
+    }
+
+    /**
+     * @param batchSize Number of messages in a batch, {@code 1} disables batching.
+     * @return {@code this} for chaining.
+     */
+    public TopicNotifier<T> setBatchSize(int batchSize) {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+
+        this.batchSize = batchSize;
+
+        return this;
+    }
+
+    /**
+     * @param linger Time a message may wait for its batch to fill, in milliseconds.
+     * @return {@code this} for chaining.
+     */
+    public TopicNotifier<T> setLinger(long linger) {
+        this.linger = linger;
+
+        return this;
+    }
+
+    /**
+     * Registers listener on every node of the group, including nodes joining later.
+     *
+     * @param lsnr Listener receiving sender node ID and message, returns {@code false} to stop listening.
+     * @return Listener ID.
+     */
+    public UUID listen(IgniteBiPredicate<UUID, T> lsnr) {
+        UUID id = ignite.message(grp).remoteListen(topic, new BatchListener<>(lsnr));
+
+        remoteLsnrs.add(id);
+
+        return id;
+    }
+
+    /**
+     * Registers listener on the local node only.
+     *
+     * @param lsnr Listener receiving sender node ID and message, returns {@code false} to stop listening.
+     */
+    public void localListen(IgniteBiPredicate<UUID, T> lsnr) {
+        BatchListener<T> batchLsnr = new BatchListener<>(lsnr);
+
+        ignite.message().localListen(topic, batchLsnr);
+
+        localLsnrs.add(batchLsnr);
+    }
+
+    /**
+     * Sends message, it is delivered once its batch is full or linger time elapses.
+     *
+     * @param msg Message, must not be a {@link List} since lists are batches.
+     */
+    public void send(T msg) {
+        List<T> full = null;
+
+        synchronized (this) {
+            batch.add(msg);
+
+            if (batch.size() >= batchSize || linger <= 0)
+                full = takeBatch();
+            else if (lingerFlush == null)
+                lingerFlush = timer().schedule(this::flush, linger, TimeUnit.MILLISECONDS);
+
+            // Ordered messages must leave in order, so they are sent under the lock.
+            if (full != null && ordered) {
+                doSend(full);
+
+                return;
+            }
+        }
+
+        if (full != null)
+            doSend(full);
+    }
+
+    /**
+     * Sends message immediately to a subgroup of receivers, pending batch is flushed first to keep send order.
+     *
+     * @param grp Receivers, a subgroup of the notifier group where listeners are registered.
+     * @param msg Message, must not be a {@link List} since lists are batches.
+     */
+    public void send(ClusterGroup grp, T msg) {
+        flush();
+
+        doSend(grp, msg, 1);
+    }
+
+    /**
+     * Sends pending batch immediately.
+     */
+    public void flush() {
+        List<T> full;
+
+        synchronized (this) {
+            if (batch.isEmpty())
+                return;
+
+            full = takeBatch();
+
+            if (ordered) {
+                doSend(full);
+
+                return;
+            }
+        }
+
+        doSend(full);
+    }
+
+    /**
+     * @return Number of sent messages.
+     */
+    public long sent() {
+        return sent.sum();
+    }
+
+    /**
+     * @return Number of sent batches, each one is a single network message per receiver.
+     */
+    public long batches() {
+        return batches.sum();
+    }
+
+    /** {@inheritDoc} */
+    @Override public void close() {
+        flush();
+
+        synchronized (this) {
+            if (timer != null) {
+                timer.shutdown();
+
+                timer = null;
+            }
+        }
+
+        for (UUID id : remoteLsnrs)
+            ignite.message(grp).stopRemoteListen(id);
+
+        remoteLsnrs.clear();
+
+        for (IgniteBiPredicate<UUID, ?> lsnr : localLsnrs)
+            ignite.message().stopLocalListen(topic, lsnr);
+
+        localLsnrs.clear();
+    }
+
+    /**
+     * @return Pending batch, which is replaced by a new one.
+     */
+    private List<T> takeBatch() {
+        assert Thread.holdsLock(this);
+
+        List<T> full = batch;
+
+        batch = new ArrayList<>(batchSize);
+
+        if (lingerFlush != null) {
+            lingerFlush.cancel(false);
+
+            lingerFlush = null;
+        }
+
+        return full;
+    }
+
+    /**
+     * @param msgs Messages.
+     */
+    private void doSend(List<T> msgs) {
+        // Single message is sent as is, so receivers do not pay for the list.
+        doSend(grp, msgs.size() == 1 ? msgs.get(0) : msgs, msgs.size());
+    }
+
+    /**
+     * @param grp Receivers.
+     * @param payload Message or batch.
+     * @param cnt Number of messages.
+     */
+    private void doSend(ClusterGroup grp, Object payload, int cnt) {
+        IgniteMessaging msging = ignite.message(grp);
+
+        if (ordered)
+            msging.sendOrdered(topic, payload, orderedTimeout);
+        else
+            msging.send(topic, payload);
+
+        sent.add(cnt);
+        batches.increment();
+    }
+
+    /**
+     * @return Linger timer.
+     */
+    private ScheduledExecutorService timer() {
+        assert Thread.holdsLock(this);
+
+        if (timer == null) {
+            timer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "topic-notifier-" + topic);
+
+                t.setDaemon(true);
+
+                return t;
+            });
+        }
+
+        return timer;
+    }
+
+    /**
+     * Unpacks batches for the user listener.
+     */
+    private static class BatchListener<T> implements IgniteBiPredicate<UUID, Object> {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** User listener. */
+        private final IgniteBiPredicate<UUID, T> lsnr;
+
+        /**
+         * @param lsnr User listener.
+         */
+        BatchListener(IgniteBiPredicate<UUID, T> lsnr) {
+            this.lsnr = lsnr;
+        }
+
+        /** {@inheritDoc} */
+        @SuppressWarnings("unchecked")
+        @Override public boolean apply(UUID nodeId, Object msg) {
+            if (msg instanceof List) {
+                for (Object m : (List<?>)msg) {
+                    if (!lsnr.apply(nodeId, (T)m))
+                        return false;
+                }
+
+                return true;
+            }
+
+            return lsnr.apply(nodeId, (T)msg);
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package cluster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.cluster.ClusterNode;
+import org.apache.ignite.events.CacheEvent;
+import org.apache.ignite.events.Event;
+import org.apache.ignite.events.EventType;
+import org.apache.ignite.lang.IgnitePredicate;
+
+/**
+ * Keeps immutable, versioned snapshots of commonly used cluster groups: server, client, data nodes of
+ * the configured caches and nodes with the configured attribute values.
+ * <p>
+ * Snapshot is rebuilt on {@link EventType#EVT_NODE_JOINED}, {@link EventType#EVT_NODE_LEFT} and
+ * {@link EventType#EVT_NODE_FAILED} events, so routing decisions on the hot path read a volatile reference
+ * instead of filtering the topology on every call. If these events are not enabled in the node configuration,
+ * the snapshot is rebuilt lazily by the first reader which sees a new topology version.
+ * <p>
+ * Starting or stopping a cache does not change the topology version, so data nodes groups are also rebuilt on
+ * {@link EventType#EVT_CACHE_STARTED} and {@link EventType#EVT_CACHE_STOPPED}. {@link #start()} enables these
+ * events on the local node if they are disabled, and {@link #close()} disables them again.
+ */
+public class TopologySnapshotService implements AutoCloseable {
+    /** Ignite instance. */
+    private final Ignite ignite;
+
+    /** Caches to keep data nodes of. */
+    private final Set<String> cacheNames = new LinkedHashSet<>();
+
+    /** Attribute groups to keep, attribute name to value. */
+    private final Map<String, Object> attrs = new HashMap<>();
+
+    /** Discovery and cache event listener. */
+    private final IgnitePredicate<Event> lsnr = evt -> {
+        refresh(evt instanceof CacheEvent && cacheNames.contains(((CacheEvent)evt).cacheName()));
+
+        return true;
+    };
+
+    /** Cache events which were enabled by the service. */
+    private int[] enabledEvts;
+
+    /** Current snapshot. */
+    private volatile Snapshot snap;
+
+    /**
+     * @param ignite Ignite instance.
+     */
+    public TopologySnapshotService(Ignite ignite) {
+        this.ignite = ignite;
+    }
+
+    /**
+     * @param cacheName Cache to keep data nodes of.
+     * @return {@code this} for chaining.
+     */
+    public TopologySnapshotService addDataNodesGroup(String cacheName) {
+        cacheNames.add(cacheName);
+
+        return this;
+    }
+
+    /**
+     * @param name Attribute name.
+     * @param val Attribute value.
+     * @return {@code this} for chaining.
+     */
+    public TopologySnapshotService addAttributeGroup(String name, Object val) {
+        attrs.put(name, val);
+
+        return this;
+    }
+
+    /**
+     * Builds initial snapshot and subscribes to discovery and cache events.
+     *
+     * @return {@code this} for chaining.
+     */
+    public TopologySnapshotService start() {
+        enabledEvts = Arrays.stream(new int[] {EventType.EVT_CACHE_STARTED, EventType.EVT_CACHE_STOPPED})
+            .filter(type -> !ignite.events().isEnabled(type))
+            .toArray();
+
+        if (enabledEvts.length > 0)
+            ignite.events().enableLocal(enabledEvts);
+
+        ignite.events().localListen(lsnr, EventType.EVT_NODE_JOINED, EventType.EVT_NODE_LEFT,
+            EventType.EVT_NODE_FAILED, EventType.EVT_CACHE_STARTED, EventType.EVT_CACHE_STOPPED);
+
+        refresh(false);
+
+        return this;
+    }
+
+    /**
+     * @return Current snapshot.
+     */
+    public Snapshot snapshot() {
+        Snapshot s = snap;
+
+        if (s == null || s.ver != ignite.cluster().topologyVersion())
+            s = refresh(false);
+
+        return s;
+    }
+
+    /** {@inheritDoc} */
+    @Override public void close() {
+        ignite.events().stopLocalListen(lsnr);
+
+        if (enabledEvts != null && enabledEvts.length > 0)
+            ignite.events().disableLocal(enabledEvts);
+    }
+
+    /**
+     * Rebuilds snapshot if topology version has changed.
+     *
+     * @param force Whether to rebuild snapshot of the same topology version, when a cache is started or stopped.
+     * @return Current snapshot.
+     */
+    private synchronized Snapshot refresh(boolean force) {
+        long ver = ignite.cluster().topologyVersion();
+
+        Snapshot s = snap;
+
+        if (!force && s != null && s.ver == ver)
+            return s;
+
+        Collection<ClusterNode> all = ignite.cluster().topology(ver);
+
+        List<ClusterNode> srvs = new ArrayList<>();
+        List<ClusterNode> clients = new ArrayList<>();
+
+        for (ClusterNode node : all)
+            (node.isClient() ? clients : srvs).add(node);
+
+        Map<String, List<ClusterNode>> dataNodes = new HashMap<>();
+
+        for (String cacheName : cacheNames)
+            dataNodes.put(cacheName, unmodifiable(ignite.cluster().forDataNodes(cacheName).nodes()));
+
+        Map<String, List<ClusterNode>> attrNodes = new HashMap<>();
+
+        for (Map.Entry<String, Object> attr : attrs.entrySet()) {
+            List<ClusterNode> nodes = new ArrayList<>();
+
+            for (ClusterNode node : all) {
+                if (Objects.equals(node.attribute(attr.getKey()), attr.getValue()))
+                    nodes.add(node);
+            }
+
+            attrNodes.put(attrKey(attr.getKey(), attr.getValue()), Collections.unmodifiableList(nodes));
+        }
+
+        s = new Snapshot(ver, unmodifiable(all), Collections.unmodifiableList(srvs),
+            Collections.unmodifiableList(clients), dataNodes, attrNodes);
+
+        snap = s;
+
+        return s;
+    }
+
+    /**
+     * @param nodes Nodes.
+     * @return Unmodifiable copy.
+     */
+    private static List<ClusterNode> unmodifiable(Collection<ClusterNode> nodes) {
+        return Collections.unmodifiableList(new ArrayList<>(nodes));
+    }
+
+    /**
+     * @param name Attribute name.
+     * @param val Attribute value.
+     * @return Attribute group key.
+     */
+    private static String attrKey(String name, Object val) {
+        return name + '=' + val;
+    }
+
+    /**
+     * Immutable topology snapshot.
+     */
+    public static class Snapshot {
+        /** Topology version. */
+        private final long ver;
+
+        /** All nodes. */
+        private final List<ClusterNode> all;
+
+        /** Server nodes. */
+        private final List<ClusterNode> srvs;
+
+        /** Client nodes. */
+        private final List<ClusterNode> clients;
+
+        /** Data nodes by cache name. */
+        private final Map<String, List<ClusterNode>> dataNodes;
+
+        /** Nodes by attribute group key. */
+        private final Map<String, List<ClusterNode>> attrNodes;
+
+        /**
+         * @param ver Topology version.
+         * @param all All nodes.
+         * @param srvs Server nodes.
+         * @param clients Client nodes.
+         * @param dataNodes Data nodes by cache name.
+         * @param attrNodes Nodes by attribute group key.
+         */
+        Snapshot(long ver, List<ClusterNode> all, List<ClusterNode> srvs, List<ClusterNode> clients,
+            Map<String, List<ClusterNode>> dataNodes, Map<String, List<ClusterNode>> attrNodes) {
+            this.ver = ver;
+            this.all = all;
+            this.srvs = srvs;
+            this.clients = clients;
+            this.dataNodes = dataNodes;
+            this.attrNodes = attrNodes;
+        }
+
+        /**
+         * @return Topology version.
+         */
+        public long version() {
+            return ver;
+        }
+
+        /**
+         * @return All nodes.
+         */
+        public List<ClusterNode> nodes() {
+            return all;
+        }
+
+        /**
+         * @return Server nodes.
+         */
+        public List<ClusterNode> servers() {
+            return srvs;
+        }
+
+        /**
+         * @return Client nodes.
+         */
+        public List<ClusterNode> clients() {
+            return clients;
+        }
+
+        /**
+         * @param cacheName Cache name registered with {@link #addDataNodesGroup(String)}.
+         * @return Data nodes of the cache.
+         */
+        public List<ClusterNode> dataNodes(String cacheName) {
+            List<ClusterNode> nodes = dataNodes.get(cacheName);
+
+            if (nodes == null)
+                throw new IllegalArgumentException("Data nodes group is not registered: " + cacheName);
+
+            return nodes;
+        }
+
+        /**
+         * @param name Attribute name registered with {@link #addAttributeGroup(String, Object)}.
+         * @param val Attribute value.
+         * @return Nodes with the attribute value.
+         */
+        public List<ClusterNode> attributeGroup(String name, Object val) {
+            List<ClusterNode> nodes = attrNodes.get(attrKey(name, val));
+
+            if (nodes == null)
+                throw new IllegalArgumentException("Attribute group is not registered: " + attrKey(name, val));
+
+            return nodes;
+        }
+    }
+}
@@ -0,0 +1,575 @@
+package com.bizruntime.Ignite.Ignite;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import javax.cache.Cache;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.IgniteException;
+import org.apache.ignite.cache.CacheInterceptor;
+import org.apache.ignite.cache.CacheInterceptorAdapter;
+import org.apache.ignite.cache.CacheMode;
+import org.apache.ignite.configuration.CacheConfiguration;
+import org.apache.ignite.lang.IgniteBiTuple;
+
+/**
+ * Opt-in compression of {@link String} cache values.
+ * <p>
+ * Values shorter than the threshold (in UTF-8 bytes), or values which do not get smaller, are stored as is.
+ * Larger values are deflated and stored as {@code byte[]} with a small header, and {@code byte[]} values in
+ * such a cache are always treated as compressed.
+ * <p>
+ * Compression is transparent when {@link #interceptor()} is set on the cache configuration: values are
+ * compressed on the primary node before they are stored and sent to backups, and decompressed on get, so the
+ * cache is used with plain {@link String} values. Values still travel uncompressed between the client and the
+ * primary node, and queries and continuous queries over the cache see the stored {@code byte[]}. Without the
+ * interceptor, writers store the result of {@link #compress(String)} in a cache typed on {@code Object}
+ * values, and readers pass whatever they got from the cache to {@link #decompress(Object)}.
+ * <p>
+ * Short values of the same kind (session data, resumes, JSON documents) share most of their vocabulary but
+ * are too short for a compressor to learn it from the value itself. A preset dictionary trained on sample
+ * values with {@link #trainDictionary(Iterable, int)} gives the compressor that vocabulary up front. The
+ * dictionary ID is stored with every value; {@link #attach(Ignite)} publishes the dictionary to a replicated
+ * cache, so that nodes and clients reading values written with another dictionary can fetch it.
+ * <p>
+ * Deflate is used since it is the only dictionary-capable codec in the JDK. Deflaters and inflaters hold
+ * native memory, so they are pooled and reused across calls, and {@link #close()} releases the pooled ones.
+ */
+public class ValueCompressor implements AutoCloseable {
+    /** Cache holding dictionaries by ID. */
+    public static final String DICT_CACHE_NAME = "ValueCompressorDictionaries";
+
+    /** Default dictionary size, deflate window is 32 KB. */
+    public static final int DFLT_DICT_SIZE = 16 * 1024;
+
+    /** Value compressed without dictionary. */
+    private static final byte DEFLATE = 1;
+
+    /** Value compressed with dictionary. */
+    private static final byte DEFLATE_DICT = 2;
+
+    /** Header size: codec and uncompressed length. */
+    private static final int HDR = 5;
+
+    /** Header size with dictionary ID. */
+    private static final int DICT_HDR = HDR + 4;
+
+    /** Length of substrings counted when training a dictionary. */
+    private static final int GRAM = 8;
+
+    /** Minimum value size in bytes to compress. */
+    private final int threshold;
+
+    /** Compression level. */
+    private final int level;
+
+    /** Dictionary, {@code null} if not used. */
+    private final byte[] dict;
+
+    /** Dictionary ID. */
+    private final int dictId;
+
+    /** Known dictionaries by ID. */
+    private final ConcurrentMap<Integer, byte[]> dicts = new ConcurrentHashMap<>();
+
+    /** Dictionary cache, {@code null} if not attached. */
+    private volatile IgniteCache<Integer, byte[]> dictCache;
+
+    /** Idle deflaters. */
+    private final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+
+    /** Idle inflaters. */
+    private final Queue<Inflater> inflaters = new ConcurrentLinkedQueue<>();
+
+    /** Whether compressor is closed, deflaters and inflaters are not pooled anymore. */
+    private volatile boolean closed;
+
+    /** Number of values passed to compression. */
+    private final LongAdder vals = new LongAdder();
+
+    /** Number of compressed values. */
+    private final LongAdder compressed = new LongAdder();
+
+    /** Size of values in bytes. */
+    private final LongAdder rawBytes = new LongAdder();
+
+    /** Size of stored values in bytes. */
+    private final LongAdder storedBytes = new LongAdder();
+
+    /** Time spent in compression in nanoseconds. */
+    private final LongAdder compressTime = new LongAdder();
+
+    /** Number of decompressed values. */
+    private final LongAdder decompressed = new LongAdder();
+
+    /** Time spent in decompression in nanoseconds. */
+    private final LongAdder decompressTime = new LongAdder();
+
+    /**
+     * Creates compressor without dictionary.
+     *
+     * @param threshold Minimum value size in UTF-8 bytes to compress.
+     * @param level Compression level, {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}.
+     */
+    public ValueCompressor(int threshold, int level) {
+        this(threshold, level, null);
+    }
+
+    /**
+     * @param threshold Minimum value size in UTF-8 bytes to compress.
+     * @param level Compression level, {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}.
+     * @param dict Dictionary, {@code null} to compress without dictionary.
+     */
+    public ValueCompressor(int threshold, int level, byte[] dict) {
+        this.threshold = threshold;
+        this.level = level;
+        this.dict = dict;
+
+        if (dict != null) {
+            CRC32 crc = new CRC32();
+
+            crc.update(dict, 0, dict.length);
+
+            dictId = (int)crc.getValue();
+
+            dicts.put(dictId, dict);
+        }
+        else
+            dictId = 0;
+    }
+
+    /**
+     * Trains dictionary on sample values: substrings occurring in many samples are collected, the most
+     * frequent ones last, since deflate encodes references to the end of the dictionary more cheaply.
+     *
+     * @param samples Sample values.
+     * @param size Maximum dictionary size in bytes.
+     * @return Dictionary.
+     */
+    public static byte[] trainDictionary(Iterable<String> samples, int size) {
+        Map<String, int[]> cnts = new HashMap<>();
+
+        for (String s : samples) {
+            for (int i = 0; i + GRAM <= s.length(); i++)
+                cnts.computeIfAbsent(s.substring(i, i + GRAM), g -> new int[1])[0]++;
+        }
+
+        List<Map.Entry<String, int[]>> grams = new ArrayList<>(cnts.entrySet());
+
+        grams.removeIf(e -> e.getValue()[0] < 2);
+        grams.sort((a, b) -> Integer.compare(b.getValue()[0], a.getValue()[0]));
+
+        // Adjacent frequent grams usually overlap (they come from the same phrase), so a gram is skipped
+        // if it is already contained in the dictionary.
+        List<String> picked = new ArrayList<>();
+        StringBuilder all = new StringBuilder();
+        int len = 0;
+
+        for (Map.Entry<String, int[]> e : grams) {
+            String g = e.getKey();
+
+            if (all.indexOf(g) >= 0)
+                continue;
+
+            int gLen = g.getBytes(StandardCharsets.UTF_8).length;
+
+            if (len + gLen > size)
+                break;
+
+            picked.add(g);
+            all.append(g);
+            len += gLen;
+        }
+
+        StringBuilder dict = new StringBuilder(len);
+
+        for (int i = picked.size() - 1; i >= 0; i--)
+            dict.append(picked.get(i));
+
+        return dict.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Publishes dictionary of this compressor to the dictionary cache and resolves unknown dictionaries from it.
+     *
+     * @param ignite Ignite instance.
+     * @return {@code this} for chaining.
+     */
+    public ValueCompressor attach(Ignite ignite) {
+        IgniteCache<Integer, byte[]> cache = ignite.getOrCreateCache(
+            new CacheConfiguration<Integer, byte[]>(DICT_CACHE_NAME).setCacheMode(CacheMode.REPLICATED));
+
+        if (dict != null)
+            cache.putIfAbsent(dictId, dict);
+
+        dictCache = cache;
+
+        return this;
+    }
+
+    /**
+     * @param val Value.
+     * @return Value to store: the value itself or compressed bytes.
+     */
+    public Object compress(String val) {
+        if (val == null)
+            return null;
+
+        byte[] raw = val.getBytes(StandardCharsets.UTF_8);
+
+        vals.increment();
+        rawBytes.add(raw.length);
+
+        int hdr = dict == null ? HDR : DICT_HDR;
+
+        if (raw.length < threshold || raw.length <= hdr) {
+            storedBytes.add(raw.length);
+
+            return val;
+        }
+
+        long start = System.nanoTime();
+
+        // Output is limited by the raw size, a value which does not get smaller with the header is stored as is.
+        byte[] out = new byte[raw.length];
+        int off = hdr;
+        boolean finished;
+
+        Deflater d = deflaters.poll();
+
+        if (d == null)
+            d = new Deflater(level);
+
+        try {
+            if (dict != null)
+                d.setDictionary(dict);
+
+            d.setInput(raw);
+            d.finish();
+
+            while (!d.finished() && off < out.length)
+                off += d.deflate(out, off, out.length - off);
+
+            finished = d.finished();
+        }
+        finally {
+            d.reset();
+
+            release(deflaters, d, Deflater::end);
+        }
+
+        compressTime.add(System.nanoTime() - start);
+
+        if (!finished || off >= raw.length) {
+            storedBytes.add(raw.length);
+
+            return val;
+        }
+
+        out[0] = dict == null ? DEFLATE : DEFLATE_DICT;
+
+        writeInt(out, 1, raw.length);
+
+        if (dict != null)
+            writeInt(out, HDR, dictId);
+
+        compressed.increment();
+        storedBytes.add(off);
+
+        return Arrays.copyOf(out, off);
+    }
+
+    /**
+     * @param stored Value read from the cache.
+     * @return Value.
+     */
+    public String decompress(Object stored) {
+        if (!(stored instanceof byte[]))
+            return (String)stored;
+
+        long start = System.nanoTime();
+
+        byte[] in = (byte[])stored;
+
+        byte codec = in[0];
+        int len = readInt(in, 1);
+
+        byte[] d = null;
+        int hdr = HDR;
+
+        if (codec == DEFLATE_DICT) {
+            d = dictionary(readInt(in, HDR));
+            hdr = DICT_HDR;
+        }
+        else if (codec != DEFLATE)
+            throw new IgniteException("Unknown compression codec: " + codec);
+
+        Inflater inf = inflaters.poll();
+
+        if (inf == null)
+            inf = new Inflater();
+
+        byte[] out = new byte[len];
+        int off = 0;
+
+        try {
+            inf.setInput(in, hdr, in.length - hdr);
+
+            while (off < len) {
+                int n = inf.inflate(out, off, len - off);
+
+                if (n == 0) {
+                    if (inf.needsDictionary()) {
+                        if (d == null)
+                            throw new IgniteException("Compressed value requires unknown dictionary.");
+
+                        inf.setDictionary(d);
+                    }
+                    else if (inf.finished() || inf.needsInput())
+                        throw new IgniteException("Compressed value is truncated.");
+                }
+
+                off += n;
+            }
+        }
+        catch (DataFormatException e) {
+            throw new IgniteException("Compressed value is corrupted.", e);
+        }
+        finally {
+            inf.reset();
+
+            release(inflaters, inf, Inflater::end);
+        }
+
+        decompressed.increment();
+        decompressTime.add(System.nanoTime() - start);
+
+        return new String(out, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Creates interceptor which compresses values with the settings of this compressor, to be set with
+     * {@link CacheConfiguration#setInterceptor(CacheInterceptor)}. The interceptor is serialized with the cache
+     * configuration and creates its own compressor on every node, so the dictionary does not need to be
+     * published with {@link #attach(Ignite)}.
+     *
+     * @return Cache interceptor.
+     */
+    @SuppressWarnings("unchecked")
+    public <K, V> CacheInterceptor<K, V> interceptor() {
+        return (CacheInterceptor<K, V>)(CacheInterceptor<?, ?>)new Interceptor(threshold, level, dict);
+    }
+
+    /**
+     * @return Dictionary ID, {@code 0} if compressor does not use dictionary.
+     */
+    public int dictionaryId() {
+        return dictId;
+    }
+
+    /**
+     * @return Compression level.
+     */
+    public int level() {
+        return level;
+    }
+
+    /**
+     * @return Stored to raw size ratio of values passed to compression.
+     */
+    public double ratio() {
+        long raw = rawBytes.sum();
+
+        return raw == 0 ? 1 : (double)storedBytes.sum() / raw;
+    }
+
+    /**
+     * @return Size of stored values in bytes.
+     */
+    public long storedBytes() {
+        return storedBytes.sum();
+    }
+
+    /**
+     * @return Size of values passed to compression in bytes.
+     */
+    public long rawBytes() {
+        return rawBytes.sum();
+    }
+
+    /**
+     * @return Average compression time per value in nanoseconds, including values stored as is.
+     */
+    public double avgCompressTime() {
+        long n = vals.sum();
+
+        return n == 0 ? 0 : (double)compressTime.sum() / n;
+    }
+
+    /**
+     * @return Average decompression time per compressed value in nanoseconds.
+     */
+    public double avgDecompressTime() {
+        long n = decompressed.sum();
+
+        return n == 0 ? 0 : (double)decompressTime.sum() / n;
+    }
+
+    /**
+     * @return Compression statistics.
+     */
+    public String report() {
+        return String.format("Compression [values=%d, compressed=%d, raw=%dKB, stored=%dKB, ratio=%.2f, " +
+            "compress=%.1fus, decompress=%.1fus]", vals.sum(), compressed.sum(), rawBytes.sum() / 1024,
+            storedBytes.sum() / 1024, ratio(), avgCompressTime() / 1e3, avgDecompressTime() / 1e3);
+    }
+
+    /**
+     * Releases native memory of pooled deflaters and inflaters. Compressor stays usable, but instances taken
+     * after closing are released after every call.
+     */
+    @Override public void close() {
+        closed = true;
+
+        for (Deflater d; (d = deflaters.poll()) != null; )
+            d.end();
+
+        for (Inflater inf; (inf = inflaters.poll()) != null; )
+            inf.end();
+    }
+
+    /**
+     * Returns deflater or inflater to the pool, or releases it if compressor is closed.
+     *
+     * @param pool Pool.
+     * @param obj Deflater or inflater.
+     * @param end Releases native memory of the object.
+     */
+    private <T> void release(Queue<T> pool, T obj, Consumer<T> end) {
+        pool.offer(obj);
+
+        // Pool may have been drained by a concurrent close(), only one of them ends the object.
+        if (closed && pool.remove(obj))
+            end.accept(obj);
+    }
+
+    /**
+     * @param id Dictionary ID.
+     * @return Dictionary.
+     */
+    private byte[] dictionary(int id) {
+        byte[] d = dicts.get(id);
+
+        if (d != null)
+            return d;
+
+        IgniteCache<Integer, byte[]> cache = dictCache;
+
+        if (cache != null && (d = cache.get(id)) != null) {
+            dicts.put(id, d);
+
+            return d;
+        }
+
+        throw new IgniteException("Unknown compression dictionary: " + id);
+    }
+
+    /**
+     * @param arr Array.
+     * @param off Offset.
+     * @param val Value.
+     */
+    private static void writeInt(byte[] arr, int off, int val) {
+        arr[off] = (byte)(val >>> 24);
+        arr[off + 1] = (byte)(val >>> 16);
+        arr[off + 2] = (byte)(val >>> 8);
+        arr[off + 3] = (byte)val;
+    }
+
+    /**
+     * @param arr Array.
+     * @param off Offset.
+     * @return Value.
+     */
+    private static int readInt(byte[] arr, int off) {
+        return (arr[off] & 0xFF) << 24 | (arr[off + 1] & 0xFF) << 16 | (arr[off + 2] & 0xFF) << 8 |
+            arr[off + 3] & 0xFF;
+    }
+
+    /**
+     * Cache interceptor compressing values before they are stored and decompressing them on read.
+     */
+    public static class Interceptor extends CacheInterceptorAdapter<Object, Object> {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** Minimum value size in bytes to compress. */
+        private final int threshold;
+
+        /** Compression level. */
+        private final int level;
+
+        /** Dictionary, {@code null} if not used. */
+        private final byte[] dict;
+
+        /** Compressor of the local node, created on first use. */
+        private transient volatile ValueCompressor compressor;
+
+        /**
+         * @param threshold Minimum value size in UTF-8 bytes to compress.
+         * @param level Compression level.
+         * @param dict Dictionary, {@code null} to compress without dictionary.
+         */
+        Interceptor(int threshold, int level, byte[] dict) {
+            this.threshold = threshold;
+            this.level = level;
+            this.dict = dict;
+        }
+
+        /**
+         * @return Compressor of the local node, its statistics cover values stored and read on this node.
+         */
+        public ValueCompressor compressor() {
+            ValueCompressor c = compressor;
+
+            if (c == null) {
+                synchronized (this) {
+                    if ((c = compressor) == null)
+                        compressor = c = new ValueCompressor(threshold, level, dict);
+                }
+            }
+
+            return c;
+        }
+
+        /** {@inheritDoc} */
+        @Override public Object onGet(Object key, Object val) {
+            return val instanceof byte[] ? compressor().decompress(val) : val;
+        }
+
+        /** {@inheritDoc} */
+        @Override public Object onBeforePut(Cache.Entry<Object, Object> entry, Object newVal) {
+            return newVal instanceof String ? compressor().compress((String)newVal) : newVal;
+        }
+
+        /** {@inheritDoc} */
+        @Override public IgniteBiTuple<Boolean, Object> onBeforeRemove(Cache.Entry<Object, Object> entry) {
+            return new IgniteBiTuple<>(false, onGet(entry.getKey(), entry.getValue()));
+        }
+    }
+}
@@ -0,0 +1,641 @@
+package cluster;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteException;
+import org.apache.ignite.IgniteInterruptedException;
+import org.apache.ignite.cluster.ClusterGroup;
+import org.apache.ignite.configuration.ExecutorConfiguration;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.apache.ignite.lang.IgniteCallable;
+import org.apache.ignite.lang.IgniteRunnable;
+import org.apache.ignite.resources.IgniteInstanceResource;
+
+/**
+ * Routes compute jobs of each workload class to its own named executor, so that long jobs of one workload
+ * do not occupy the public pool shared with everything else.
+ * <p>
+ * Pools are declared with {@link #pool(String, int, int)} and must be added to the configuration of server
+ * nodes with {@link #configure(IgniteConfiguration)} ({@link ExecutorConfiguration}); a node without the pool
+ * runs the job in its public pool. Workloads are mapped to pools with {@link #route(String, String)}.
+ * <p>
+ * Ignite executors have unbounded queues, so the queue limit of a pool applies per submitter only: at most
+ * {@code queueLimit} jobs of the pool are in flight from this JVM, further threads of this JVM block. Jobs of
+ * other submitters are not counted, and a single thread making synchronous calls never holds more than one
+ * slot, so the limit engages only with concurrent submitting threads.
+ * <p>
+ * On the submitting side every pool tracks jobs in flight from this JVM and their maximum, time submitters were
+ * blocked by the limit, and wait time of jobs, which is the time from submission until the job started on the
+ * executing node, i.e. queueing in the pool plus network. {@link #metrics(ClusterGroup)} adds the real queue
+ * size and number of active threads of the pool on the executing nodes.
+ */
+public class WorkloadExecutors {
+    /** Pools by name. */
+    private final Map<String, Pool> pools = new ConcurrentHashMap<>();
+
+    /** Pool names by workload. */
+    private final Map<String, String> routes = new ConcurrentHashMap<>();
+
+    /** Pools of the example workloads, the same instance configures nodes and routes jobs. */
+    public static final WorkloadExecutors EXAMPLES = new WorkloadExecutors()
+        .pool("clusterBroadcast", size("clusterBroadcast", 2), queueLimit("clusterBroadcast", 16))
+        .route("clusterBroadcast", "clusterBroadcast")
+        .pool("sayHello", size("sayHello", 1), queueLimit("sayHello", 8))
+        .route("sayHello", "sayHello")
+        .pool("helloWorld", size("helloWorld", 1), queueLimit("helloWorld", 8))
+        .route("helloWorld", "helloWorld");
+
+    /**
+     * @param pool Pool name.
+     * @param dflt Default.
+     * @return Pool size set with {@code -Dpool.<name>.size}.
+     */
+    private static int size(String pool, int dflt) {
+        return Integer.getInteger("pool." + pool + ".size", dflt);
+    }
+
+    /**
+     * @param pool Pool name.
+     * @param dflt Default.
+     * @return Queue limit set with {@code -Dpool.<name>.queueLimit}.
+     */
+    private static int queueLimit(String pool, int dflt) {
+        return Integer.getInteger("pool." + pool + ".queueLimit", dflt);
+    }
+
+    /**
+     * Declares pool.
+     *
+     * @param name Pool name.
+     * @param size Number of threads on every node.
+     * @param queueLimit Maximum number of jobs in flight from this JVM.
+     * @return {@code this} for chaining.
+     */
+    public WorkloadExecutors pool(String name, int size, int queueLimit) {
+        pools.put(name, new Pool(name, size, queueLimit));
+
+        return this;
+    }
+
+    /**
+     * Routes workload to pool.
+     *
+     * @param workload Workload class, e.g. {@code "broadcast"}.
+     * @param pool Pool name.
+     * @return {@code this} for chaining.
+     */
+    public WorkloadExecutors route(String workload, String pool) {
+        if (!pools.containsKey(pool))
+            throw new IllegalArgumentException("Unknown pool: " + pool);
+
+        routes.put(workload, pool);
+
+        return this;
+    }
+
+    /**
+     * Adds declared pools to the node configuration.
+     *
+     * @param cfg Node configuration.
+     * @return Node configuration.
+     */
+    public IgniteConfiguration configure(IgniteConfiguration cfg) {
+        Collection<ExecutorConfiguration> execCfgs = new ArrayList<>();
+
+        if (cfg.getExecutorConfiguration() != null) {
+            for (ExecutorConfiguration c : cfg.getExecutorConfiguration()) {
+                if (!pools.containsKey(c.getName()))
+                    execCfgs.add(c);
+            }
+        }
+
+        for (Pool p : pools.values())
+            execCfgs.add(new ExecutorConfiguration(p.name).setSize(p.size));
+
+        return cfg.setExecutorConfiguration(execCfgs.toArray(new ExecutorConfiguration[0]));
+    }
+
+    /**
+     * Broadcasts job to the group in the pool of the workload.
+     *
+     * @param workload Workload class.
+     * @param grp Cluster group.
+     * @param job Job.
+     */
+    public void broadcast(String workload, ClusterGroup grp, IgniteRunnable job) {
+        Pool p = pool(workload);
+
+        long start = p.acquire();
+
+        try {
+            Collection<Long> startTimes = grp.ignite().compute(grp).withExecutor(p.name).broadcast(new Timed(job));
+
+            for (Long t : startTimes)
+                p.onStarted(start, t);
+        }
+        finally {
+            p.release();
+        }
+    }
+
+    /**
+     * Executes job on a node of the group in the pool of the workload.
+     *
+     * @param workload Workload class.
+     * @param grp Cluster group.
+     * @param job Job.
+     * @return Job result.
+     */
+    public <R> R call(String workload, ClusterGroup grp, IgniteCallable<R> job) {
+        Pool p = pool(workload);
+
+        long start = p.acquire();
+
+        try {
+            Object[] res = grp.ignite().compute(grp).withExecutor(p.name).call(new ResultCall<>(job));
+
+            p.onStarted(start, (Long)res[0]);
+
+            @SuppressWarnings("unchecked")
+            R r = (R)res[1];
+
+            return r;
+        }
+        finally {
+            p.release();
+        }
+    }
+
+    /**
+     * @return Submitter metrics of all pools by name.
+     */
+    public Map<String, PoolMetrics> metrics() {
+        Map<String, PoolMetrics> res = new TreeMap<>();
+
+        for (Pool p : pools.values())
+            res.put(p.name, p.metrics());
+
+        return res;
+    }
+
+    /**
+     * @param grp Executing nodes.
+     * @return Submitter metrics of all pools by name with queue size and active threads of the pools on the
+     *      executing nodes.
+     */
+    public Map<String, PoolMetrics> metrics(ClusterGroup grp) {
+        Map<String, PoolMetrics> res = metrics();
+
+        Collection<Map<String, long[]>> stats =
+            grp.ignite().compute(grp).broadcast(new ExecutorStats(new ArrayList<>(res.keySet())));
+
+        for (Map.Entry<String, PoolMetrics> e : res.entrySet()) {
+            int nodes = 0;
+            long queue = 0;
+            long maxQueue = 0;
+            long active = 0;
+
+            for (Map<String, long[]> nodeStats : stats) {
+                long[] s = nodeStats.get(e.getKey());
+
+                if (s == null)
+                    continue;
+
+                nodes++;
+                queue += s[0];
+                maxQueue = Math.max(maxQueue, s[0]);
+                active += s[1];
+            }
+
+            e.setValue(e.getValue().withExecutor(nodes, queue, maxQueue, active));
+        }
+
+        return res;
+    }
+
+    /**
+     * @param grp Executing nodes, {@code null} for submitter metrics only.
+     * @return Metrics of all pools, one pool per line.
+     */
+    public String report(ClusterGroup grp) {
+        StringBuilder sb = new StringBuilder();
+
+        for (PoolMetrics m : (grp == null ? metrics() : metrics(grp)).values())
+            sb.append(m).append(System.lineSeparator());
+
+        return sb.toString();
+    }
+
+    /**
+     * @param workload Workload class.
+     * @return Pool of the workload.
+     */
+    private Pool pool(String workload) {
+        String name = routes.get(workload);
+
+        if (name == null)
+            throw new IgniteException("Workload is not routed to any pool: " + workload);
+
+        return pools.get(name);
+    }
+
+    /**
+     * Pool declaration and its metrics.
+     */
+    private static class Pool {
+        /** Name. */
+        private final String name;
+
+        /** Number of threads. */
+        private final int size;
+
+        /** Maximum number of jobs in flight from this JVM. */
+        private final int queueLimit;
+
+        /** Limits jobs in flight. */
+        private final Semaphore permits;
+
+        /** Jobs in flight. */
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        /** Maximum number of jobs in flight. */
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+
+        /** Number of submitted jobs. */
+        private final LongAdder submitted = new LongAdder();
+
+        /** Number of started jobs, a broadcast starts a job per node. */
+        private final LongAdder started = new LongAdder();
+
+        /** Total wait time of started jobs in milliseconds. */
+        private final LongAdder waitTime = new LongAdder();
+
+        /** Maximum wait time in milliseconds. */
+        private final AtomicLong maxWaitTime = new AtomicLong();
+
+        /** Total time submitters were blocked by the queue limit in nanoseconds. */
+        private final LongAdder blockedTime = new LongAdder();
+
+        /**
+         * @param name Name.
+         * @param size Number of threads.
+         * @param queueLimit Maximum number of jobs in flight.
+         */
+        Pool(String name, int size, int queueLimit) {
+            this.name = name;
+            this.size = size;
+            this.queueLimit = queueLimit;
+
+            permits = new Semaphore(queueLimit);
+        }
+
+        /**
+         * Waits for a free slot in the queue.
+         *
+         * @return Submission time in milliseconds.
+         */
+        long acquire() {
+            long start = System.nanoTime();
+
+            try {
+                permits.acquire();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+                throw new IgniteInterruptedException(e);
+            }
+
+            blockedTime.add(System.nanoTime() - start);
+            submitted.increment();
+
+            int n = inFlight.incrementAndGet();
+
+            maxInFlight.accumulateAndGet(n, Math::max);
+
+            return System.currentTimeMillis();
+        }
+
+        /**
+         * @param submitTime Submission time.
+         * @param startTime Job start time on the executing node.
+         */
+        void onStarted(long submitTime, long startTime) {
+            // Clocks of different hosts may differ, negative waits are skew rather than time.
+            long wait = Math.max(0, startTime - submitTime);
+
+            started.increment();
+            waitTime.add(wait);
+            maxWaitTime.accumulateAndGet(wait, Math::max);
+        }
+
+        /**
+         * Frees queue slot.
+         */
+        void release() {
+            inFlight.decrementAndGet();
+
+            permits.release();
+        }
+
+        /**
+         * @return Metrics snapshot.
+         */
+        PoolMetrics metrics() {
+            long n = started.sum();
+
+            return new PoolMetrics(name, size, queueLimit, inFlight.get(), maxInFlight.get(), submitted.sum(),
+                n == 0 ? 0 : (double)waitTime.sum() / n, maxWaitTime.get(), blockedTime.sum() / 1_000_000, 0, 0, 0, 0);
+        }
+    }
+
+    /**
+     * Runnable reporting its start time.
+     */
+    private static class Timed implements IgniteCallable<Long> {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** Job. */
+        private final IgniteRunnable job;
+
+        /**
+         * @param job Job.
+         */
+        Timed(IgniteRunnable job) {
+            this.job = job;
+        }
+
+        /** {@inheritDoc} */
+        @Override public Long call() {
+            long start = System.currentTimeMillis();
+
+            job.run();
+
+            return start;
+        }
+    }
+
+    /**
+     * Callable reporting its start time along with the result.
+     */
+    private static class ResultCall<R> implements IgniteCallable<Object[]> {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** Job. */
+        private final IgniteCallable<R> job;
+
+        /**
+         * @param job Job.
+         */
+        ResultCall(IgniteCallable<R> job) {
+            this.job = job;
+        }
+
+        /** {@inheritDoc} */
+        @Override public Object[] call() throws Exception {
+            long start = System.currentTimeMillis();
+
+            return new Object[] {start, job.call()};
+        }
+    }
+
+    /**
+     * Reads queue size and number of active threads of pools from the {@code threadPools.<name>} metric registries
+     * of the executing node, exported through JMX. A pool missing on the node is reported as {@code null}.
+     */
+    private static class ExecutorStats implements IgniteCallable<Map<String, long[]>> {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** Pool names. */
+        private final Collection<String> names;
+
+        /** Ignite instance. */
+        @IgniteInstanceResource
+        private transient Ignite ignite;
+
+        /**
+         * @param names Pool names.
+         */
+        ExecutorStats(Collection<String> names) {
+            this.names = names;
+        }
+
+        /** {@inheritDoc} */
+        @Override public Map<String, long[]> call() throws Exception {
+            MBeanServer srv = ManagementFactory.getPlatformMBeanServer();
+
+            Map<String, long[]> res = new HashMap<>();
+
+            for (String name : names) {
+                for (ObjectName on : srv.queryNames(new ObjectName("org.apache:group=threadPools,name=" + name + ",*"),
+                    null)) {
+                    String inst = on.getKeyProperty("igniteInstanceName");
+
+                    if (inst != null && inst.startsWith("\""))
+                        inst = ObjectName.unquote(inst);
+
+                    // Several nodes may run in one JVM.
+                    if (!Objects.equals(inst, ignite.name()))
+                        continue;
+
+                    res.put(name, new long[] {
+                        ((Number)srv.getAttribute(on, "QueueSize")).longValue(),
+                        ((Number)srv.getAttribute(on, "ActiveCount")).longValue()
+                    });
+                }
+            }
+
+            return res;
+        }
+    }
+
+    /**
+     * Metrics snapshot of a pool.
+     */
+    public static class PoolMetrics {
+        /** Pool name. */
+        private final String name;
+
+        /** Number of threads. */
+        private final int size;
+
+        /** Maximum number of jobs in flight from this submitter. */
+        private final int queueLimit;
+
+        /** Jobs in flight from this submitter. */
+        private final int inFlight;
+
+        /** Maximum number of jobs in flight from this submitter. */
+        private final int maxInFlight;
+
+        /** Number of submitted jobs. */
+        private final long submitted;
+
+        /** Average wait time in milliseconds. */
+        private final double avgWaitTime;
+
+        /** Maximum wait time in milliseconds. */
+        private final long maxWaitTime;
+
+        /** Total time submitters were blocked by the queue limit in milliseconds. */
+        private final long blockedTime;
+
+        /** Number of executing nodes having the pool, {@code 0} if executor metrics were not collected. */
+        private final int nodes;
+
+        /** Jobs queued in the pool, summed over executing nodes. */
+        private final long queueSize;
+
+        /** Largest queue of the pool on a single node. */
+        private final long maxNodeQueueSize;
+
+        /** Threads of the pool running jobs, summed over executing nodes. */
+        private final long activeCount;
+
+        /**
+         * @param name Pool name.
+         * @param size Number of threads.
+         * @param queueLimit Maximum number of jobs in flight from this submitter.
+         * @param inFlight Jobs in flight from this submitter.
+         * @param maxInFlight Maximum number of jobs in flight from this submitter.
+         * @param submitted Number of submitted jobs.
+         * @param avgWaitTime Average wait time in milliseconds.
+         * @param maxWaitTime Maximum wait time in milliseconds.
+         * @param blockedTime Total time submitters were blocked by the queue limit in milliseconds.
+         * @param nodes Number of executing nodes having the pool, {@code 0} if executor metrics were not collected.
+         * @param queueSize Jobs queued in the pool, summed over executing nodes.
+         * @param maxNodeQueueSize Largest queue of the pool on a single node.
+         * @param activeCount Threads of the pool running jobs, summed over executing nodes.
+         */
+        PoolMetrics(String name, int size, int queueLimit, int inFlight, int maxInFlight, long submitted,
+            double avgWaitTime, long maxWaitTime, long blockedTime, int nodes, long queueSize, long maxNodeQueueSize,
+            long activeCount) {
+            this.name = name;
+            this.size = size;
+            this.queueLimit = queueLimit;
+            this.inFlight = inFlight;
+            this.maxInFlight = maxInFlight;
+            this.submitted = submitted;
+            this.avgWaitTime = avgWaitTime;
+            this.maxWaitTime = maxWaitTime;
+            this.blockedTime = blockedTime;
+            this.nodes = nodes;
+            this.queueSize = queueSize;
+            this.maxNodeQueueSize = maxNodeQueueSize;
+            this.activeCount = activeCount;
+        }
+
+        /**
+         * @param nodes Number of executing nodes having the pool.
+         * @param queueSize Jobs queued in the pool, summed over executing nodes.
+         * @param maxNodeQueueSize Largest queue of the pool on a single node.
+         * @param activeCount Threads of the pool running jobs, summed over executing nodes.
+         * @return Copy with executor metrics.
+         */
+        PoolMetrics withExecutor(int nodes, long queueSize, long maxNodeQueueSize, long activeCount) {
+            return new PoolMetrics(name, size, queueLimit, inFlight, maxInFlight, submitted, avgWaitTime,
+                maxWaitTime, blockedTime, nodes, queueSize, maxNodeQueueSize, activeCount);
+        }
+
+        /**
+         * @return Jobs in flight from this submitter.
+         */
+        public int inFlight() {
+            return inFlight;
+        }
+
+        /**
+         * @return Maximum number of jobs in flight from this submitter.
+         */
+        public int maxInFlight() {
+            return maxInFlight;
+        }
+
+        /**
+         * @return Number of submitted jobs.
+         */
+        public long submitted() {
+            return submitted;
+        }
+
+        /**
+         * @return Average wait time in milliseconds.
+         */
+        public double avgWaitTime() {
+            return avgWaitTime;
+        }
+
+        /**
+         * @return Maximum wait time in milliseconds.
+         */
+        public long maxWaitTime() {
+            return maxWaitTime;
+        }
+
+        /**
+         * @return Total time submitters were blocked by the queue limit in milliseconds.
+         */
+        public long blockedTime() {
+            return blockedTime;
+        }
+
+        /**
+         * @return Number of executing nodes having the pool, {@code 0} if executor metrics were not collected.
+         */
+        public int nodes() {
+            return nodes;
+        }
+
+        /**
+         * @return Jobs queued in the pool, summed over executing nodes.
+         */
+        public long queueSize() {
+            return queueSize;
+        }
+
+        /**
+         * @return Largest queue of the pool on a single node.
+         */
+        public long maxNodeQueueSize() {
+            return maxNodeQueueSize;
+        }
+
+        /**
+         * @return Threads of the pool running jobs, summed over executing nodes.
+         */
+        public long activeCount() {
+            return activeCount;
+        }
+
+        /** {@inheritDoc} */
+        @Override public String toString() {
+            String res = String.format("Pool [name=%s, size=%d, queueLimit=%d, inFlight=%d, maxInFlight=%d, " +
+                "submitted=%d, avgWait=%.1fms, maxWait=%dms, blocked=%dms", name, size, queueLimit, inFlight,
+                maxInFlight, submitted, avgWaitTime, maxWaitTime, blockedTime);
+
+            if (nodes > 0) {
+                res += String.format(", nodes=%d, queueSize=%d, maxNodeQueueSize=%d, activeThreads=%d", nodes,
+                    queueSize, maxNodeQueueSize, activeCount);
+            }
+
+            return res + ']';
+        }
+    }
+}
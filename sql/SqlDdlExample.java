@@ -1,3 +1,5 @@
+import java.io.File;
+import java.util.Arrays;
 import java.util.List;
 import org.apache.ignite.Ignite;
 import org.apache.ignite.IgniteCache;
@@ -5,6 +7,8 @@ import org.apache.ignite.Ignition;
 import org.apache.ignite.cache.query.SqlFieldsQuery;
 import org.apache.ignite.configuration.CacheConfiguration;
 import org.apache.ignite.examples.ExampleNodeStartup;
+
+import maven.ignite.SqlResultCache;
 public class SqlDdlExample {
     private static final String DUMMY_CACHE_NAME = "dummy_cache";
     @SuppressWarnings({"unused", "ThrowFromFinallyBlock"})
@@ -39,27 +43,65 @@ public class SqlDdlExample {
                 cache.query(qry.setArgs(2L, "Denver")).getAll();
                 cache.query(qry.setArgs(3L, "St. Petersburg")).getAll();
 
+                // Person table is partitioned by city_id, check how evenly cities spread over partitions.
+                // Every write of a person records access of its city.
+                PartitionSkewAnalyzer skew = new PartitionSkewAnalyzer("SQL_PUBLIC_PERSON", "city_id", "id", 4.0, 1);
+
                 qry = new SqlFieldsQuery("INSERT INTO person (id, name, city_id) values (?, ?, ?)");
 
-                cache.query(qry.setArgs(1L, "John Doe", 3L)).getAll();
-                cache.query(qry.setArgs(2L, "Jane Roe", 2L)).getAll();
-                cache.query(qry.setArgs(3L, "Mary Major", 1L)).getAll();
-                cache.query(qry.setArgs(4L, "Richard Miles", 2L)).getAll();
+                insertPerson(cache, qry, skew, 1L, "John Doe", 3L);
+                insertPerson(cache, qry, skew, 2L, "Jane Roe", 2L);
+                insertPerson(cache, qry, skew, 3L, "Mary Major", 1L);
+                insertPerson(cache, qry, skew, 4L, "Richard Miles", 2L);
 
                 print("Populated data.");
 
-                List<List<?>> res = cache.query(new SqlFieldsQuery(
-                    "SELECT p.name, c.name FROM Person p INNER JOIN City c on c.id = p.city_id")).getAll();
+                print(skew.analyze(ignite, 5));
+
+                // Repeated join is served from memory until Person or City table is updated.
+                SqlResultCache resultCache = new SqlResultCache(100, 60_000);
+
+                resultCache.watch(ignite.cache("SQL_PUBLIC_PERSON"), "Person");
+                resultCache.watch(ignite.cache("SQL_PUBLIC_CITY"), "City");
+
+                List<List<?>> res = resultCache.query(cache, new SqlFieldsQuery(
+                    "SELECT p.name, c.name FROM Person p INNER JOIN City c on c.id = p.city_id"), "Person", "City");
 
                 print("Query results:");
 
                 for (Object next : res)
                     System.out.println(">>>    " + next);
 
+                resultCache.close();
+
+                // Back up tables before they are dropped, so that they can be restored below.
+                SnapshotBackup backup = null;
+                String snpName = "SqlDdlExample-" + System.currentTimeMillis();
+
+                if (SnapshotBackup.persistenceEnabled(ignite)) {
+                    backup = new SnapshotBackup(ignite,
+                        new File(System.getProperty("java.io.tmpdir"), "ignite-backups"));
+
+                    for (SnapshotBackup.Phase phase : backup.backup(snpName))
+                        print("Backup " + phase);
+                }
+
                 cache.query(new SqlFieldsQuery("drop table Person")).getAll();
                 cache.query(new SqlFieldsQuery("drop table City")).getAll();
 
                 print("Dropped database objects.");
+
+                if (backup != null) {
+                    for (SnapshotBackup.Phase phase :
+                        backup.restore(snpName, Arrays.asList("SQL_PUBLIC_PERSON", "SQL_PUBLIC_CITY")))
+                        print("Restore " + phase);
+
+                    print("Restored persons: " +
+                        cache.query(new SqlFieldsQuery("SELECT count(*) FROM Person")).getAll().get(0).get(0));
+
+                    cache.query(new SqlFieldsQuery("drop table Person")).getAll();
+                    cache.query(new SqlFieldsQuery("drop table City")).getAll();
+                }
             }
             finally {
                 // Distributed cache can be removed from cluster only by #destroyCache() call.
@@ -69,6 +111,12 @@ public class SqlDdlExample {
             print("Cache query DDL example finished.");
         }
     }
+    private static void insertPerson(IgniteCache<?, ?> cache, SqlFieldsQuery qry, PartitionSkewAnalyzer skew,
+        long id, String name, long cityId) {
+        cache.query(qry.setArgs(id, name, cityId)).getAll();
+
+        skew.recordAccess(cityId);
+    }
     private static void print(String msg) {
         System.out.println();
         System.out.println(">>> " + msg);
@@ -7,10 +7,16 @@ import org.apache.ignite.configuration.CacheConfiguration;
 import org.apache.ignite.examples.model.Organization;
 import org.apache.ignite.examples.model.Person;
 
+import maven.ignite.IdGenerator;
+import maven.ignite.QueryTracer;
+
 public class SqlDmlExample {
     private static final String ORG_CACHE = SqlDmlExample.class.getSimpleName() + "Organizations";
 
     private static final String PERSON_CACHE = SqlDmlExample.class.getSimpleName() + "Persons";
+
+    /** Traces queries of the example, queries slower than 100 ms are logged. */
+    private static final QueryTracer TRACER = new QueryTracer(100);
     @SuppressWarnings({"unused", "ThrowFromFinallyBlock"})
     public static void main(String[] args) throws Exception {
         try (Ignite ignite = Ignition.start("examples/config/example-ignite.xml")) {
@@ -27,13 +33,16 @@ public class SqlDmlExample {
                 IgniteCache<Long, Organization> orgCache = ignite.getOrCreateCache(orgCacheCfg);
                 IgniteCache<Long, Person> personCache = ignite.getOrCreateCache(personCacheCfg)
             ) {
-                insert(orgCache, personCache);
+                IdGenerator orgIds = new IdGenerator(ignite, "OrganizationId", IdGenerator.DFLT_BATCH_SIZE);
+                IdGenerator personIds = new IdGenerator(ignite, "PersonId", IdGenerator.DFLT_BATCH_SIZE);
+
+                long asfId = insert(orgCache, personCache, orgIds, personIds);
                 select(personCache, "Insert data");
 
                 update(personCache);
                 select(personCache, "Update salary for Master degrees");
 
-                delete(personCache);
+                delete(personCache, asfId);
                 select(personCache, "Delete non-Apache employees");
             }
             finally {
@@ -42,36 +51,54 @@ public class SqlDmlExample {
                 ignite.destroyCache(ORG_CACHE);
             }
 
+            print("Query statistics:");
+            System.out.print(TRACER.report());
+
             print("Cache query DML example finished.");
         }
     }
-    private static void insert(IgniteCache<Long, Organization> orgCache, IgniteCache<Long, Person> personCache) {
+    /**
+     * Inserts organizations and persons with IDs drawn from cluster-wide generators.
+     *
+     * @return ID of ASF organization.
+     */
+    private static long insert(IgniteCache<Long, Organization> orgCache, IgniteCache<Long, Person> personCache,
+        IdGenerator orgIds, IdGenerator personIds) {
         // Insert organizations.
         SqlFieldsQuery qry = new SqlFieldsQuery("insert into Organization (_key, id, name) values (?, ?, ?)");
 
-        orgCache.query(qry.setArgs(1L, 1L, "ASF"));
-        orgCache.query(qry.setArgs(2L, 2L, "Eclipse"));
+        long asfId = orgIds.nextId();
+        long eclipseId = orgIds.nextId();
+
+        TRACER.queryAll(orgCache, qry.setArgs(asfId, asfId, "ASF"));
+        TRACER.queryAll(orgCache, qry.setArgs(eclipseId, eclipseId, "Eclipse"));
 
         // Insert persons.
         qry = new SqlFieldsQuery(
             "insert into Person (_key, id, orgId, firstName, lastName, salary, resume) values (?, ?, ?, ?, ?, ?, ?)");
 
-        personCache.query(qry.setArgs(1L, 1L, 1L, "John", "Doe", 4000, "Master"));
-        personCache.query(qry.setArgs(2L, 2L, 1L, "Jane", "Roe", 2000, "Bachelor"));
-        personCache.query(qry.setArgs(3L, 3L, 2L, "Mary", "Major", 5000, "Master"));
-        personCache.query(qry.setArgs(4L, 4L, 2L, "Richard", "Miles", 3000, "Bachelor"));
+        long[] ids = new long[4];
+
+        personIds.nextIds(ids);
+
+        TRACER.queryAll(personCache, qry.setArgs(ids[0], ids[0], asfId, "John", "Doe", 4000, "Master"));
+        TRACER.queryAll(personCache, qry.setArgs(ids[1], ids[1], asfId, "Jane", "Roe", 2000, "Bachelor"));
+        TRACER.queryAll(personCache, qry.setArgs(ids[2], ids[2], eclipseId, "Mary", "Major", 5000, "Master"));
+        TRACER.queryAll(personCache, qry.setArgs(ids[3], ids[3], eclipseId, "Richard", "Miles", 3000, "Bachelor"));
+
+        return asfId;
     }
     private static void update(IgniteCache<Long, Person> personCache) {
         String sql =
             "update Person set salary = salary * 1.1 " +
             "where resume = ?";
 
-        personCache.query(new SqlFieldsQuery(sql).setArgs("Master"));
+        TRACER.queryAll(personCache, new SqlFieldsQuery(sql).setArgs("Master"));
     }
-    private static void delete(IgniteCache<Long, Person> personCache) {
+    private static void delete(IgniteCache<Long, Person> personCache, long asfId) {
         String sql = "delete from Person where orgId != ?";
 
-        personCache.query(new SqlFieldsQuery(sql).setArgs(1)).getAll();
+        TRACER.queryAll(personCache, new SqlFieldsQuery(sql).setArgs(asfId));
     }
     private static void select(IgniteCache<Long, Person> personCache, String msg) {
         String sql =
@@ -79,7 +106,7 @@ public class SqlDmlExample {
             "from Person as p, \"" + ORG_CACHE + "\".Organization as o " +
             "where p.orgId = o.id";
 
-        List<List<?>> res = personCache.query(new SqlFieldsQuery(sql).setDistributedJoins(true)).getAll();
+        List<List<?>> res = TRACER.queryAll(personCache, new SqlFieldsQuery(sql).setDistributedJoins(true));
 
         print(msg);
 
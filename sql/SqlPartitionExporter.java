@@ -0,0 +1,383 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteException;
+import org.apache.ignite.cache.query.FieldsQueryCursor;
+import org.apache.ignite.cache.query.SqlFieldsQuery;
+import org.apache.ignite.lang.IgniteCallable;
+import org.apache.ignite.lang.IgniteFuture;
+import org.apache.ignite.resources.IgniteInstanceResource;
+
+/**
+ * Exports result of SQL fields query as a set of CSV files, one file per cache partition.
+ * <p>
+ * Every partition is exported by a separate affinity job which runs a local {@link SqlFieldsQuery}
+ * restricted to that partition on the node owning it, so export throughput grows with the number
+ * of nodes and cores instead of being limited by a single client. Files are written on the node
+ * which executed the job, to the same directory path, and are described by a manifest file written
+ * by the caller.
+ * <p>
+ * Note that query should be collocated by the cache affinity (e.g. join only on affinity key),
+ * since it is executed locally within one partition.
+ */
+public class SqlPartitionExporter {
+    /** Manifest file name. */
+    public static final String MANIFEST_FILE = "manifest.csv";
+
+    /** Write buffer size. */
+    private static final int BUF_SIZE = 256 * 1024;
+
+    /** Ignite instance. */
+    private final Ignite ignite;
+
+    /** Name of the cache the query is executed on. */
+    private final String cacheName;
+
+    /** Export directory. */
+    private final File dir;
+
+    /**
+     * @param ignite Ignite instance.
+     * @param cacheName Name of the cache the query is executed on.
+     * @param dir Export directory.
+     */
+    public SqlPartitionExporter(Ignite ignite, String cacheName, File dir) {
+        this.ignite = ignite;
+        this.cacheName = cacheName;
+        this.dir = dir;
+    }
+
+    /**
+     * Exports query result and writes manifest file.
+     *
+     * @param sql SQL fields query.
+     * @param args Query arguments.
+     * @return Exported partition files.
+     * @throws IOException If failed to write manifest.
+     */
+    public List<PartitionFile> export(String sql, Object... args) throws IOException {
+        int parts = ignite.affinity(cacheName).partitions();
+
+        List<IgniteFuture<PartitionFile>> futs = new ArrayList<>(parts);
+
+        for (int p = 0; p < parts; p++) {
+            ExportJob job = new ExportJob(cacheName, sql, args, p, dir.getAbsolutePath());
+
+            futs.add(ignite.compute().affinityCallAsync(Collections.singletonList(cacheName), p, job));
+        }
+
+        List<PartitionFile> res = new ArrayList<>(parts);
+
+        for (IgniteFuture<PartitionFile> fut : futs)
+            res.add(fut.get());
+
+        writeManifest(sql, res);
+
+        return res;
+    }
+
+    /**
+     * @param sql SQL fields query.
+     * @param files Exported partition files.
+     * @throws IOException If failed.
+     */
+    private void writeManifest(String sql, List<PartitionFile> files) throws IOException {
+        if (!dir.exists() && !dir.mkdirs())
+            throw new IOException("Failed to create export directory: " + dir);
+
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("# sql: ").append(sql.replace('\n', ' ')).append('\n');
+        sb.append("partition,node,file,rows,bytes\n");
+
+        for (PartitionFile f : files) {
+            sb.append(f.partition()).append(',')
+                .append(f.nodeId()).append(',')
+                .append(f.fileName() == null ? "" : f.fileName()).append(',')
+                .append(f.rows()).append(',')
+                .append(f.bytes()).append('\n');
+        }
+
+        try (FileChannel ch = FileChannel.open(new File(dir, MANIFEST_FILE).toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+
+            while (buf.hasRemaining())
+                ch.write(buf);
+        }
+    }
+
+    /**
+     * Appends CSV field to the row, quoting it if needed.
+     *
+     * @param sb Row builder.
+     * @param val Field value.
+     */
+    static void appendField(StringBuilder sb, Object val) {
+        if (val == null)
+            return;
+
+        String s = val.toString();
+
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) {
+            sb.append(s);
+
+            return;
+        }
+
+        sb.append('"');
+
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+
+            if (c == '"')
+                sb.append('"');
+
+            sb.append(c);
+        }
+
+        sb.append('"');
+    }
+
+    /**
+     * Exports single partition on the node owning it.
+     */
+    private static class ExportJob implements IgniteCallable<PartitionFile> {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** Local Ignite instance. */
+        @IgniteInstanceResource
+        private transient Ignite ignite;
+
+        /** Cache name. */
+        private final String cacheName;
+
+        /** SQL fields query. */
+        private final String sql;
+
+        /** Query arguments. */
+        private final Object[] args;
+
+        /** Partition. */
+        private final int part;
+
+        /** Export directory path. */
+        private final String dir;
+
+        /**
+         * @param cacheName Cache name.
+         * @param sql SQL fields query.
+         * @param args Query arguments.
+         * @param part Partition.
+         * @param dir Export directory path.
+         */
+        ExportJob(String cacheName, String sql, Object[] args, int part, String dir) {
+            this.cacheName = cacheName;
+            this.sql = sql;
+            this.args = args;
+            this.part = part;
+            this.dir = dir;
+        }
+
+        /** {@inheritDoc} */
+        @Override public PartitionFile call() throws Exception {
+            SqlFieldsQuery qry = new SqlFieldsQuery(sql)
+                .setArgs(args)
+                .setPartitions(part)
+                .setLocal(true)
+                .setLazy(true);
+
+            UUID nodeId = ignite.cluster().localNode().id();
+            File file = new File(dir, String.format("part-%05d.csv", part));
+
+            long rows = 0;
+            long bytes = 0;
+
+            FileChannel ch = null;
+
+            try (FieldsQueryCursor<List<?>> cur = ignite.cache(cacheName).query(qry)) {
+                ByteBuffer buf = ByteBuffer.allocateDirect(BUF_SIZE);
+                StringBuilder sb = new StringBuilder();
+
+                for (List<?> row : cur) {
+                    // File is created lazily, so that empty partitions do not produce files.
+                    if (ch == null) {
+                        ch = open(file);
+
+                        for (int i = 0; i < cur.getColumnsCount(); i++) {
+                            if (i > 0)
+                                sb.append(',');
+
+                            appendField(sb, cur.getFieldName(i));
+                        }
+
+                        sb.append('\n');
+                    }
+
+                    for (int i = 0; i < row.size(); i++) {
+                        if (i > 0)
+                            sb.append(',');
+
+                        appendField(sb, row.get(i));
+                    }
+
+                    sb.append('\n');
+
+                    rows++;
+
+                    bytes += write(ch, buf, sb);
+
+                    sb.setLength(0);
+                }
+
+                if (ch != null)
+                    flush(ch, buf);
+            }
+            finally {
+                if (ch != null)
+                    ch.close();
+            }
+
+            return new PartitionFile(part, nodeId, rows == 0 ? null : file.getName(), rows, bytes);
+        }
+
+        /**
+         * @param file File.
+         * @return Channel.
+         * @throws IOException If failed.
+         */
+        private static FileChannel open(File file) throws IOException {
+            File parent = file.getParentFile();
+
+            if (!parent.exists() && !parent.mkdirs() && !parent.exists())
+                throw new IgniteException("Failed to create export directory: " + parent);
+
+            return FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        /**
+         * Writes encoded row to the buffer, flushing buffer to the channel when it is full.
+         *
+         * @param ch Channel.
+         * @param buf Buffer.
+         * @param sb Row.
+         * @return Number of bytes written.
+         * @throws IOException If failed.
+         */
+        private static int write(FileChannel ch, ByteBuffer buf, CharSequence sb) throws IOException {
+            byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+            if (bytes.length > buf.remaining())
+                flush(ch, buf);
+
+            if (bytes.length > buf.capacity()) {
+                ByteBuffer big = ByteBuffer.wrap(bytes);
+
+                while (big.hasRemaining())
+                    ch.write(big);
+            }
+            else
+                buf.put(bytes);
+
+            return bytes.length;
+        }
+
+        /**
+         * @param ch Channel.
+         * @param buf Buffer.
+         * @throws IOException If failed.
+         */
+        private static void flush(FileChannel ch, ByteBuffer buf) throws IOException {
+            buf.flip();
+
+            while (buf.hasRemaining())
+                ch.write(buf);
+
+            buf.clear();
+        }
+    }
+
+    /**
+     * Exported partition file descriptor.
+     */
+    public static class PartitionFile implements Serializable {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** Partition. */
+        private final int part;
+
+        /** ID of the node which exported the partition. */
+        private final UUID nodeId;
+
+        /** File name, {@code null} if partition is empty. */
+        private final String fileName;
+
+        /** Number of exported rows. */
+        private final long rows;
+
+        /** Number of written bytes. */
+        private final long bytes;
+
+        /**
+         * @param part Partition.
+         * @param nodeId ID of the node which exported the partition.
+         * @param fileName File name, {@code null} if partition is empty.
+         * @param rows Number of exported rows.
+         * @param bytes Number of written bytes.
+         */
+        PartitionFile(int part, UUID nodeId, String fileName, long rows, long bytes) {
+            this.part = part;
+            this.nodeId = nodeId;
+            this.fileName = fileName;
+            this.rows = rows;
+            this.bytes = bytes;
+        }
+
+        /**
+         * @return Partition.
+         */
+        public int partition() {
+            return part;
+        }
+
+        /**
+         * @return ID of the node which exported the partition.
+         */
+        public UUID nodeId() {
+            return nodeId;
+        }
+
+        /**
+         * @return File name, {@code null} if partition is empty.
+         */
+        public String fileName() {
+            return fileName;
+        }
+
+        /**
+         * @return Number of exported rows.
+         */
+        public long rows() {
+            return rows;
+        }
+
+        /**
+         * @return Number of written bytes.
+         */
+        public long bytes() {
+            return bytes;
+        }
+    }
+}
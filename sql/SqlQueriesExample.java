@@ -1,4 +1,7 @@
+import java.io.File;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
 import javax.cache.Cache;
 import org.apache.ignite.Ignite;
 import org.apache.ignite.IgniteCache;
@@ -16,31 +19,28 @@ import org.apache.ignite.examples.ExampleNodeStartup;
 import org.apache.ignite.examples.model.Organization;
 import org.apache.ignite.examples.model.Person;
 import org.apache.ignite.lang.IgniteBiPredicate;
+
+import maven.ignite.IdGenerator;
+import maven.ignite.QueryTracer;
 public class SqlQueriesExample {
-    private static final String ORG_CACHE = SqlQueriesExample.class.getSimpleName() + "Organizations";
+    static final String ORG_CACHE = SqlQueriesExample.class.getSimpleName() + "Organizations";
+
+    static final String COLLOCATED_PERSON_CACHE = SqlQueriesExample.class.getSimpleName() + "CollocatedPersons";
+    static final String PERSON_CACHE = SqlQueriesExample.class.getSimpleName() + "Persons";
 
-    private static final String COLLOCATED_PERSON_CACHE = SqlQueriesExample.class.getSimpleName() + "CollocatedPersons";
-    private static final String PERSON_CACHE = SqlQueriesExample.class.getSimpleName() + "Persons";
+    /** Query parallelism of example caches, i.e. number of index segments queried in parallel on each node. */
+    private static final int QRY_PARALLELISM = Integer.getInteger("qryParallelism", 1);
     public static void main(String[] args) throws Exception {
         try (Ignite ignite = Ignition.start("examples/config/example-ignite.xml")) {
             System.out.println();
             System.out.println(">>> SQL queries example started.");
 
-            CacheConfiguration<Long, Organization> orgCacheCfg = new CacheConfiguration<>(ORG_CACHE);
-
-            orgCacheCfg.setCacheMode(CacheMode.PARTITIONED); // Default.
-            orgCacheCfg.setIndexedTypes(Long.class, Organization.class);
+            CacheConfiguration<Long, Organization> orgCacheCfg = orgCacheConfiguration(QRY_PARALLELISM);
 
             CacheConfiguration<AffinityKey<Long>, Person> colPersonCacheCfg =
-                new CacheConfiguration<>(COLLOCATED_PERSON_CACHE);
-
-            colPersonCacheCfg.setCacheMode(CacheMode.PARTITIONED); // Default.
-            colPersonCacheCfg.setIndexedTypes(AffinityKey.class, Person.class);
-
-            CacheConfiguration<Long, Person> personCacheCfg = new CacheConfiguration<>(PERSON_CACHE);
+                collocatedPersonCacheConfiguration(QRY_PARALLELISM);
 
-            personCacheCfg.setCacheMode(CacheMode.PARTITIONED); // Default.
-            personCacheCfg.setIndexedTypes(Long.class, Person.class);
+            CacheConfiguration<Long, Person> personCacheCfg = personCacheConfiguration(QRY_PARALLELISM);
 
             try {
                 // Create caches.
@@ -66,12 +66,24 @@ public class SqlQueriesExample {
                 // among all employees within a company.
                 sqlQueryWithAggregation();
 
+                // Example for incrementally maintained average salary per organization
+                // which is read without re-running the SQL query.
+                aggregationView();
+
                 // Example for SQL-based fields queries that return only required
                 // fields instead of whole key-value pairs.
                 sqlFieldsQuery();
 
+                // Example for SQL-based fields query consumed through reactive publisher
+                // which fetches result pages as subscriber requests rows.
+                sqlFieldsQueryPublisher();
+
                 // Example for SQL-based fields queries that uses joins.
                 sqlFieldsQueryWithJoin();
+
+                // Example for exporting result of SQL-based fields query with join
+                // to per-partition files.
+                sqlFieldsQueryExport();
             }
             finally {
                 // Distributed cache could be removed from cluster only by Ignite.destroyCache() call.
@@ -84,6 +96,59 @@ public class SqlQueriesExample {
         }
     }
 
+    /**
+     * Creates organization cache configuration.
+     * <p>
+     * Query parallelism splits every index of the cache into the given number of segments, which are
+     * queried by separate threads. Caches joined in one query must use the same parallelism level,
+     * so all example caches are configured with the same value.
+     *
+     * @param qryParallelism Query parallelism.
+     * @return Cache configuration.
+     */
+    static CacheConfiguration<Long, Organization> orgCacheConfiguration(int qryParallelism) {
+        CacheConfiguration<Long, Organization> orgCacheCfg = new CacheConfiguration<>(ORG_CACHE);
+
+        orgCacheCfg.setCacheMode(CacheMode.PARTITIONED); // Default.
+        orgCacheCfg.setQueryParallelism(qryParallelism);
+        orgCacheCfg.setIndexedTypes(Long.class, Organization.class);
+
+        return orgCacheCfg;
+    }
+
+    /**
+     * Creates configuration of person cache collocated with organizations.
+     *
+     * @param qryParallelism Query parallelism.
+     * @return Cache configuration.
+     */
+    static CacheConfiguration<AffinityKey<Long>, Person> collocatedPersonCacheConfiguration(int qryParallelism) {
+        CacheConfiguration<AffinityKey<Long>, Person> colPersonCacheCfg =
+            new CacheConfiguration<>(COLLOCATED_PERSON_CACHE);
+
+        colPersonCacheCfg.setCacheMode(CacheMode.PARTITIONED); // Default.
+        colPersonCacheCfg.setQueryParallelism(qryParallelism);
+        colPersonCacheCfg.setIndexedTypes(AffinityKey.class, Person.class);
+
+        return colPersonCacheCfg;
+    }
+
+    /**
+     * Creates person cache configuration.
+     *
+     * @param qryParallelism Query parallelism.
+     * @return Cache configuration.
+     */
+    static CacheConfiguration<Long, Person> personCacheConfiguration(int qryParallelism) {
+        CacheConfiguration<Long, Person> personCacheCfg = new CacheConfiguration<>(PERSON_CACHE);
+
+        personCacheCfg.setCacheMode(CacheMode.PARTITIONED); // Default.
+        personCacheCfg.setQueryParallelism(qryParallelism);
+        personCacheCfg.setIndexedTypes(Long.class, Person.class);
+
+        return personCacheCfg;
+    }
+
     /**
      * Example for SQL queries based on salary ranges.
      */
@@ -172,6 +237,21 @@ public class SqlQueriesExample {
         print("Average salary for 'ApacheIgnite' employees: ", cursor.getAll());
     }
 
+    /**
+     * Example for average salary per organization maintained by continuous query.
+     */
+    private static void aggregationView() {
+        IgniteCache<AffinityKey<Long>, Person> cache = Ignition.ignite().cache(COLLOCATED_PERSON_CACHE);
+
+        try (CacheAggregateView<AffinityKey<Long>, Person, Long> view =
+            new CacheAggregateView<AffinityKey<Long>, Person, Long>(cache, p -> p.orgId, p -> p.salary).start()) {
+            print("Salary aggregates per organization (maintained by continuous query):");
+
+            for (Long orgId : view.groups())
+                System.out.println(">>>     orgId=" + orgId + ", " + view.aggregate(orgId));
+        }
+    }
+
     /**
      * Example for SQL-based fields queries that return only required
      * fields instead of whole key-value pairs.
@@ -179,15 +259,70 @@ public class SqlQueriesExample {
     private static void sqlFieldsQuery() {
         IgniteCache<Long, Person> cache = Ignition.ignite().cache(PERSON_CACHE);
 
-        // Execute query to get names of all employees.
-        QueryCursor<List<?>> cursor = cache.query(new SqlFieldsQuery(
+        QueryTracer tracer = new QueryTracer(100);
+
+        // Execute query to get names of all employees, first-row latency and total time are traced.
+        List<List<?>> res = tracer.queryAll(cache, new SqlFieldsQuery(
             "select concat(firstName, ' ', lastName) from Person"));
 
         // In this particular case each row will have one element with full name of an employees.
-        List<List<?>> res = cursor.getAll();
-
         // Print names.
         print("Names of all employees:", res);
+
+        print("Query statistics: " + tracer.report());
+    }
+
+    /**
+     * Example for SQL-based fields query consumed through {@link Flow.Publisher}: subscriber requests
+     * rows one page at a time, so the next page is fetched only after the previous one is processed.
+     */
+    private static void sqlFieldsQueryPublisher() throws InterruptedException {
+        IgniteCache<Long, Person> cache = Ignition.ignite().cache(PERSON_CACHE);
+
+        int pageSize = 2;
+
+        QueryCursorPublisher<List<?>> pub = new QueryCursorPublisher<>(cache,
+            new SqlFieldsQuery("select concat(firstName, ' ', lastName), salary from Person"), pageSize);
+
+        CountDownLatch done = new CountDownLatch(1);
+
+        print("Names and salaries of all employees (requested by " + pageSize + "):");
+
+        pub.subscribe(new Flow.Subscriber<List<?>>() {
+            private Flow.Subscription s;
+
+            private int left;
+
+            @Override public void onSubscribe(Flow.Subscription s) {
+                this.s = s;
+
+                left = pageSize;
+
+                s.request(pageSize);
+            }
+
+            @Override public void onNext(List<?> row) {
+                System.out.println(">>>     " + row);
+
+                if (--left == 0) {
+                    left = pageSize;
+
+                    s.request(pageSize);
+                }
+            }
+
+            @Override public void onError(Throwable e) {
+                e.printStackTrace();
+
+                done.countDown();
+            }
+
+            @Override public void onComplete() {
+                done.countDown();
+            }
+        });
+
+        done.await();
     }
 
     /**
@@ -213,33 +348,63 @@ public class SqlQueriesExample {
     }
 
     /**
-     * Populate cache with test data.
+     * Example for exporting result of SQL-based fields query with join to a set of
+     * per-partition CSV files, each one written by the node owning the partition.
+     */
+    private static void sqlFieldsQueryExport() throws Exception {
+        String sql =
+            "select concat(firstName, ' ', lastName), org.name " +
+            "from Person, \"" + ORG_CACHE + "\".Organization as org " +
+            "where Person.orgId = org.id";
+
+        File dir = new File(System.getProperty("java.io.tmpdir"), "ignite-sql-export");
+
+        long rows = 0;
+
+        for (SqlPartitionExporter.PartitionFile f :
+            new SqlPartitionExporter(Ignition.ignite(), COLLOCATED_PERSON_CACHE, dir).export(sql))
+            rows += f.rows();
+
+        print("Exported " + rows + " employees and organizations they belong to: " + dir);
+    }
+
+    /**
+     * Populate cache with test data, IDs are drawn from cluster-wide generators.
      */
     private static void initialize() {
-        IgniteCache<Long, Organization> orgCache = Ignition.ignite().cache(ORG_CACHE);
+        Ignite ignite = Ignition.ignite();
+
+        IdGenerator orgIds = new IdGenerator(ignite, "OrganizationId", IdGenerator.DFLT_BATCH_SIZE);
+        IdGenerator personIds = new IdGenerator(ignite, "PersonId", IdGenerator.DFLT_BATCH_SIZE);
+
+        IgniteCache<Long, Organization> orgCache = ignite.cache(ORG_CACHE);
 
         // Clear cache before running the example.
         orgCache.clear();
 
         // Organizations.
-        Organization org1 = new Organization("ApacheIgnite");
-        Organization org2 = new Organization("Other");
+        Organization org1 = new Organization(orgIds.nextId(), "ApacheIgnite");
+        Organization org2 = new Organization(orgIds.nextId(), "Other");
 
         orgCache.put(org1.id(), org1);
         orgCache.put(org2.id(), org2);
 
-        IgniteCache<AffinityKey<Long>, Person> colPersonCache = Ignition.ignite().cache(COLLOCATED_PERSON_CACHE);
-        IgniteCache<Long, Person> personCache = Ignition.ignite().cache(PERSON_CACHE);
+        IgniteCache<AffinityKey<Long>, Person> colPersonCache = ignite.cache(COLLOCATED_PERSON_CACHE);
+        IgniteCache<Long, Person> personCache = ignite.cache(PERSON_CACHE);
 
         // Clear caches before running the example.
         colPersonCache.clear();
         personCache.clear();
 
         // People.
-        Person p1 = new Person(org1, "John", "Doe", 2000, "John Doe has Master Degree.");
-        Person p2 = new Person(org1, "Jane", "Doe", 1000, "Jane Doe has Bachelor Degree.");
-        Person p3 = new Person(org2, "John", "Smith", 1000, "John Smith has Bachelor Degree.");
-        Person p4 = new Person(org2, "Jane", "Smith", 2000, "Jane Smith has Master Degree.");
+        long[] ids = new long[4];
+
+        personIds.nextIds(ids);
+
+        Person p1 = new Person(ids[0], org1.id(), "John", "Doe", 2000, "John Doe has Master Degree.");
+        Person p2 = new Person(ids[1], org1.id(), "Jane", "Doe", 1000, "Jane Doe has Bachelor Degree.");
+        Person p3 = new Person(ids[2], org2.id(), "John", "Smith", 1000, "John Smith has Bachelor Degree.");
+        Person p4 = new Person(ids[3], org2.id(), "Jane", "Smith", 2000, "Jane Smith has Master Degree.");
 
         // Note that in this example we use custom affinity key for Person objects
         // to ensure that all persons are collocated with their organizations.
@@ -0,0 +1,216 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.IgniteDataStreamer;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.cache.affinity.AffinityKey;
+import org.apache.ignite.cache.query.SqlFieldsQuery;
+import org.apache.ignite.cache.query.SqlQuery;
+import org.apache.ignite.examples.model.Organization;
+import org.apache.ignite.examples.model.Person;
+
+/**
+ * Measures latency of {@link SqlQueriesExample} salary range, join and aggregation queries at different
+ * query parallelism levels of the example caches.
+ * <p>
+ * Parallelism is doubled from 1 up to the maximum level (number of CPUs by default). Higher parallelism
+ * pays off for queries scanning many rows per node, while for selective queries the fan-out to index
+ * segments and the merge of their results may cost more than it saves, compare the rows of the report.
+ * <p>
+ * Settings are passed as system properties: {@code maxParallelism}, {@code orgs}, {@code persons}
+ * (per organization) and {@code iterations}.
+ */
+public class SqlQueryParallelismBenchmark {
+    /** Maximum query parallelism. */
+    private static final int MAX_PARALLELISM =
+        Integer.getInteger("maxParallelism", Runtime.getRuntime().availableProcessors());
+
+    /** Number of organizations. */
+    private static final int ORGS = Integer.getInteger("orgs", 100);
+
+    /** Number of persons per organization. */
+    private static final int PERSONS = Integer.getInteger("persons", 2_000);
+
+    /** Number of measured iterations per query. */
+    private static final int ITERATIONS = Integer.getInteger("iterations", 200);
+
+    /** Number of warm-up iterations per query. */
+    private static final int WARMUP = ITERATIONS / 4;
+
+    public static void main(String[] args) throws Exception {
+        try (Ignite ignite = Ignition.start("examples/config/example-ignite.xml")) {
+            print("SQL query parallelism benchmark started [orgs=" + ORGS + ", personsPerOrg=" + PERSONS +
+                ", iterations=" + ITERATIONS + ']');
+
+            System.out.println();
+            System.out.println(String.format("%-12s %-12s %12s %12s %12s", "parallelism", "query",
+                "avg, ms", "p50, ms", "p99, ms"));
+
+            for (int p : levels()) {
+                try {
+                    ignite.getOrCreateCache(SqlQueriesExample.orgCacheConfiguration(p));
+                    ignite.getOrCreateCache(SqlQueriesExample.collocatedPersonCacheConfiguration(p));
+                    ignite.getOrCreateCache(SqlQueriesExample.personCacheConfiguration(p));
+
+                    populate(ignite);
+
+                    benchmark(ignite, p);
+                }
+                finally {
+                    ignite.destroyCache(SqlQueriesExample.COLLOCATED_PERSON_CACHE);
+                    ignite.destroyCache(SqlQueriesExample.PERSON_CACHE);
+                    ignite.destroyCache(SqlQueriesExample.ORG_CACHE);
+                }
+            }
+
+            print("SQL query parallelism benchmark finished.");
+        }
+    }
+
+    /**
+     * @return Parallelism levels: powers of two below the maximum level and the maximum level itself.
+     */
+    private static List<Integer> levels() {
+        List<Integer> levels = new ArrayList<>();
+
+        for (int p = 1; p < MAX_PARALLELISM; p *= 2)
+            levels.add(p);
+
+        levels.add(MAX_PARALLELISM);
+
+        return levels;
+    }
+
+    /**
+     * @param ignite Ignite instance.
+     * @param p Query parallelism.
+     */
+    private static void benchmark(Ignite ignite, int p) {
+        IgniteCache<Long, Person> personCache = ignite.cache(SqlQueriesExample.PERSON_CACHE);
+        IgniteCache<AffinityKey<Long>, Person> colPersonCache =
+            ignite.cache(SqlQueriesExample.COLLOCATED_PERSON_CACHE);
+
+        String joinSql =
+            "from Person, \"" + SqlQueriesExample.ORG_CACHE + "\".Organization as org " +
+            "where Person.orgId = org.id " +
+            "and lower(org.name) = lower(?)";
+
+        String aggSql =
+            "select avg(salary) " +
+            "from Person, \"" + SqlQueriesExample.ORG_CACHE + "\".Organization as org " +
+            "where Person.orgId = org.id " +
+            "and lower(org.name) = lower(?)";
+
+        report(p, "salary", measure(() -> {
+            int from = ThreadLocalRandom.current().nextInt(10) * 1000;
+
+            return personCache.query(new SqlQuery<Long, Person>(Person.class, "salary > ? and salary <= ?").
+                setArgs(from, from + 1000)).getAll().size();
+        }));
+
+        report(p, "join", measure(() -> colPersonCache.query(
+            new SqlQuery<AffinityKey<Long>, Person>(Person.class, joinSql).setArgs(randomOrg())).getAll().size()));
+
+        report(p, "aggregation", measure(() -> colPersonCache.query(
+            new SqlFieldsQuery(aggSql).setArgs(randomOrg())).getAll().size()));
+    }
+
+    /**
+     * @param qry Query to run, returns number of rows.
+     * @return Sorted latencies in nanoseconds.
+     */
+    private static long[] measure(Query qry) {
+        for (int i = 0; i < WARMUP; i++)
+            qry.run();
+
+        long[] lat = new long[ITERATIONS];
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+
+            qry.run();
+
+            lat[i] = System.nanoTime() - start;
+        }
+
+        Arrays.sort(lat);
+
+        return lat;
+    }
+
+    /**
+     * @param p Query parallelism.
+     * @param name Query name.
+     * @param lat Sorted latencies in nanoseconds.
+     */
+    private static void report(int p, String name, long[] lat) {
+        long sum = 0;
+
+        for (long l : lat)
+            sum += l;
+
+        System.out.println(String.format("%-12d %-12s %12.3f %12.3f %12.3f", p, name,
+            sum / (double)lat.length / 1e6,
+            lat[lat.length / 2] / 1e6,
+            lat[Math.min(lat.length - 1, (int)(lat.length * 0.99))] / 1e6));
+    }
+
+    /**
+     * @return Random organization name.
+     */
+    private static String randomOrg() {
+        return "Org" + ThreadLocalRandom.current().nextInt(ORGS);
+    }
+
+    /**
+     * Populates caches with test data.
+     *
+     * @param ignite Ignite instance.
+     */
+    private static void populate(Ignite ignite) {
+        Organization[] orgs = new Organization[ORGS];
+
+        try (IgniteDataStreamer<Long, Organization> orgStreamer = ignite.dataStreamer(SqlQueriesExample.ORG_CACHE)) {
+            for (int i = 0; i < ORGS; i++) {
+                orgs[i] = new Organization("Org" + i);
+
+                orgStreamer.addData(orgs[i].id(), orgs[i]);
+            }
+        }
+
+        try (
+            IgniteDataStreamer<AffinityKey<Long>, Person> colStreamer =
+                ignite.dataStreamer(SqlQueriesExample.COLLOCATED_PERSON_CACHE);
+            IgniteDataStreamer<Long, Person> streamer = ignite.dataStreamer(SqlQueriesExample.PERSON_CACHE)
+        ) {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+
+            for (Organization org : orgs) {
+                for (int i = 0; i < PERSONS; i++) {
+                    Person p = new Person(org, "First" + i, "Last" + i, rnd.nextInt(10_000), "Resume " + i);
+
+                    colStreamer.addData(p.key(), p);
+                    streamer.addData(p.id, p);
+                }
+            }
+        }
+    }
+
+    /**
+     * Benchmarked query.
+     */
+    private interface Query {
+        /**
+         * @return Number of rows.
+         */
+        int run();
+    }
+
+    private static void print(String msg) {
+        System.out.println();
+        System.out.println(">>> " + msg);
+    }
+}